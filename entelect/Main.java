@@ -1,44 +1,73 @@
+import entelect.university.cup.batch.BatchRunner;
+import entelect.university.cup.file.CheckpointWriter;
+import entelect.university.cup.file.SolutionCache;
 import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.metrics.Metrics;
 import entelect.university.cup.models.Point;
 import entelect.university.cup.models.Zoo;
-import entelect.university.cup.solver.PathFinder;
+import entelect.university.cup.service.SolverService;
+import entelect.university.cup.solver.PrecomputeCache;
+import entelect.university.cup.solver.ZooSolver;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 public class Main {
 
     public static void main(String[] args) {
+        if (args.length >= 1 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            runService(args);
+            return;
+        }
         if (args.length < 2) {
-            System.err.println("Usage: java -jar DroneKeeper.jar <input_zoo_file> <output_path_file>");
+            printUsage();
             System.exit(1);
         }
 
         String inputFile = args[0];
         String outputFile = args[1];
+        ZooSolver solver = new ZooSolver();
+        Options options = parseOptions(args, 2, solver, Mode.SINGLE);
 
-        System.out.println("Reading zoo data from: " + inputFile);
+        Console.println("Reading zoo data from: " + inputFile);
 
         try {
             // 1. Read Zoo Data
             Zoo zoo = ZooFileHandler.readZooFromFile(inputFile);
-            System.out.println("Zoo data loaded successfully:");
-            System.out.println(zoo);
-            System.out.println("  Drone Depot: " + zoo.getDroneDepot());
-            System.out.println("  Battery Capacity: " + zoo.getBatteryCapacity());
-             System.out.println("  Allowed Runs: " + (zoo.getBatterySwaps() + 1));
+            Console.println("Zoo data loaded successfully:");
+            Console.println(zoo.toString());
+            Console.println("  Drone Depot: " + zoo.getDroneDepot());
+            Console.println("  Battery Capacity: " + zoo.getBatteryCapacity());
+             Console.println("  Allowed Runs: " + (zoo.getBatterySwaps() + 1));
 
 
-            // 2. Find Paths
-            System.out.println("\nCalculating drone paths...");
-            PathFinder pathFinder = new PathFinder(zoo);
-            List<List<Point>> dronePaths = pathFinder.generatePaths(); // This will execute the algorithm
+            if (options.anytime) {
+                // 2-3. Find paths, replacing the output file with each better solution on the way
+                Console.println("\nCalculating drone paths, checkpointing to: " + outputFile);
+                CheckpointWriter checkpoints = new CheckpointWriter(outputFile);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> closeQuietly(checkpoints)));
+                solver.setListener(checkpoints);
+                solver.solve(zoo);
+                checkpoints.close();
+                Console.println(checkpoints.getCheckpoints() + " checkpoint(s) written.");
+            } else {
+                // 2. Find Paths
+                Console.println("\nCalculating drone paths...");
+                List<List<Point>> dronePaths = solver.solve(zoo).getPaths();
 
-            // 3. Write Paths to File
-            System.out.println("\nWriting calculated paths to: " + outputFile);
-            ZooFileHandler.writePathsToFile(dronePaths, outputFile);
+                // 3. Write Paths to File
+                Console.println("\nWriting calculated paths to: " + outputFile);
+                ZooFileHandler.writePathsToFile(dronePaths, outputFile);
+            }
+            writeMetrics(options);
 
-            System.out.println("\nProcessing complete.");
+            Console.println("\nProcessing complete.");
 
         } catch (IOException e) {
             System.err.println("Error during file operation: " + e.getMessage());
@@ -58,4 +87,188 @@ public class Main {
             System.exit(4);
         }
     }
+
+    // --batch <dir|manifest> <output_dir> [options]
+    private static void runBatch(String[] args) {
+        if (args.length < 3) {
+            printUsage();
+            System.exit(1);
+        }
+        ZooSolver solver = new ZooSolver();
+        Options options = parseOptions(args, 3, solver, Mode.BATCH);
+
+        try {
+            List<BatchRunner.Job> jobs = BatchRunner.jobsFrom(Path.of(args[1]), Path.of(args[2]));
+            if (jobs.isEmpty()) {
+                System.err.println("No zoo files found in " + args[1]);
+                System.exit(1);
+            }
+            int workerCount = options.workers > 0 ? options.workers : BatchRunner.defaultWorkers(jobs.size());
+            // The cores are shared out between the zoos being solved at once
+            solver.setParallelism(Runtime.getRuntime().availableProcessors() / workerCount);
+            List<BatchRunner.JobResult> results = new BatchRunner(solver, workerCount).run(jobs);
+            writeMetrics(options);
+            if (results.stream().anyMatch(r -> !r.isOk())) {
+                System.exit(2);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading batch input: " + e.getMessage());
+            System.exit(2);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid batch input: " + e.getMessage());
+            System.exit(3);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(4);
+        }
+    }
+
+    // --serve <port> [options]; runs until the process is stopped
+    private static void runService(String[] args) {
+        if (args.length < 2) {
+            printUsage();
+            System.exit(1);
+        }
+        ZooSolver solver = new ZooSolver();
+        Options options = parseOptions(args, 2, solver, Mode.SERVE);
+        int workerCount = options.workers > 0 ? options.workers : SolverService.defaultWorkers();
+        // The cores are shared out between the zoos being solved at once
+        solver.setParallelism(Runtime.getRuntime().availableProcessors() / workerCount);
+        solver.setPrecomputeCache(new PrecomputeCache(options.keepZoos));
+
+        try {
+            SolverService service = new SolverService(solver, Integer.parseInt(args[1]), workerCount,
+                    options.queue > 0 ? options.queue : 4 * workerCount);
+            if (options.zooDirectory != null) service.setZooDirectory(options.zooDirectory);
+            service.setMaxBodyBytes(options.maxBodyBytes);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                service.close();
+                try {
+                    writeMetrics(options);
+                } catch (IOException e) {
+                    System.err.println("Error writing metrics: " + e.getMessage());
+                }
+            }));
+            service.start();
+            System.out.println("Solver service listening on http://localhost:" + service.getPort()
+                    + " with " + workerCount + " worker(s)");
+        } catch (IOException e) {
+            System.err.println("Error starting the solver service: " + e.getMessage());
+            System.exit(2);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid port: " + args[1]);
+            System.exit(3);
+        }
+    }
+
+    private enum Mode { SINGLE, BATCH, SERVE }
+
+    // Applies the options from args[from] on to the solver and returns the rest
+    private static Options parseOptions(String[] args, int from, ZooSolver solver, Mode mode) {
+        Options options = new Options();
+        for (int i = from; i < args.length; i++) {
+            String option = args[i];
+            try {
+                if (args[i].equals("--portfolio")) {
+                    solver.setPortfolio(true);
+                } else if (args[i].equals("--greedy")) {
+                    solver.setGreedy(true);
+                } else if (args[i].equals("--improve")) {
+                    solver.setImprove(true);
+                } else if (args[i].equals("--anneal")) {
+                    solver.setAnneal(true);
+                } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                    solver.setSeed(Long.parseLong(args[++i]));
+                } else if (args[i].equals("--exact-memory") && i + 1 < args.length) {
+                    solver.setExactMemory(Long.parseLong(args[++i]) * 1024 * 1024);
+                } else if (args[i].equals("--time-limit") && i + 1 < args.length) {
+                    solver.setTimeLimit(Math.round(Double.parseDouble(args[++i]) * 1000));
+                } else if (mode == Mode.SINGLE && args[i].equals("--anytime") && i + 1 < args.length) {
+                    solver.setAnneal(true);
+                    solver.setTimeLimit(Math.round(Double.parseDouble(args[++i]) * 1000));
+                    options.anytime = true;
+                } else if (args[i].equals("--verbose")) {
+                    Console.setVerbose(true);
+                } else if (args[i].equals("--metrics") && i + 1 < args.length) {
+                    options.metricsFile = Path.of(args[++i]);
+                } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                    options.cacheDirectory = Path.of(args[++i]);
+                } else if (args[i].equals("--cache-size") && i + 1 < args.length) {
+                    options.cacheBytes = Long.parseLong(args[++i]) * 1024 * 1024;
+                } else if (mode != Mode.SINGLE && args[i].equals("--workers") && i + 1 < args.length) {
+                    options.workers = Integer.parseInt(args[++i]);
+                } else if (mode == Mode.SERVE && args[i].equals("--queue") && i + 1 < args.length) {
+                    options.queue = Integer.parseInt(args[++i]);
+                } else if (mode == Mode.SERVE && args[i].equals("--keep-zoos") && i + 1 < args.length) {
+                    options.keepZoos = Integer.parseInt(args[++i]);
+                } else if (mode == Mode.SERVE && args[i].equals("--zoo-dir") && i + 1 < args.length) {
+                    options.zooDirectory = Path.of(args[++i]);
+                } else if (mode == Mode.SERVE && args[i].equals("--max-body") && i + 1 < args.length) {
+                    options.maxBodyBytes = Long.parseLong(args[++i]) * 1024 * 1024;
+                } else {
+                    System.err.println("Unknown option: " + args[i]);
+                    printUsage();
+                    System.exit(1);
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid value for " + option + ": " + args[i]);
+                printUsage();
+                System.exit(1);
+            }
+        }
+        if (options.cacheDirectory != null) {
+            solver.setCache(new SolutionCache(options.cacheDirectory, options.cacheBytes));
+        }
+        return options;
+    }
+
+    // Options that are not solver settings
+    private static class Options {
+        int workers; // Batch and service modes only; 0 for the default
+        int queue; // Service mode only; 0 for four per worker
+        int keepZoos = 8; // Service mode only
+        Path zooDirectory; // Service mode only; null to refuse file requests
+        long maxBodyBytes = SolverService.DEFAULT_MAX_BODY_BYTES; // Service mode only
+        Path metricsFile;
+        boolean anytime;
+        Path cacheDirectory;
+        long cacheBytes = SolutionCache.DEFAULT_MAX_BYTES;
+    }
+
+    // On a kill, saves the best solution reported but not yet written
+    private static void closeQuietly(CheckpointWriter checkpoints) {
+        try {
+            checkpoints.close();
+        } catch (IOException e) {
+            System.err.println("Error writing the last checkpoint: " + e.getMessage());
+        }
+    }
+
+    private static void writeMetrics(Options options) throws IOException {
+        if (options.metricsFile != null) Metrics.write(options.metricsFile);
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: java -jar DroneKeeper.jar <input_zoo_file> <output_path_file> [options]");
+        System.err.println("       java -jar DroneKeeper.jar --batch <zoo_dir|manifest> <output_dir> [options] [--workers <n>]");
+        System.err.println("       java -jar DroneKeeper.jar --serve <port> [options] [--workers <n>] [--queue <n>] [--keep-zoos <n>]"
+                + " [--zoo-dir <dir>] [--max-body <MB>]");
+        System.err.println("  --portfolio           Run several construction heuristics in parallel and keep the best");
+        System.err.println("  --greedy              Build the runs one after another, most important enclosure first, instead of planning them");
+        System.err.println("  --improve             Improve the runs with local search (relocate, exchange, 2-opt, insertions)");
+        System.err.println("  --anneal              After --improve, anneal with destroy-and-repair moves (10 s unless --time-limit)");
+        System.err.println("  --seed <n>            Random seed of the annealing chains (default 1)");
+        System.err.println("  --exact-memory <MB>   Memory the exact solver may use on small zoos (default a quarter of the heap, 0 disables it)");
+        System.err.println("  --time-limit <secs>   Wall-clock budget for the portfolio and improvement phases (implies --portfolio unless --improve)");
+        System.err.println("  --anytime <secs>      Improve until the deadline, rewriting the output file with each better solution");
+        System.err.println("  --verbose             Print progress messages while solving");
+        System.err.println("  --metrics <file>      Write the solver metrics to a file (JSON if it ends in .json, else Prometheus text)");
+        System.err.println("  --cache <dir>         Reuse solutions of zoos solved before with the same options, and warm-start similar ones");
+        System.err.println("  --cache-size <MB>     Size bound of the cache directory, least recently used entries go first (default 64)");
+        System.err.println("  --workers <n>         Batch mode: zoos solved at once (default one per core); service mode: default one per two cores");
+        System.err.println("  --queue <n>           Service mode: requests that may wait for a worker before the rest get 503 (default 4 per worker)");
+        System.err.println("  --keep-zoos <n>       Service mode: zoos whose leg costs and lookups are kept for repeat solves (default 8)");
+        System.err.println("  --zoo-dir <dir>       Service mode: serve ?file= requests from this directory only (default: refused)");
+        System.err.println("  --max-body <MB>       Service mode: largest zoo specification accepted as a request body, others get 413 (default 16)");
+    }
 }
\ No newline at end of file
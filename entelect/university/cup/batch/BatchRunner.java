@@ -0,0 +1,247 @@
+package entelect.university.cup.batch;
+
+import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.solver.ZooSolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves many zoo files in one JVM, so start-up and JIT warm-up are paid once. The files
+ * are solved concurrently by a fixed pool of workers; each output file is written as soon
+ * as its zoo is solved. A failing file is reported and does not stop the others.
+ *
+ * <p>The input is either a directory (every regular {@code .txt} file in it, by name) or a
+ * manifest: a text file listing one zoo file per line, optionally followed by its output
+ * file. Relative paths in a manifest are resolved against the manifest's directory; blank
+ * lines and lines starting with {@code #} are skipped. Outputs without an explicit path go
+ * to the output directory under the input's file name; jobs that would write the same
+ * output file are rejected up front.
+ */
+public class BatchRunner {
+
+    private final ZooSolver solver;
+    private final int workers;
+
+    /**
+     * @param solver  The configured pipeline, shared by all workers.
+     * @param workers The number of zoos solved at once.
+     */
+    public BatchRunner(ZooSolver solver, int workers) {
+        this.solver = solver;
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * @return One worker per core, but no more than there are files.
+     */
+    public static int defaultWorkers(int files) {
+        return Math.max(1, Math.min(files, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Lists the jobs of a directory or manifest.
+     *
+     * @param source    A directory of zoo files or a manifest file.
+     * @param outputDir Where outputs without an explicit path go.
+     * @return The jobs, in directory (name) or manifest order.
+     * @throws IOException If the directory or manifest cannot be read.
+     * @throws IllegalArgumentException If a directory would have its outputs written over its inputs,
+     *                                  or two jobs would write the same output file.
+     */
+    public static List<Job> jobsFrom(Path source, Path outputDir) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            if (Files.exists(outputDir) && Files.isSameFile(source, outputDir)) {
+                throw new IllegalArgumentException("The output directory must differ from the input directory: " + source);
+            }
+            List<Path> inputs = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(source, "*.txt")) {
+                for (Path entry : entries) {
+                    if (Files.isRegularFile(entry)) inputs.add(entry);
+                }
+            }
+            inputs.sort(null);
+            for (Path input : inputs) {
+                jobs.add(new Job(input, outputDir.resolve(input.getFileName())));
+            }
+        } else {
+            Path base = source.toAbsolutePath().getParent();
+            int lineNumber = 0;
+            for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\s+");
+                if (parts.length > 2) {
+                    throw new IllegalArgumentException("Expected '<input> [output]' at line " + lineNumber + " of " + source);
+                }
+                Path input = base.resolve(parts[0]);
+                Path output = parts.length == 2 ? base.resolve(parts[1]) : outputDir.resolve(input.getFileName());
+                jobs.add(new Job(input, output));
+            }
+        }
+        checkOutputs(jobs);
+        return jobs;
+    }
+
+    // Two jobs writing the same file (e.g. a/1.txt and b/1.txt into one output directory) would overwrite each other
+    private static void checkOutputs(List<Job> jobs) {
+        Map<Path, Job> byOutput = new HashMap<>();
+        for (Job job : jobs) {
+            Job other = byOutput.putIfAbsent(job.getOutput().toAbsolutePath().normalize(), job);
+            if (other != null) {
+                throw new IllegalArgumentException("Both " + other.getInput() + " and " + job.getInput() + " would be written to "
+                        + job.getOutput() + "; give them explicit outputs in the manifest");
+            }
+        }
+    }
+
+    /**
+     * Solves all jobs and prints a summary table.
+     *
+     * @param jobs The zoo files to solve.
+     * @return The results, in job order.
+     */
+    public List<JobResult> run(List<Job> jobs) throws InterruptedException {
+        long startMillis = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<JobResult>> futures = new ArrayList<>(jobs.size());
+        try {
+            for (Job job : jobs) {
+                futures.add(pool.submit(() -> solve(job)));
+            }
+            List<JobResult> results = new ArrayList<>(jobs.size());
+            for (int i = 0; i < jobs.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(JobResult.failed(jobs.get(i), e.getCause()));
+                }
+            }
+            printSummary(results, System.currentTimeMillis() - startMillis);
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private JobResult solve(Job job) {
+        try {
+            Zoo zoo = ZooFileHandler.readZooFromFile(job.getInput().toString());
+            ZooSolver.Result result = solver.solve(zoo);
+            Path parent = job.getOutput().toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            ZooFileHandler.writePathsToFile(result.getPaths(), job.getOutput().toString());
+            Console.println("Solved " + job.getInput() + " -> " + job.getOutput());
+            return new JobResult(job, result, zoo.getBatterySwaps() + 1, null);
+        } catch (Exception e) {
+            System.err.println("Failed to solve " + job.getInput() + ": " + describe(e));
+            return JobResult.failed(job, e);
+        }
+    }
+
+    // The exception class as well, as some exceptions have no message
+    private static String describe(Throwable e) {
+        return e.getMessage() == null ? e.getClass().getName() : e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    private void printSummary(List<JobResult> results, long totalMillis) {
+        int width = "File".length();
+        for (JobResult r : results) {
+            width = Math.max(width, r.getJob().getInput().getFileName().toString().length());
+        }
+        String format = "%-" + width + "s  %12s  %9s  %10s  %s%n";
+        System.out.println();
+        System.out.printf(format, "File", "Score", "Runs", "Time (ms)", "Status");
+        int failed = 0;
+        for (JobResult r : results) {
+            String name = r.getJob().getInput().getFileName().toString();
+            if (r.isOk()) {
+                ZooSolver.Result result = r.getResult();
+                System.out.printf(format, name, String.format("%.2f", result.getScore()),
+                        result.getRuns() + "/" + r.getAllowedRuns(), result.getSolveMillis(), "ok");
+            } else {
+                failed++;
+                System.out.printf(format, name, "-", "-", "-", "failed: " + describe(r.getError()));
+            }
+        }
+        System.out.println(results.size() + " file(s), " + failed + " failed, " + workers + " worker(s), "
+                + totalMillis + " ms in total");
+    }
+
+    /**
+     * One zoo file and where its paths go.
+     */
+    public static class Job {
+        private final Path input;
+        private final Path output;
+
+        public Job(Path input, Path output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        public Path getInput() {
+            return input;
+        }
+
+        public Path getOutput() {
+            return output;
+        }
+    }
+
+    /**
+     * The outcome of one job: the solve result, or the error that stopped it.
+     */
+    public static class JobResult {
+        private final Job job;
+        private final ZooSolver.Result result;
+        private final int allowedRuns;
+        private final Throwable error;
+
+        public JobResult(Job job, ZooSolver.Result result, int allowedRuns, Throwable error) {
+            this.job = job;
+            this.result = result;
+            this.allowedRuns = allowedRuns;
+            this.error = error;
+        }
+
+        static JobResult failed(Job job, Throwable error) {
+            return new JobResult(job, null, 0, error);
+        }
+
+        public Job getJob() {
+            return job;
+        }
+
+        public ZooSolver.Result getResult() {
+            return result;
+        }
+
+        public int getAllowedRuns() {
+            return allowedRuns;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isOk() {
+            return error == null;
+        }
+    }
+}
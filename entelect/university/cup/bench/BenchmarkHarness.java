@@ -0,0 +1,127 @@
+package entelect.university.cup.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal dependency-free benchmark runner: runs an operation for a warm-up period so the
+ * JIT settles, then times each operation of a measurement period separately. Allocation is
+ * read from the per-thread allocation counter of the HotSpot thread bean and collections
+ * from the garbage collector beans, both around the measured operations only. Console
+ * output of the code under test is swallowed while it runs.
+ */
+public class BenchmarkHarness {
+
+    /**
+     * The code under test. Its result goes to the {@link Blackhole}.
+     */
+    public interface Operation {
+        Object run() throws Exception;
+    }
+
+    private static final PrintStream SILENT = new PrintStream(OutputStream.nullOutputStream());
+
+    private long warmupMillis = 1000;
+    private long measureMillis = 2000;
+    private int minOperations = 3; // Slow operations still get a few samples
+
+    public void setWarmupMillis(long warmupMillis) {
+        this.warmupMillis = warmupMillis;
+    }
+
+    public void setMeasureMillis(long measureMillis) {
+        this.measureMillis = measureMillis;
+    }
+
+    public void setMinOperations(int minOperations) {
+        this.minOperations = Math.max(1, minOperations);
+    }
+
+    /**
+     * Warms up and measures an operation on the calling thread. Allocation is counted on
+     * every thread, as operations such as the leg cost table build fan out to the common pool.
+     *
+     * @param name The benchmark name.
+     * @param zoo  The label of the zoo it runs on.
+     * @return The samples.
+     */
+    public Measurement run(String name, String zoo, Operation operation) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(SILENT);
+        try {
+            long warmupEnd = System.nanoTime() + warmupMillis * 1_000_000;
+            do {
+                Blackhole.consume(operation.run());
+            } while (System.nanoTime() < warmupEnd);
+
+            long[] samples = new long[64];
+            int count = 0;
+            Map<Long, Long> allocatedBefore = allocatedBytes();
+            long gcCountBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            long measureEnd = System.nanoTime() + measureMillis * 1_000_000;
+            while (count < minOperations || System.nanoTime() < measureEnd) {
+                long start = System.nanoTime();
+                Object result = operation.run();
+                long elapsed = System.nanoTime() - start;
+                Blackhole.consume(result);
+                if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+                samples[count++] = elapsed;
+            }
+            long allocated = allocatedSince(allocatedBefore);
+            return new Measurement(name, zoo, Arrays.copyOf(samples, count),
+                    allocated, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    // Bytes allocated so far per live thread id, empty where the JVM does not count them
+    private static Map<Long, Long> allocatedBytes() {
+        Map<Long, Long> allocated = new HashMap<>();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                long[] ids = hotspot.getAllThreadIds();
+                long[] bytes = hotspot.getThreadAllocatedBytes(ids);
+                for (int i = 0; i < ids.length; i++) {
+                    if (bytes[i] >= 0) allocated.put(ids[i], bytes[i]); // -1 for a thread that ended meanwhile
+                }
+            }
+        }
+        return allocated;
+    }
+
+    // Bytes allocated since the sample by the threads alive now (including ones started since);
+    // threads that ended in between are lost, but pool workers outlive a measurement
+    private static long allocatedSince(Map<Long, Long> before) {
+        long total = 0;
+        for (Map.Entry<Long, Long> now : allocatedBytes().entrySet()) {
+            total += now.getValue() - before.getOrDefault(now.getKey(), 0L);
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
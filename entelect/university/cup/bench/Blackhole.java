@@ -0,0 +1,24 @@
+package entelect.university.cup.bench;
+
+/**
+ * Sink for benchmark results, so the JIT cannot drop the work that produced them.
+ */
+public final class Blackhole {
+
+    private static volatile int sink;
+
+    private Blackhole() {
+    }
+
+    public static void consume(Object value) {
+        sink ^= System.identityHashCode(value);
+    }
+
+    public static void consume(double value) {
+        sink ^= Double.hashCode(value);
+    }
+
+    public static void consume(boolean value) {
+        sink ^= value ? 1 : 0;
+    }
+}
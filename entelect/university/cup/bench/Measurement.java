@@ -0,0 +1,86 @@
+package entelect.university.cup.bench;
+
+import java.util.Arrays;
+
+/**
+ * The samples of one benchmark case: latency per operation, and the bytes allocated and
+ * the garbage collections during the measured operations.
+ */
+public class Measurement {
+
+    private final String name;
+    private final String zoo;
+    private final long[] latencyNanos; // Sorted
+    private final long allocatedBytes;
+    private final long gcCount;
+    private final long gcMillis;
+
+    public Measurement(String name, String zoo, long[] latencyNanos, long allocatedBytes, long gcCount, long gcMillis) {
+        this.name = name;
+        this.zoo = zoo;
+        this.latencyNanos = latencyNanos.clone();
+        Arrays.sort(this.latencyNanos);
+        this.allocatedBytes = allocatedBytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getZoo() {
+        return zoo;
+    }
+
+    public int getOperations() {
+        return latencyNanos.length;
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : latencyNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    /**
+     * @return Operations per second over the measured time.
+     */
+    public double getThroughput() {
+        return latencyNanos.length / (getTotalNanos() / 1e9);
+    }
+
+    public double getMeanNanos() {
+        return (double) getTotalNanos() / latencyNanos.length;
+    }
+
+    /**
+     * @param percentile 0 to 100.
+     * @return The latency at the percentile (nearest rank).
+     */
+    public long getPercentileNanos(double percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * latencyNanos.length);
+        return latencyNanos[Math.max(0, Math.min(latencyNanos.length - 1, rank - 1))];
+    }
+
+    public double getBytesPerOperation() {
+        return (double) allocatedBytes / latencyNanos.length;
+    }
+
+    /**
+     * @return Megabytes allocated per second of measured time.
+     */
+    public double getAllocationRate() {
+        return allocatedBytes / 1e6 / (getTotalNanos() / 1e9);
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcMillis() {
+        return gcMillis;
+    }
+}
@@ -0,0 +1,52 @@
+package entelect.university.cup.bench;
+
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.models.ZooColumns;
+
+/**
+ * Scaled-up zoos made by tiling a level: the map is repeated k by k times, with every
+ * storage, enclosure and dead zone copied into each tile. The depot stays in the corner
+ * tile, the battery grows with k and the allowed runs with k^2, so the density and the
+ * shape of the problem stay like the original while its size grows.
+ */
+public final class ScaledZoos {
+
+    private ScaledZoos() {
+    }
+
+    /**
+     * @param zoo   The zoo to tile.
+     * @param scale Tiles per side (1 gives an equal copy).
+     * @return A zoo with scale^2 times the storages, enclosures and dead zones.
+     */
+    public static Zoo tile(Zoo zoo, int scale) {
+        if (scale < 1) throw new IllegalArgumentException("Scale must be at least 1: " + scale);
+        ZooColumns c = zoo.getColumns();
+        int width = c.getDimensionX();
+        int height = c.getDimensionY();
+        int runs = c.getBatterySwaps() + 1;
+        ZooColumns.Builder builder = new ZooColumns.Builder()
+                .dimensions(width * scale, height * scale, c.getDimensionZ())
+                .depot(c.getDepotX(), c.getDepotY(), c.getDepotZ())
+                .battery((int) Math.min(Integer.MAX_VALUE, (long) c.getBatteryCapacity() * scale),
+                        runs * scale * scale - 1);
+        for (int tx = 0; tx < scale; tx++) {
+            for (int ty = 0; ty < scale; ty++) {
+                int dx = tx * width;
+                int dy = ty * height;
+                for (int i = 0; i < c.getStorageCount(); i++) {
+                    builder.addStorage(c.getStorageX()[i] + dx, c.getStorageY()[i] + dy, c.getStorageZ()[i],
+                            (char) c.getStorageDiet()[i]);
+                }
+                for (int i = 0; i < c.getEnclosureCount(); i++) {
+                    builder.addEnclosure(c.getEnclosureX()[i] + dx, c.getEnclosureY()[i] + dy, c.getEnclosureZ()[i],
+                            c.getImportance()[i], (char) c.getEnclosureDiet()[i]);
+                }
+                for (int i = 0; i < c.getDeadZoneCount(); i++) {
+                    builder.addDeadZone(c.getDeadZoneX()[i] + dx, c.getDeadZoneY()[i] + dy, c.getDeadZoneRadius()[i]);
+                }
+            }
+        }
+        return new Zoo(builder.build());
+    }
+}
@@ -0,0 +1,177 @@
+package entelect.university.cup.bench;
+
+import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.models.DeadZone;
+import entelect.university.cup.models.Point;
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.solver.DroneMathUtils;
+import entelect.university.cup.solver.PathFinder;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmarks of the hot paths on the bundled levels and on scaled-up copies of them:
+ * <ul>
+ *     <li>{@code parse}: {@link ZooFileHandler#readZooFromFile} of the zoo file,</li>
+ *     <li>{@code distance}: {@link DroneMathUtils#calculateTotalRunDistance} of every run of a greedy solution,</li>
+ *     <li>{@code deadzone}: {@link DeadZone#intersects} of every leg of that solution against every dead zone,</li>
+ *     <li>{@code solve}: {@link PathFinder#generatePaths} from a fresh solver.</li>
+ * </ul>
+ * Zoos are named by level ({@code 1} to {@code 4}, read from the level directory) or as
+ * {@code <level>x<k>} for the level tiled k by k times (see {@link ScaledZoos}), or as
+ * {@code g<n>} for a generated zoo of n enclosures at the density of level 4 (see {@link ZooGenerator}).
+ *
+ * <p>Usage: {@code java -cp <classes> entelect.university.cup.bench.ZooBenchmarks [--zoos 1,2,3,4,4x2]
+ * [--benchmarks parse,distance,deadzone,solve] [--warmup <secs>] [--measure <secs>] [--levels <dir>]}
+ */
+public class ZooBenchmarks {
+
+    private static final List<String> ALL_BENCHMARKS = List.of("parse", "distance", "deadzone", "solve");
+
+    public static void main(String[] args) throws Exception {
+        List<String> zoos = List.of("1", "2", "3", "4", "4x2");
+        List<String> benchmarks = ALL_BENCHMARKS;
+        Path levels = Path.of(".");
+        BenchmarkHarness harness = new BenchmarkHarness();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--zoos") && i + 1 < args.length) {
+                zoos = Arrays.asList(args[++i].split(","));
+            } else if (args[i].equals("--benchmarks") && i + 1 < args.length) {
+                benchmarks = Arrays.asList(args[++i].split(","));
+            } else if (args[i].equals("--warmup") && i + 1 < args.length) {
+                harness.setWarmupMillis(Math.round(Double.parseDouble(args[++i]) * 1000));
+            } else if (args[i].equals("--measure") && i + 1 < args.length) {
+                harness.setMeasureMillis(Math.round(Double.parseDouble(args[++i]) * 1000));
+            } else if (args[i].equals("--levels") && i + 1 < args.length) {
+                levels = Path.of(args[++i]);
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            }
+        }
+        for (String benchmark : benchmarks) {
+            if (!ALL_BENCHMARKS.contains(benchmark)) {
+                System.err.println("Unknown benchmark: " + benchmark + " (expected one of " + ALL_BENCHMARKS + ")");
+                System.exit(1);
+            }
+        }
+
+        List<Measurement> results = new ArrayList<>();
+        for (String name : zoos) {
+            Path file;
+            Zoo zoo;
+            if (name.startsWith("g")) {
+                ZooGenerator generator = new ZooGenerator();
+                generator.setEnclosures(Integer.parseInt(name.substring(1)));
+                zoo = generator.generate();
+                file = Files.createTempFile("zoo-" + name + "-", ".txt");
+                file.toFile().deleteOnExit();
+                generator.write(file);
+            } else {
+                file = levels.resolve(level(name) + ".txt");
+                zoo = ZooFileHandler.readZooFromFile(file.toString());
+            }
+            if (name.contains("x")) {
+                // Only the parser reads the tiled file back: the file format has no battery swaps
+                zoo = ScaledZoos.tile(zoo, scale(name));
+                file = Files.createTempFile("zoo-" + name + "-", ".txt");
+                file.toFile().deleteOnExit();
+                ZooFileHandler.writeZooToFile(zoo, file.toString());
+            }
+            Path input = file;
+            System.out.println("Zoo " + name + ": " + zoo);
+            Zoo target = zoo;
+            List<List<Point>> paths = quietly(() -> new PathFinder(target).generatePaths());
+            List<DeadZone> deadzones = zoo.getDeadzones();
+
+            for (String benchmark : benchmarks) {
+                Measurement m;
+                switch (benchmark) {
+                    case "parse":
+                        m = harness.run(benchmark, name, () -> ZooFileHandler.readZooFromFile(input.toString()));
+                        break;
+                    case "distance":
+                        m = harness.run(benchmark, name, () -> {
+                            double total = 0;
+                            for (List<Point> path : paths) {
+                                total += DroneMathUtils.calculateTotalRunDistance(path, target);
+                            }
+                            return total;
+                        });
+                        break;
+                    case "deadzone":
+                        m = harness.run(benchmark, name, () -> {
+                            int hits = 0;
+                            for (List<Point> path : paths) {
+                                for (int i = 0; i + 1 < path.size(); i++) {
+                                    for (DeadZone zone : deadzones) {
+                                        if (zone.intersects(path.get(i), path.get(i + 1))) hits++;
+                                    }
+                                }
+                            }
+                            return hits;
+                        });
+                        break;
+                    default:
+                        m = harness.run(benchmark, name, () -> new PathFinder(target).generatePaths());
+                        break;
+                }
+                results.add(m);
+                System.out.println("  " + benchmark + ": " + formatNanos(m.getMeanNanos()) + " mean over "
+                        + m.getOperations() + " ops");
+            }
+        }
+        printTable(results);
+    }
+
+    private static String level(String name) {
+        int x = name.indexOf('x');
+        return x < 0 ? name : name.substring(0, x);
+    }
+
+    private static int scale(String name) {
+        return Integer.parseInt(name.substring(name.indexOf('x') + 1));
+    }
+
+    private static <T> T quietly(Callable<T> call) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return call.call();
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void printTable(List<Measurement> results) {
+        String format = "%-9s %-6s %7s %12s %10s %10s %10s %10s %10s %12s %9s %5s%n";
+        System.out.println();
+        System.out.printf(format, "Benchmark", "Zoo", "Ops", "Ops/s", "Mean", "p50", "p90", "p99", "Max",
+                "Bytes/op", "MB/s", "GCs");
+        for (Measurement m : results) {
+            System.out.printf(format, m.getName(), m.getZoo(), m.getOperations(),
+                    String.format("%.2f", m.getThroughput()),
+                    formatNanos(m.getMeanNanos()),
+                    formatNanos(m.getPercentileNanos(50)),
+                    formatNanos(m.getPercentileNanos(90)),
+                    formatNanos(m.getPercentileNanos(99)),
+                    formatNanos(m.getPercentileNanos(100)),
+                    String.format("%.0f", m.getBytesPerOperation()),
+                    String.format("%.1f", m.getAllocationRate()),
+                    m.getGcCount());
+        }
+    }
+
+    private static String formatNanos(double nanos) {
+        if (nanos < 10_000) return String.format("%.0f ns", nanos);
+        if (nanos < 10_000_000) return String.format("%.1f us", nanos / 1e3);
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+}
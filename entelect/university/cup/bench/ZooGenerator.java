@@ -0,0 +1,424 @@
+package entelect.university.cup.bench;
+
+import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.file.ZooWriter;
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.models.ZooColumns;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of synthetic zoos for scale testing. The same settings and seed
+ * always give the same zoo, whether it is built in memory ({@link #generate()}) or streamed
+ * to a file ({@link #write(Path)}). Streaming keeps only the dead zones in memory, so files
+ * with millions of enclosures (gigabytes) can be written in constant memory.
+ *
+ * <p>Settings left at 0 follow the density of level 4 for the enclosure count: a map side of
+ * 2500 per 15,000 enclosures (square root scaling), 30 storages per 15,000 enclosures, a
+ * battery of 3.7 map sides and one run per 60 enclosures. Storages, enclosures and the depot
+ * are kept out of the dead zones where possible, so every enclosure can be fed.
+ *
+ * <p>The file format has no battery swaps; by default the generated zoo has the swaps that
+ * {@link ZooFileHandler#batterySwaps} infers when the file is read back, so the in-memory
+ * zoo and the file agree. Swaps set explicitly are only in the in-memory zoo.
+ */
+public class ZooGenerator {
+
+    /**
+     * How importance values are drawn (always rounded to hundredths).
+     */
+    public enum ImportanceDistribution {
+        /** Evenly between the minimum and maximum. */
+        UNIFORM,
+        /** Mostly low, mean an eighth of the range above the minimum. */
+        EXPONENTIAL,
+        /** Heavy tail: a few enclosures carry most of the importance (80/20). */
+        PARETO
+    }
+
+    private static final char[] DIETS = {'c', 'h', 'o'};
+    private static final int PLACEMENT_ATTEMPTS = 100;
+    private static final int DEAD_ZONE_ATTEMPTS = 10_000; // Zones in a row kept off the depot before giving up
+    private static final double PARETO_ALPHA = 1.16; // The 80/20 rule
+
+    private int width;
+    private int height;
+    private int depth = 50;
+    private int storages;
+    private int enclosures = 15_000;
+    private double[] dietWeights = {1, 1, 1}; // c, h, o
+    private ImportanceDistribution importanceDistribution = ImportanceDistribution.EXPONENTIAL;
+    private double minImportance = 0;
+    private double maxImportance = 45;
+    private double deadZoneCoverage = 0.02; // Fraction of the map area
+    private int minDeadZoneRadius = 40;
+    private int maxDeadZoneRadius = 110;
+    private int batteryCapacity;
+    private int batterySwaps = -1;
+    private long seed = 1;
+
+    /**
+     * @param width  Map size in x; 0 to scale with the enclosure count.
+     * @param height Map size in y; 0 to scale with the enclosure count.
+     */
+    public void setDimensions(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public void setEnclosures(int enclosures) {
+        this.enclosures = enclosures;
+    }
+
+    /**
+     * @param storages Number of food storages; 0 to scale with the enclosure count.
+     */
+    public void setStorages(int storages) {
+        this.storages = storages;
+    }
+
+    /**
+     * @param carnivore Relative share of carnivore enclosures and storages.
+     * @param herbivore Relative share of herbivore ones.
+     * @param omnivore  Relative share of omnivore ones.
+     */
+    public void setDietWeights(double carnivore, double herbivore, double omnivore) {
+        if (carnivore < 0 || herbivore < 0 || omnivore < 0 || carnivore + herbivore + omnivore <= 0) {
+            throw new IllegalArgumentException("Diet weights must be non-negative and not all zero");
+        }
+        this.dietWeights = new double[]{carnivore, herbivore, omnivore};
+    }
+
+    public void setImportance(ImportanceDistribution distribution, double min, double max) {
+        if (min < 0 || max < min) throw new IllegalArgumentException("Need 0 <= min <= max importance");
+        this.importanceDistribution = distribution;
+        this.minImportance = min;
+        this.maxImportance = max;
+    }
+
+    /**
+     * @param coverage  Fraction of the map area covered by dead zones (0 for none).
+     * @param minRadius Smallest dead zone radius.
+     * @param maxRadius Largest dead zone radius.
+     */
+    public void setDeadZones(double coverage, int minRadius, int maxRadius) {
+        if (coverage < 0 || coverage >= 1 || minRadius < 1 || maxRadius < minRadius) {
+            throw new IllegalArgumentException("Need 0 <= coverage < 1 and 1 <= min radius <= max radius");
+        }
+        this.deadZoneCoverage = coverage;
+        this.minDeadZoneRadius = minRadius;
+        this.maxDeadZoneRadius = maxRadius;
+    }
+
+    /**
+     * @param batteryCapacity Battery capacity in meters; 0 to scale with the map.
+     */
+    public void setBatteryCapacity(int batteryCapacity) {
+        this.batteryCapacity = batteryCapacity;
+    }
+
+    /**
+     * @param batterySwaps Battery swaps of the in-memory zoo; -1 for those inferred when the file is read.
+     */
+    public void setBatterySwaps(int batterySwaps) {
+        this.batterySwaps = batterySwaps;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return The zoo, built in memory.
+     */
+    public Zoo generate() {
+        ZooColumns.Builder builder = new ZooColumns.Builder();
+        try {
+            emit(new Sink() {
+                @Override
+                public void header(int w, int h, int d, int depotX, int depotY, int depotZ, int battery) {
+                    builder.dimensions(w, h, d).depot(depotX, depotY, depotZ).battery(battery, swaps(battery));
+                }
+
+                @Override
+                public void storage(int x, int y, int z, char diet) {
+                    builder.addStorage(x, y, z, diet);
+                }
+
+                @Override
+                public void enclosure(int x, int y, int z, double importance, char diet) {
+                    builder.addEnclosure(x, y, z, importance, diet);
+                }
+
+                @Override
+                public void deadZone(int x, int y, int radius) {
+                    builder.addDeadZone(x, y, radius);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // The builder does no I/O
+        }
+        return new Zoo(builder.build());
+    }
+
+    /**
+     * Streams the zoo to a file in the input format.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        try (ZooWriter writer = new ZooWriter(file)) {
+            emit(new Sink() {
+                @Override
+                public void header(int w, int h, int d, int depotX, int depotY, int depotZ, int battery) throws IOException {
+                    writer.header(w, h, d, depotX, depotY, depotZ, battery);
+                }
+
+                @Override
+                public void storage(int x, int y, int z, char diet) throws IOException {
+                    writer.storage(x, y, z, diet);
+                }
+
+                @Override
+                public void enclosure(int x, int y, int z, double importance, char diet) throws IOException {
+                    writer.enclosure(x, y, z, importance, diet);
+                }
+
+                @Override
+                public void deadZone(int x, int y, int radius) throws IOException {
+                    writer.deadZone(x, y, radius);
+                }
+            });
+        }
+    }
+
+    // --- Generation ---
+
+    private interface Sink {
+        void header(int width, int height, int depth, int depotX, int depotY, int depotZ, int battery) throws IOException;
+
+        void storage(int x, int y, int z, char diet) throws IOException;
+
+        void enclosure(int x, int y, int z, double importance, char diet) throws IOException;
+
+        void deadZone(int x, int y, int radius) throws IOException;
+    }
+
+    // Dead zones come first (everything else avoids them) but are written last, as in the format
+    private void emit(Sink sink) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int side = (int) Math.round(2500 * Math.sqrt(enclosures / 15_000.0));
+        int w = width > 0 ? width : Math.max(100, side);
+        int h = height > 0 ? height : Math.max(100, side);
+        int storageCount = storages > 0 ? storages : Math.max(DIETS.length, (int) Math.round(30 * enclosures / 15_000.0));
+        int battery = batteryCapacity > 0 ? batteryCapacity : (int) Math.round(3.7 * Math.max(w, h));
+
+        int depotX = w / 2;
+        int depotY = h / 2;
+        int depotZ = random.nextInt(depth / 2);
+        DeadZones zones = new DeadZones(random, w, h, depotX, depotY);
+
+        sink.header(w, h, depth, depotX, depotY, depotZ, battery);
+        int[] point = new int[2];
+        for (int i = 0; i < storageCount; i++) {
+            // The first storages cover every diet in use, so every enclosure has food
+            char diet = i < DIETS.length && dietWeights[i] > 0 ? DIETS[i] : diet(random);
+            zones.place(random, point);
+            sink.storage(point[0], point[1], random.nextInt(depth), diet);
+        }
+        for (int i = 0; i < enclosures; i++) {
+            zones.place(random, point);
+            sink.enclosure(point[0], point[1], random.nextInt(depth), importance(random), diet(random));
+        }
+        for (int i = 0; i < zones.count; i++) {
+            sink.deadZone(zones.x[i], zones.y[i], zones.radius[i]);
+        }
+    }
+
+    private int swaps(int battery) {
+        return batterySwaps >= 0 ? batterySwaps : ZooFileHandler.batterySwaps(battery, enclosures);
+    }
+
+    private char diet(SplittableRandom random) {
+        double total = dietWeights[0] + dietWeights[1] + dietWeights[2];
+        double pick = random.nextDouble() * total;
+        for (int i = 0; i < DIETS.length - 1; i++) {
+            if (pick < dietWeights[i]) return DIETS[i];
+            pick -= dietWeights[i];
+        }
+        return dietWeights[2] > 0 ? DIETS[2] : DIETS[dietWeights[1] > 0 ? 1 : 0];
+    }
+
+    private double importance(SplittableRandom random) {
+        double range = maxImportance - minImportance;
+        double value;
+        switch (importanceDistribution) {
+            case UNIFORM:
+                value = minImportance + random.nextDouble() * range;
+                break;
+            case EXPONENTIAL:
+                value = minImportance - Math.log(1 - random.nextDouble()) * range / 8;
+                break;
+            default:
+                double scale = range / 20;
+                value = minImportance + scale * (Math.pow(1 - random.nextDouble(), -1 / PARETO_ALPHA) - 1);
+                break;
+        }
+        return Math.round(Math.min(maxImportance, value) * 100) / 100.0;
+    }
+
+    /**
+     * The dead zones, with a grid of cells (one max diameter wide) for point-in-zone tests.
+     */
+    private class DeadZones {
+        private final int cellSize;
+        private final int columns;
+        private final int rows;
+        private final int[][] cells; // Zone indices per cell, by the cell of the zone's center
+        private int count;
+        private int[] x = new int[16];
+        private int[] y = new int[16];
+        private int[] radius = new int[16];
+        private final int width;
+        private final int height;
+
+        DeadZones(SplittableRandom random, int width, int height, int depotX, int depotY) {
+            this.width = width;
+            this.height = height;
+            this.cellSize = 2 * maxDeadZoneRadius;
+            this.columns = width / cellSize + 1;
+            this.rows = height / cellSize + 1;
+            int[] cellCounts = new int[columns * rows];
+
+            double target = deadZoneCoverage * width * height;
+            double covered = 0;
+            int rejected = 0;
+            while (covered < target) {
+                int r = minDeadZoneRadius + random.nextInt(maxDeadZoneRadius - minDeadZoneRadius + 1);
+                int cx = random.nextInt(width);
+                int cy = random.nextInt(height);
+                long dx = cx - depotX;
+                long dy = cy - depotY;
+                if (dx * dx + dy * dy <= (long) (r + 1) * (r + 1)) { // The depot stays clear
+                    if (++rejected == DEAD_ZONE_ATTEMPTS) {
+                        throw new IllegalArgumentException("No dead zone of radius " + minDeadZoneRadius + " to " + maxDeadZoneRadius
+                                + " fits on the " + width + " x " + height + " map without covering the depot;"
+                                + " lower the radius or enlarge the map");
+                    }
+                    continue;
+                }
+                rejected = 0;
+                if (count == x.length) {
+                    x = Arrays.copyOf(x, count * 2);
+                    y = Arrays.copyOf(y, count * 2);
+                    radius = Arrays.copyOf(radius, count * 2);
+                }
+                x[count] = cx;
+                y[count] = cy;
+                radius[count] = r;
+                cellCounts[cell(cx, cy)]++;
+                count++;
+                covered += Math.PI * r * r;
+            }
+            this.cells = new int[cellCounts.length][];
+            for (int c = 0; c < cells.length; c++) {
+                cells[c] = new int[cellCounts[c]];
+                cellCounts[c] = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                int c = cell(x[i], y[i]);
+                cells[c][cellCounts[c]++] = i;
+            }
+        }
+
+        // A random point outside every zone, or the last one tried if the map is that crowded
+        void place(SplittableRandom random, int[] point) {
+            for (int attempt = 0; attempt < PLACEMENT_ATTEMPTS; attempt++) {
+                point[0] = random.nextInt(width);
+                point[1] = random.nextInt(height);
+                if (!inside(point[0], point[1])) return;
+            }
+        }
+
+        boolean inside(int px, int py) {
+            if (count == 0) return false;
+            int column = px / cellSize;
+            int row = py / cellSize;
+            for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                    for (int i : cells[r * columns + c]) {
+                        long dx = px - x[i];
+                        long dy = py - y[i];
+                        if (dx * dx + dy * dy <= (long) radius[i] * radius[i]) return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private int cell(int px, int py) {
+            return (py / cellSize) * columns + px / cellSize;
+        }
+    }
+
+    /**
+     * Writes a generated zoo file.
+     * Usage: {@code ZooGenerator <output_file> [--enclosures n] [--storages n] [--size w h]
+     * [--diets c:h:o] [--importance uniform|exponential|pareto] [--importance-range min max]
+     * [--dead-zones coverage min_radius max_radius] [--battery n] [--seed n]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ZooGenerator <output_file> [--enclosures n] [--storages n] [--size w h]"
+                    + " [--diets c:h:o] [--importance uniform|exponential|pareto] [--importance-range min max]"
+                    + " [--dead-zones coverage min_radius max_radius] [--battery n] [--seed n]");
+            System.exit(1);
+        }
+        ZooGenerator generator = new ZooGenerator();
+        ImportanceDistribution distribution = generator.importanceDistribution;
+        double minImportance = generator.minImportance;
+        double maxImportance = generator.maxImportance;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--enclosures") && i + 1 < args.length) {
+                generator.setEnclosures(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--storages") && i + 1 < args.length) {
+                generator.setStorages(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--size") && i + 2 < args.length) {
+                generator.setDimensions(Integer.parseInt(args[++i]), Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--diets") && i + 1 < args.length) {
+                String[] weights = args[++i].split(":");
+                if (weights.length != 3) throw new IllegalArgumentException("Expected --diets c:h:o, e.g. 1:1:2");
+                generator.setDietWeights(Double.parseDouble(weights[0]), Double.parseDouble(weights[1]),
+                        Double.parseDouble(weights[2]));
+            } else if (args[i].equals("--importance") && i + 1 < args.length) {
+                distribution = ImportanceDistribution.valueOf(args[++i].toUpperCase());
+            } else if (args[i].equals("--importance-range") && i + 2 < args.length) {
+                minImportance = Double.parseDouble(args[++i]);
+                maxImportance = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--dead-zones") && i + 3 < args.length) {
+                generator.setDeadZones(Double.parseDouble(args[++i]), Integer.parseInt(args[++i]),
+                        Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--battery") && i + 1 < args.length) {
+                generator.setBatteryCapacity(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                generator.setSeed(Long.parseLong(args[++i]));
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            }
+        }
+        generator.setImportance(distribution, minImportance, maxImportance);
+
+        Path output = Path.of(args[0]);
+        long start = System.nanoTime();
+        generator.write(output);
+        System.out.printf("Wrote %d enclosures to %s (%d bytes) in %.1f s%n", generator.enclosures, output,
+                Files.size(output), (System.nanoTime() - start) / 1e9);
+    }
+}
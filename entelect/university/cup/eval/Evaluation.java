@@ -0,0 +1,75 @@
+package entelect.university.cup.eval;
+
+import entelect.university.cup.models.DroneRun;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of evaluating a solution: the runs with their distance and score filled in,
+ * the totals, and every rule the solution breaks.
+ */
+public class Evaluation {
+
+    private final List<DroneRun> runs;
+    private final double score;
+    private final double totalDistance;
+    private final int fedCount;
+    private final int enclosureCount;
+    private final List<String> violations;
+
+    public Evaluation(List<DroneRun> runs, double score, double totalDistance, int fedCount, int enclosureCount,
+                      List<String> violations) {
+        this.runs = Collections.unmodifiableList(runs);
+        this.score = score;
+        this.totalDistance = totalDistance;
+        this.fedCount = fedCount;
+        this.enclosureCount = enclosureCount;
+        this.violations = Collections.unmodifiableList(violations);
+    }
+
+    public List<DroneRun> getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return The total importance of the enclosures fed.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+
+    public int getFedCount() {
+        return fedCount;
+    }
+
+    public int getEnclosureCount() {
+        return enclosureCount;
+    }
+
+    /**
+     * @return A description of each broken rule, naming the run (1-based) and point.
+     */
+    public List<String> getViolations() {
+        return violations;
+    }
+
+    public boolean isValid() {
+        return violations.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Evaluation{" +
+               "runs=" + runs.size() +
+               ", fed=" + fedCount + "/" + enclosureCount +
+               ", score=" + String.format("%.2f", score) +
+               ", totalDistance=" + String.format("%.1f", totalDistance) +
+               ", violations=" + violations.size() +
+               '}';
+    }
+}
@@ -0,0 +1,248 @@
+package entelect.university.cup.eval;
+
+import entelect.university.cup.file.PathParser;
+import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.DroneRun;
+import entelect.university.cup.models.Point;
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.models.ZooColumns;
+import entelect.university.cup.solver.DeadZoneIndex;
+import entelect.university.cup.solver.DroneMathUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scores and validates solutions independently of the solvers, straight from the points of
+ * each run. One pass over every run follows the drone: it charges the depot takeoff, each
+ * horizontal leg, the landing and takeoff at every storage and enclosure it stops at (points
+ * that are neither are flown through at altitude) and the final depot landing. On the way
+ * it checks each leg against the dead zones, picks up food at storages, feeds an unfed
+ * enclosure of the carried diet, and flags:
+ * <ul>
+ *     <li>runs that do not start and end at the depot, or are longer than the battery,</li>
+ *     <li>legs through a dead zone,</li>
+ *     <li>landing at an enclosure without its food (no storage visited for it first),</li>
+ *     <li>feeding an enclosure a second time,</li>
+ *     <li>more runs than battery swaps allow.</li>
+ * </ul>
+ * Built once per zoo (locations are hashed by their XY coordinates); evaluating a solution
+ * then allocates only its result, and is safe from several threads.
+ */
+public class SolutionEvaluator {
+
+    private static final double EPSILON = 1e-6;
+    private static final int NONE = -1;
+
+    private final Zoo zoo;
+    private final ZooColumns columns;
+    private final DeadZoneIndex deadZones;
+    private final int depotX;
+    private final int depotY;
+    private final double depotVerticalCost;
+
+    // Open-addressing hash from packed XY to the chain of locations there: storages first, then enclosures,
+    // each in file order. Location numbers: storage s is s, enclosure e is storageCount + e.
+    private final long[] slotKeys;
+    private final int[] slotHeads;
+    private final int[] nextAtSameXY;
+    private final int mask;
+
+    public SolutionEvaluator(Zoo zoo) {
+        this.zoo = zoo;
+        this.columns = zoo.getColumns();
+        this.deadZones = new DeadZoneIndex(zoo);
+        this.depotX = columns.getDepotX();
+        this.depotY = columns.getDepotY();
+        this.depotVerticalCost = DroneMathUtils.FLIGHT_ALTITUDE - columns.getDepotZ();
+
+        int storageCount = columns.getStorageCount();
+        int locationCount = storageCount + columns.getEnclosureCount();
+        int size = Integer.highestOneBit(Math.max(4, locationCount * 2) - 1) << 1;
+        this.slotKeys = new long[size];
+        this.slotHeads = new int[size];
+        Arrays.fill(slotHeads, NONE);
+        this.nextAtSameXY = new int[locationCount];
+        this.mask = size - 1;
+        // Inserted back to front, so each chain lists its locations front to back
+        for (int location = locationCount - 1; location >= 0; location--) {
+            int x = location < storageCount ? columns.getStorageX()[location] : columns.getEnclosureX()[location - storageCount];
+            int y = location < storageCount ? columns.getStorageY()[location] : columns.getEnclosureY()[location - storageCount];
+            int slot = slotOf(key(x, y));
+            if (slotHeads[slot] == NONE) slotKeys[slot] = key(x, y);
+            nextAtSameXY[location] = slotHeads[slot];
+            slotHeads[slot] = location;
+        }
+    }
+
+    /**
+     * Evaluates a solution file.
+     *
+     * @param file The solution, in the output format.
+     * @return The evaluation.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the file is malformed.
+     */
+    public Evaluation evaluate(Path file) throws IOException {
+        return evaluateCoordinates(PathParser.parse(file));
+    }
+
+    /**
+     * Evaluates runs given as point paths, e.g. a candidate before it is written.
+     */
+    public Evaluation evaluate(List<List<Point>> paths) {
+        List<int[]> runs = new ArrayList<>(paths.size());
+        for (List<Point> path : paths) {
+            int[] coordinates = new int[path.size() * 2];
+            for (int i = 0; i < path.size(); i++) {
+                coordinates[2 * i] = path.get(i).getX();
+                coordinates[2 * i + 1] = path.get(i).getY();
+            }
+            runs.add(coordinates);
+        }
+        return evaluateCoordinates(runs);
+    }
+
+    /**
+     * Evaluates runs given as interleaved coordinates ({@code x0, y0, x1, y1, ...}).
+     */
+    public Evaluation evaluateCoordinates(List<int[]> runs) {
+        int storageCount = columns.getStorageCount();
+        boolean[] fed = new boolean[columns.getEnclosureCount()];
+        List<DroneRun> droneRuns = new ArrayList<>(runs.size());
+        List<String> violations = new ArrayList<>();
+        double totalScore = 0;
+        double totalDistance = 0;
+        int fedCount = 0;
+        long legTests = 0; // Added to the metrics once
+
+        int allowedRuns = zoo.getBatterySwaps() + 1;
+        if (runs.size() > allowedRuns) {
+            violations.add(runs.size() + " runs but only " + allowedRuns + " allowed");
+        }
+
+        for (int r = 0; r < runs.size(); r++) {
+            int[] c = runs.get(r);
+            int points = c.length / 2;
+            int run = r + 1;
+            if (points < 2 || c[0] != depotX || c[1] != depotY || c[c.length - 2] != depotX || c[c.length - 1] != depotY) {
+                violations.add("Run " + run + " does not start and end at the depot");
+            }
+
+            double distance = depotVerticalCost; // Takeoff
+            double score = 0;
+            char food = 0;
+            for (int i = 1; i < points; i++) {
+                int ax = c[2 * i - 2], ay = c[2 * i - 1];
+                int bx = c[2 * i], by = c[2 * i + 1];
+                double dx = bx - ax;
+                double dy = by - ay;
+                distance += Math.sqrt(dx * dx + dy * dy);
+                legTests++;
+                if (deadZones.intersectsAny(ax, ay, bx, by)) {
+                    violations.add("Run " + run + " crosses a dead zone between (" + ax + "," + ay + ") and (" + bx + "," + by + ")");
+                }
+                if (bx == depotX && by == depotY) {
+                    if (i == points - 1) distance += depotVerticalCost; // Final landing
+                    continue; // Passing the depot costs no climb
+                }
+
+                int z = NONE; // Only storages and enclosures are landed at
+                int enclosureHere = NONE;
+                int alreadyFed = NONE;
+                boolean storageHere = false;
+                boolean fedHere = false;
+                for (int location = slotHeads[slotOf(key(bx, by))]; location != NONE; location = nextAtSameXY[location]) {
+                    if (location < storageCount) {
+                        if (!storageHere) {
+                            storageHere = true;
+                            z = columns.getStorageZ()[location];
+                            food = (char) columns.getStorageDiet()[location];
+                        }
+                        continue;
+                    }
+                    int e = location - storageCount;
+                    if (enclosureHere == NONE) enclosureHere = e;
+                    if (fedHere || columns.getEnclosureDiet()[e] != food) continue;
+                    if (fed[e]) {
+                        if (alreadyFed == NONE) alreadyFed = e;
+                        continue;
+                    }
+                    fed[e] = true;
+                    fedHere = true;
+                    fedCount++;
+                    score += columns.getImportance()[e];
+                    if (z == NONE) z = columns.getEnclosureZ()[e];
+                }
+                if (enclosureHere != NONE && !fedHere) {
+                    if (z == NONE) z = columns.getEnclosureZ()[enclosureHere];
+                    if (alreadyFed != NONE) {
+                        violations.add("Run " + run + " feeds enclosure " + alreadyFed + " again at (" + bx + "," + by + ")");
+                    } else if (!storageHere) {
+                        violations.add("Run " + run + " lands at enclosure " + enclosureHere + " at (" + bx + "," + by
+                                + ") without its food");
+                    }
+                }
+                if (z != NONE) distance += (DroneMathUtils.FLIGHT_ALTITUDE - z) * 2.0;
+            }
+            if (distance > zoo.getBatteryCapacity() + EPSILON) {
+                violations.add("Run " + run + " needs " + String.format("%.2f", distance) + " m of a "
+                        + zoo.getBatteryCapacity() + " m battery");
+            }
+
+            List<Point> path = new ArrayList<>(points);
+            for (int i = 0; i < points; i++) {
+                path.add(new Point(c[2 * i], c[2 * i + 1], 0));
+            }
+            DroneRun droneRun = new DroneRun(path);
+            droneRun.setDistance(distance);
+            droneRun.setScore(score);
+            droneRuns.add(droneRun);
+            totalScore += score;
+            totalDistance += distance;
+        }
+        Metrics.DEAD_ZONE_TESTS.add(legTests);
+        return new Evaluation(droneRuns, totalScore, totalDistance, fedCount, columns.getEnclosureCount(), violations);
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    // Linear probing on a mixed key
+    private int slotOf(long key) {
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (slotHeads[slot] != NONE && slotKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Prints the evaluation of a solution file.
+     * Usage: {@code SolutionEvaluator <input_zoo_file> <output_path_file>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SolutionEvaluator <input_zoo_file> <output_path_file>");
+            System.exit(1);
+        }
+        Zoo zoo = ZooFileHandler.readZooFromFile(args[0]);
+        long start = System.nanoTime();
+        Evaluation evaluation = new SolutionEvaluator(zoo).evaluate(Path.of(args[1]));
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.println(evaluation + String.format(" in %.1f ms", millis));
+        List<String> violations = evaluation.getViolations();
+        for (int i = 0; i < Math.min(20, violations.size()); i++) {
+            System.out.println("  " + violations.get(i));
+        }
+        if (violations.size() > 20) {
+            System.out.println("  ... and " + (violations.size() - 20) + " more");
+        }
+        System.exit(evaluation.isValid() ? 0 : 2);
+    }
+}
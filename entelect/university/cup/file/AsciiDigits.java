@@ -0,0 +1,54 @@
+package entelect.university.cup.file;
+
+/**
+ * Encodes integers as ASCII decimal straight into a byte array, for the streaming writers
+ * ({@link PathWriter}, {@link ZooWriter}), without going through a String.
+ */
+final class AsciiDigits {
+
+    /**
+     * The most bytes an int takes: a sign and ten digits.
+     */
+    static final int MAX_INT_BYTES = 11;
+
+    private static final byte[] MIN_VALUE = Integer.toString(Integer.MIN_VALUE).getBytes();
+
+    private AsciiDigits() {
+    }
+
+    /**
+     * Writes an int as Integer.toString would print it.
+     *
+     * @param bytes    The array to write into, with room for {@link #MAX_INT_BYTES} at the position.
+     * @param position Where the first byte goes.
+     * @param value    The value.
+     * @return The position after the last byte written.
+     */
+    static int writeInt(byte[] bytes, int position, int value) {
+        if (value == Integer.MIN_VALUE) {
+            System.arraycopy(MIN_VALUE, 0, bytes, position, MIN_VALUE.length);
+            return position + MIN_VALUE.length;
+        }
+        if (value < 0) {
+            bytes[position++] = '-';
+            value = -value;
+        }
+        // Digits written back to front into their final place
+        int end = position + digitCount(value);
+        int at = end;
+        do {
+            int next = value / 10;
+            bytes[--at] = (byte) ('0' + (value - next * 10));
+            value = next;
+        } while (value != 0);
+        return end;
+    }
+
+    private static int digitCount(int value) {
+        int digits = 1;
+        for (long limit = 10; digits < 10 && value >= limit; limit *= 10) {
+            digits++;
+        }
+        return digits;
+    }
+}
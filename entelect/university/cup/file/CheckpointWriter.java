@@ -0,0 +1,115 @@
+package entelect.university.cup.file;
+
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.solver.Solution;
+import entelect.university.cup.solver.SolutionListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Keeps an output file up to date with the best solution of a running solve. Solutions
+ * reported by the search threads are only compared and parked, so reporting never waits
+ * on the disk; a single writer thread turns the latest one into paths and replaces the
+ * file with {@link ZooFileHandler#replacePathsFile}. Solutions that arrive while a write
+ * is in progress are coalesced, and only the best reported so far (by score, then by
+ * shorter distance) is ever written. As the file is replaced by a rename, stopping the
+ * process at any moment leaves the last checkpoint complete.
+ */
+public class CheckpointWriter implements SolutionListener, Closeable {
+
+    private final String filePath;
+    private final Thread writer;
+
+    // Guarded by this
+    private Solution pending;
+    private double bestScore = Double.NEGATIVE_INFINITY;
+    private double bestDistance = Double.POSITIVE_INFINITY;
+    private boolean closed;
+    private int checkpoints;
+    private IOException failure;
+
+    public CheckpointWriter(String filePath) {
+        this.filePath = filePath;
+        this.writer = new Thread(this::writeLoop, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void improved(Solution solution) {
+        double score = solution.getScore();
+        double distance = solution.getTotalDistance();
+        synchronized (this) {
+            if (closed || score < bestScore || (score == bestScore && distance >= bestDistance)) return;
+            bestScore = score;
+            bestDistance = distance;
+            pending = solution;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return The number of times the file has been written.
+     */
+    public synchronized int getCheckpoints() {
+        return checkpoints;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Solution next;
+            synchronized (this) {
+                while (pending == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending == null) return; // Closed, and everything written
+                next = pending;
+                pending = null;
+            }
+            write(next);
+        }
+    }
+
+    private void write(Solution solution) {
+        solution.removeEmptyRuns();
+        try {
+            ZooFileHandler.replacePathsFile(solution.toPaths(), filePath);
+            synchronized (this) {
+                checkpoints++;
+                failure = null;
+            }
+            Console.println("Checkpoint: score " + String.format("%.2f", solution.getScore()) + " written to " + filePath);
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e; // The next checkpoint may still succeed
+            }
+        }
+    }
+
+    /**
+     * Writes the best solution reported, if it is not in the file yet, and stops the writer.
+     * Can be called more than once (e.g. again from a shutdown hook).
+     *
+     * @throws IOException If the last write failed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (failure != null) throw failure;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package entelect.university.cup.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte-level parser for solution files in the format {@link PathWriter} writes:
+ * {@code [[(x,y),(x,y)],[...]]}. Each run comes back as one primitive array of interleaved
+ * coordinates ({@code x0, y0, x1, y1, ...}), without per-point objects. Whitespace between
+ * tokens is ignored; anything else unexpected is reported with its line and column.
+ */
+public class PathParser {
+
+    private final byte[] bytes;
+    private final int limit;
+    private int position;
+    private int line = 1;
+    private int lineStart;
+
+    private int[] coordinates = new int[256]; // The run being parsed
+
+    private PathParser(byte[] bytes, int limit) {
+        this.bytes = bytes;
+        this.limit = limit;
+    }
+
+    /**
+     * Reads and parses a solution file.
+     *
+     * @param file The solution file.
+     * @return The runs as interleaved coordinates, in file order.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the content is malformed.
+     */
+    public static List<int[]> parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Solution file too large: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the file is in
+            }
+            return new PathParser(buffer.array(), buffer.position()).parseRuns();
+        }
+    }
+
+    private List<int[]> parseRuns() {
+        List<int[]> runs = new ArrayList<>();
+        expect('[');
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+        } else {
+            while (true) {
+                runs.add(parseRun());
+                skipWhitespace();
+                int c = peek();
+                if (c == ']') {
+                    position++;
+                    break;
+                }
+                if (c != ',') throw error("Expected ',' or ']'");
+                position++;
+            }
+        }
+        skipWhitespace();
+        if (position < limit) throw error("Unexpected content after the list of runs");
+        return runs;
+    }
+
+    private int[] parseRun() {
+        expect('[');
+        int count = 0;
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return new int[0];
+        }
+        while (true) {
+            if (count + 2 > coordinates.length) coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+            expect('(');
+            coordinates[count++] = parseInt();
+            expect(',');
+            coordinates[count++] = parseInt();
+            expect(')');
+            skipWhitespace();
+            int c = peek();
+            if (c == ']') {
+                position++;
+                return Arrays.copyOf(coordinates, count);
+            }
+            if (c != ',') throw error("Expected ',' or ']'");
+            position++;
+        }
+    }
+
+    private int parseInt() {
+        skipWhitespace();
+        boolean negative = peek() == '-';
+        if (negative) position++;
+        int start = position;
+        long value = 0;
+        while (position < limit) {
+            int c = bytes[position];
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                position = start;
+                throw error("Integer out of range");
+            }
+            position++;
+        }
+        if (position == start) throw error("Expected an integer");
+        return (int) (negative ? -value : value);
+    }
+
+    private void expect(char expected) {
+        if (position < limit && bytes[position] == expected) {
+            position++; // Common case: no whitespace in between
+            return;
+        }
+        skipWhitespace();
+        if (peek() != expected) throw error("Expected '" + expected + "'");
+        position++;
+    }
+
+    private int peek() {
+        return position < limit ? bytes[position] : -1;
+    }
+
+    private void skipWhitespace() {
+        while (position < limit) {
+            int c = bytes[position];
+            if (c == '\n') {
+                line++;
+                lineStart = position + 1;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        String found = position < limit ? "'" + (char) bytes[position] + "'" : "end of file";
+        return new IllegalArgumentException(message + " at line " + line + ", column "
+                + (position - lineStart + 1) + " but found " + found);
+    }
+}
@@ -0,0 +1,145 @@
+package entelect.university.cup.file;
+
+import entelect.university.cup.models.Point;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Streams drone runs to a file (or any other channel) in the submission format {@code [[(x,y),(x,y)],[...]]}.
+ * Points are encoded straight into one fixed byte buffer that is flushed through the
+ * channel whenever it fills up, so memory stays the same however many runs
+ * and waypoints are written. Runs can be given as point lists or as primitive coordinates.
+ *
+ * <p>Usage: {@link #beginRun()}, any number of {@link #point(int, int)}, {@link #endRun()};
+ * repeat per run, then {@link #close()} to finish the outer list.
+ */
+public class PathWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POINT_BYTES = 2 * AsciiDigits.MAX_INT_BYTES + 4; // Two ints, "(,)" and a separator
+
+    private final WritableByteChannel channel;
+    private final boolean sync;
+    private final ByteBuffer buffer;
+    private final byte[] bytes; // The buffer's array, written through directly
+    private int position;
+    private boolean firstRun = true;
+    private boolean firstPoint;
+    private boolean closed;
+
+    public PathWriter(Path file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * @param sync Whether {@link #close()} forces the content to the storage device before returning.
+     */
+    public PathWriter(Path file, boolean sync) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), sync);
+    }
+
+    /**
+     * @param channel Where the runs go (e.g. a response stream); {@link #close()} closes it.
+     */
+    public PathWriter(WritableByteChannel channel) {
+        this(channel, false);
+    }
+
+    private PathWriter(WritableByteChannel channel, boolean sync) {
+        this.sync = sync;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.bytes = buffer.array();
+        bytes[position++] = '['; // Start of the main list
+    }
+
+    public void beginRun() throws IOException {
+        ensure(2);
+        if (!firstRun) bytes[position++] = ','; // Separator between runs
+        bytes[position++] = '[';
+        firstRun = false;
+        firstPoint = true;
+    }
+
+    public void point(int x, int y) throws IOException {
+        ensure(MAX_POINT_BYTES);
+        if (!firstPoint) bytes[position++] = ','; // Separator between points
+        bytes[position++] = '(';
+        writeInt(x);
+        bytes[position++] = ',';
+        writeInt(y);
+        bytes[position++] = ')';
+        firstPoint = false;
+    }
+
+    public void endRun() throws IOException {
+        ensure(1);
+        bytes[position++] = ']';
+    }
+
+    /**
+     * Writes a whole run of points.
+     */
+    public void run(List<Point> path) throws IOException {
+        beginRun();
+        for (Point p : path) {
+            point(p.getX(), p.getY());
+        }
+        endRun();
+    }
+
+    /**
+     * Writes a whole run given as interleaved coordinates {@code x0, y0, x1, y1, ...}.
+     *
+     * @param coordinates The coordinates.
+     * @param points      The number of points to take from the front of the array.
+     */
+    public void run(int[] coordinates, int points) throws IOException {
+        beginRun();
+        for (int i = 0; i < points; i++) {
+            point(coordinates[2 * i], coordinates[2 * i + 1]);
+        }
+        endRun();
+    }
+
+    /**
+     * Ends the main list, flushes and closes the file (or channel).
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            ensure(1);
+            bytes[position++] = ']'; // End of the main list
+            flush();
+            if (sync) ((FileChannel) channel).force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int room) throws IOException {
+        if (position + room > bytes.length) flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.clear().limit(position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+
+    private void writeInt(int value) {
+        position = AsciiDigits.writeInt(bytes, position, value);
+    }
+}
@@ -0,0 +1,372 @@
+package entelect.university.cup.file;
+
+import entelect.university.cup.models.Point;
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.models.ZooColumns;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Solutions of earlier solves kept in a directory, one file per zoo and solver configuration,
+ * so solving the same zoo again with the same settings returns the stored paths at once.
+ * <ul>
+ *     <li>Entries are keyed by a SHA-256 of the parsed zoo and the configuration, and named
+ *     {@code <layout>-<content>.sol}: the layout part hashes only the map (dimensions, depot,
+ *     battery, storages and dead zones), so zoos that differ in their enclosures share it.
+ *     Such an entry of a similar zoo can seed the improvement phases
+ *     ({@link #similar}).</li>
+ *     <li>Each file holds the score and the run points as zigzag varint deltas, a few bytes
+ *     a point. Files are written to a temporary file and renamed, so concurrent solves and
+ *     interrupted writes never leave a partial entry.</li>
+ *     <li>The directory is kept under a size bound by deleting the least recently used
+ *     entries; a hit refreshes the file's modification time.</li>
+ * </ul>
+ * Safe to share between threads and processes. Unreadable entries count as misses.
+ */
+public class SolutionCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final String SUFFIX = ".sol";
+    private static final int MAGIC = 0x5a534f31; // "ZSO1"
+    private static final int LAYOUT_HEX = 16;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * @param directory Where the entries are kept; created on the first store.
+     * @param maxBytes  The most the entries may take up together.
+     */
+    public SolutionCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * A cache key: the hashes of a zoo's layout and of the whole zoo with a solver configuration.
+     */
+    public static class Key {
+        private final String layout;
+        private final String content;
+
+        private Key(String layout, String content) {
+            this.layout = layout;
+            this.content = content;
+        }
+
+        String fileName() {
+            return layout + "-" + content + SUFFIX;
+        }
+
+        @Override
+        public String toString() {
+            return layout + "-" + content;
+        }
+    }
+
+    /**
+     * A stored solution.
+     */
+    public static class Entry {
+        private final List<List<Point>> paths;
+        private final double score;
+
+        private Entry(List<List<Point>> paths, double score) {
+            this.paths = paths;
+            this.score = score;
+        }
+
+        public List<List<Point>> getPaths() {
+            return paths;
+        }
+
+        /**
+         * @return The score of the paths for the zoo they were stored for.
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * @param zoo           The zoo.
+     * @param configuration Every solver setting that changes the result, as text.
+     * @return The key of the zoo's solution under that configuration.
+     */
+    public static Key key(Zoo zoo, String configuration) {
+        ZooColumns c = zoo.getColumns();
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        putInts(digest, buffer, c.getDimensionX(), c.getDimensionY(), c.getDimensionZ(),
+                c.getDepotX(), c.getDepotY(), c.getDepotZ(), c.getBatteryCapacity(), c.getBatterySwaps());
+        putInts(digest, buffer, c.getStorageCount());
+        putInts(digest, buffer, c.getStorageX(), c.getStorageY(), c.getStorageZ());
+        putBytes(digest, buffer, c.getStorageDiet());
+        putInts(digest, buffer, c.getDeadZoneCount());
+        putInts(digest, buffer, c.getDeadZoneX(), c.getDeadZoneY(), c.getDeadZoneRadius());
+        flush(digest, buffer);
+        String layout = HexFormat.of().formatHex(clone(digest).digest()).substring(0, LAYOUT_HEX);
+
+        putInts(digest, buffer, c.getEnclosureCount());
+        putInts(digest, buffer, c.getEnclosureX(), c.getEnclosureY(), c.getEnclosureZ());
+        for (double importance : c.getImportance()) {
+            if (buffer.remaining() < Double.BYTES) flush(digest, buffer);
+            buffer.putDouble(importance);
+        }
+        putBytes(digest, buffer, c.getEnclosureDiet());
+        flush(digest, buffer);
+        digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+        String content = HexFormat.of().formatHex(digest.digest()).substring(0, 32);
+        return new Key(layout, content);
+    }
+
+    /**
+     * @return The stored solution for the key, or null if there is none.
+     */
+    public Entry get(Key key) {
+        Path file = directory.resolve(key.fileName());
+        Entry entry = read(file);
+        if (entry != null) touch(file);
+        return entry;
+    }
+
+    /**
+     * Finds a solution stored for another zoo with the same layout, to start from instead
+     * of from scratch. Its paths may not all fit the zoo asked about.
+     *
+     * @return The most recently used entry with the key's layout but other content, or null.
+     */
+    public Entry similar(Key key) {
+        Path newest = null;
+        FileTime newestTime = null;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, key.layout + "-*" + SUFFIX)) {
+            for (Path file : entries) {
+                if (file.getFileName().toString().equals(key.fileName())) continue;
+                FileTime time = Files.getLastModifiedTime(file);
+                if (newestTime == null || time.compareTo(newestTime) > 0) {
+                    newest = file;
+                    newestTime = time;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return null; // Nothing stored yet
+        } catch (IOException e) {
+            System.err.println("Error listing solution cache: " + e.getMessage());
+            return null;
+        }
+        if (newest == null) return null;
+        Entry entry = read(newest);
+        if (entry != null) touch(newest);
+        return entry;
+    }
+
+    /**
+     * Stores a solution, replacing any under the same key, then evicts the least recently
+     * used entries while the cache is over its size bound.
+     *
+     * @throws IOException If the entry cannot be written.
+     */
+    public void put(Key key, List<List<Point>> paths, double score) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(key.fileName());
+        Path temp = Files.createTempFile(directory, key.toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeDouble(score);
+                writeVarInt(out, paths.size());
+                for (List<Point> path : paths) {
+                    writeVarInt(out, path.size());
+                    int x = 0, y = 0, z = 0;
+                    for (Point p : path) {
+                        writeVarInt(out, zigzag(p.getX() - x));
+                        writeVarInt(out, zigzag(p.getY() - y));
+                        writeVarInt(out, zigzag(p.getZ() - z));
+                        x = p.getX();
+                        y = p.getY();
+                        z = p.getZ();
+                    }
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        evict();
+    }
+
+    // Deletes the least recently used entries until the rest fit in maxBytes
+    private synchronized void evict() throws IOException {
+        Map<Path, BasicFileAttributes> files = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : entries) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    files.put(file, attributes);
+                    total += attributes.size();
+                } catch (NoSuchFileException e) {
+                    // Evicted by another process meanwhile
+                }
+            }
+        }
+        if (total <= maxBytes) return;
+
+        List<Path> oldestFirst = new ArrayList<>(files.keySet());
+        oldestFirst.sort(Comparator.comparing(file -> files.get(file).lastModifiedTime()));
+        for (int i = 0; i < oldestFirst.size() && total > maxBytes; i++) {
+            Path file = oldestFirst.get(i);
+            Files.deleteIfExists(file);
+            total -= files.get(file).size();
+        }
+    }
+
+    private static Entry read(Path file) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Error reading solution cache entry " + file + ": " + e.getMessage());
+            return null;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            if (in.getInt() != MAGIC) throw new IllegalArgumentException("not a cache entry");
+            double score = in.getDouble();
+            int runs = readVarInt(in);
+            List<List<Point>> paths = new ArrayList<>(runs);
+            for (int r = 0; r < runs; r++) {
+                int size = readVarInt(in);
+                List<Point> path = new ArrayList<>(size);
+                int x = 0, y = 0, z = 0;
+                for (int i = 0; i < size; i++) {
+                    x += unzigzag(readVarInt(in));
+                    y += unzigzag(readVarInt(in));
+                    z += unzigzag(readVarInt(in));
+                    path.add(new Point(x, y, z));
+                }
+                paths.add(path);
+            }
+            return new Entry(paths, score);
+        } catch (RuntimeException e) {
+            // Truncated or foreign file: drop it so it is rebuilt
+            System.err.println("Discarding damaged solution cache entry " + file);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Left for eviction
+            }
+            return null;
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Evicted meanwhile, or read-only: the entry just ages as if unused
+        }
+    }
+
+    // --- Encoding ---
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // --- Hashing ---
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Required of every Java platform
+        }
+    }
+
+    private static MessageDigest clone(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 digest cannot be cloned", e);
+        }
+    }
+
+    private static void putInts(MessageDigest digest, ByteBuffer buffer, int... values) {
+        for (int value : values) {
+            if (buffer.remaining() < Integer.BYTES) flush(digest, buffer);
+            buffer.putInt(value);
+        }
+    }
+
+    private static void putInts(MessageDigest digest, ByteBuffer buffer, int[] xs, int[] ys, int[] zs) {
+        putInts(digest, buffer, xs);
+        putInts(digest, buffer, ys);
+        putInts(digest, buffer, zs);
+    }
+
+    private static void putBytes(MessageDigest digest, ByteBuffer buffer, byte[] values) {
+        flush(digest, buffer);
+        digest.update(values);
+    }
+
+    private static void flush(MessageDigest digest, ByteBuffer buffer) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+    }
+}
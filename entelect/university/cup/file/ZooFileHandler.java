@@ -1,29 +1,25 @@
 package entelect.university.cup.file;
 
+import entelect.university.cup.metrics.Metrics;
 import entelect.university.cup.models.*; // Import all model classes
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Handles reading Zoo specifications from text files and writing drone paths to text files.
  */
 public class ZooFileHandler {
 
-    // Patterns for parsing coordinates and lists
-    private static final Pattern POINT_PATTERN = Pattern.compile("\\((\\d+),(\\d+),(\\d+)\\)");
-    private static final Pattern FOOD_STORAGE_ITEM_PATTERN = Pattern.compile("\\((\\d+),(\\d+),(\\d+),([cho])\\)");
-    private static final Pattern ENCLOSURE_ITEM_PATTERN = Pattern.compile("\\((\\d+),(\\d+),(\\d+),(\\d+\\.?\\d*),([cho])\\)");
-    private static final Pattern DEADZONE_ITEM_PATTERN = Pattern.compile("\\((\\d+),(\\d+),(\\d+)\\)"); // Simplified, radius is separate in text? No, PDF example has (x,y,r)
-    private static final Pattern DEADZONE_ITEM_PATTERN_PDF = Pattern.compile("\\((\\d+),(\\d+),(\\d+)\\)"); // Matches PDF example (5,20,1)
-
     /**
      * Reads the zoo specification from a given file path.
      *
@@ -33,146 +29,210 @@ public class ZooFileHandler {
      * @throws IllegalArgumentException If the file format is invalid.
      */
     public static Zoo readZooFromFile(String filePath) throws IOException, IllegalArgumentException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            Point dimensions = parsePoint(reader.readLine());
-            Point droneDepot = parsePoint(reader.readLine());
-            int batteryCapacity = Integer.parseInt(reader.readLine().trim());
-            List<FoodStorage> foodStorages = parseFoodStorageList(reader.readLine());
-            List<Enclosure> enclosures = parseEnclosureList(reader.readLine());
-            List<DeadZone> deadzones = parseDeadZoneList(reader.readLine());
-
-            // Determine batterySwaps based on level conventions (approximate)
-            // A more robust way might be needed if file structure changes
-            int batterySwaps = 0; // Default for Level 1 adjusted later
-            if (batteryCapacity == 1125) batterySwaps = 10;
-            else if (batteryCapacity == 2750) batterySwaps = 50;
-            else if (batteryCapacity == 9250) batterySwaps = 250;
-            else if (batteryCapacity == 999999) batterySwaps = 0; // Level 1 case
-
-
-            return new Zoo(dimensions, droneDepot, batteryCapacity, batterySwaps, foodStorages, enclosures, deadzones);
+        long start = Metrics.PARSE.start();
+        try {
+            return toZoo(ZooParser.parse(Path.of(filePath)));
 
         } catch (IOException e) {
             System.err.println("Error reading zoo file: " + filePath);
             throw e;
-        } catch (NullPointerException | IllegalArgumentException e) {
+        } catch (IllegalArgumentException e) {
             System.err.println("Error parsing zoo file content: " + filePath);
-            throw new IllegalArgumentException("Invalid file format in " + filePath, e);
+            throw new IllegalArgumentException("Invalid file format in " + filePath + ": " + e.getMessage(), e);
+        } finally {
+            Metrics.PARSE.stop(start);
         }
     }
 
-    private static Point parsePoint(String line) {
-        if (line == null) throw new IllegalArgumentException("Missing line for Point.");
-        Matcher matcher = POINT_PATTERN.matcher(line.trim());
-        if (matcher.matches()) {
-            int x = Integer.parseInt(matcher.group(1));
-            int y = Integer.parseInt(matcher.group(2));
-            int z = Integer.parseInt(matcher.group(3));
-            return new Point(x, y, z);
-        }
-        throw new IllegalArgumentException("Invalid Point format: " + line);
-    }
-
-    private static List<FoodStorage> parseFoodStorageList(String line) {
-        List<FoodStorage> list = new ArrayList<>();
-        if (line == null || line.trim().equals("[]")) return list;
-
-        Matcher matcher = FOOD_STORAGE_ITEM_PATTERN.matcher(line);
-        while (matcher.find()) {
-            int x = Integer.parseInt(matcher.group(1));
-            int y = Integer.parseInt(matcher.group(2));
-            int z = Integer.parseInt(matcher.group(3));
-            char diet = matcher.group(4).charAt(0);
-            list.add(new FoodStorage(new Point(x, y, z), diet));
-        }
-        // Basic check if any items were found if the line wasn't empty
-        if (!line.trim().matches("\\[\\s*\\]") && list.isEmpty() && line.trim().length() > 2) {
-             throw new IllegalArgumentException("Invalid FoodStorage list format or content: " + line);
+    /**
+     * Reads a zoo specification that is already in memory (e.g. sent to the solver service).
+     *
+     * @param content The specification, in the file format.
+     * @param source  Where the content came from, for the error message.
+     * @return A Zoo object representing the parsed specification.
+     * @throws IllegalArgumentException If the format is invalid.
+     */
+    public static Zoo readZoo(byte[] content, String source) throws IllegalArgumentException {
+        long start = Metrics.PARSE.start();
+        try {
+            ZooParser parser = new ZooParser(ByteBuffer.wrap(content));
+            parser.parse();
+            return toZoo(parser);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid zoo format in " + source + ": " + e.getMessage(), e);
+        } finally {
+            Metrics.PARSE.stop(start);
         }
-        return list;
     }
 
-     private static List<Enclosure> parseEnclosureList(String line) {
-        List<Enclosure> list = new ArrayList<>();
-         if (line == null || line.trim().equals("[]")) return list;
-
-        Matcher matcher = ENCLOSURE_ITEM_PATTERN.matcher(line);
-        while (matcher.find()) {
-            int x = Integer.parseInt(matcher.group(1));
-            int y = Integer.parseInt(matcher.group(2));
-            int z = Integer.parseInt(matcher.group(3));
-            double importance = Double.parseDouble(matcher.group(4));
-            char diet = matcher.group(5).charAt(0);
-            list.add(new Enclosure(new Point(x, y, z), importance, diet));
-        }
-         if (!line.trim().matches("\\[\\s*\\]") && list.isEmpty() && line.trim().length() > 2) {
-             throw new IllegalArgumentException("Invalid Enclosure list format or content: " + line);
-         }
-        return list;
+    private static Zoo toZoo(ZooParser parser) {
+        int batterySwaps = batterySwaps(parser.getBatteryCapacity(), parser.getEnclosureCount());
+        return new Zoo(parser.toColumns(batterySwaps));
     }
 
-    // Adjusted DeadZone parsing based on PDF example (x,y,r) where r is the 3rd int
-     private static List<DeadZone> parseDeadZoneList(String line) {
-        List<DeadZone> list = new ArrayList<>();
-         if (line == null || line.trim().equals("[]")) return list;
-
-        // Use the PDF example pattern matcher
-        Matcher matcher = DEADZONE_ITEM_PATTERN_PDF.matcher(line);
-        while (matcher.find()) {
-            int x = Integer.parseInt(matcher.group(1));
-            int y = Integer.parseInt(matcher.group(2));
-            int r = Integer.parseInt(matcher.group(3)); // Third element is radius 'r'
-            // Create a dummy Point for the center, Z is irrelevant
-            list.add(new DeadZone(new Point(x, y, 0), r));
-        }
-         if (!line.trim().matches("\\[\\s*\\]") && list.isEmpty() && line.trim().length() > 2) {
-             // Allow empty list if line genuinely represents empty []
-             if (!line.trim().equals("[]")) {
-                 throw new IllegalArgumentException("Invalid DeadZone list format or content: " + line);
-             }
-         }
-        return list;
+    /**
+     * The file format has no battery swaps, so they are inferred: from the battery capacity
+     * for the known levels, otherwise one run per 60 enclosures (the density of level 4).
+     *
+     * @param batteryCapacity The battery capacity in the file.
+     * @param enclosureCount  The number of enclosures in the file.
+     * @return The number of battery swaps the zoo allows.
+     */
+    public static int batterySwaps(int batteryCapacity, int enclosureCount) {
+        if (batteryCapacity == 1125) return 10;
+        if (batteryCapacity == 2750) return 50;
+        if (batteryCapacity == 9250) return 250;
+        if (batteryCapacity == 999999) return 0; // Level 1 case
+        return Math.max(0, enclosureCount / 60 - 1);
     }
 
 
     /**
      * Writes the calculated drone paths to a file in the specified format.
+     * Detour waypoints around dead zones are part of the run paths and are written like any other point.
+     * The output is streamed through a {@link PathWriter}, so it is never held in memory as a whole.
      *
      * @param droneRuns The list of drone runs (each run is a list of Points).
      * @param filePath  The path to the output file.
      * @throws IOException If an error occurs during file writing.
      */
     public static void writePathsToFile(List<List<Point>> droneRuns, String filePath) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        sb.append("["); // Start of the main list
+        long start = Metrics.WRITE.start();
+        try (PathWriter writer = new PathWriter(Path.of(filePath))) {
+            for (List<Point> runPath : droneRuns) {
+                writer.run(runPath);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing paths file: " + filePath);
+            throw e;
+        } finally {
+            Metrics.WRITE.stop(start);
+        }
+    }
 
-        boolean firstRun = true;
-        for (List<Point> runPath : droneRuns) {
-            if (!firstRun) {
-                sb.append(","); // Separator between runs
+    /**
+     * Writes the calculated drone paths to a channel (e.g. a network response), in the
+     * same format as {@link #writePathsToFile(List, String)}. The channel is closed at the end.
+     *
+     * @param droneRuns The list of drone runs (each run is a list of Points).
+     * @param channel   Where the paths go.
+     * @throws IOException If an error occurs during writing.
+     */
+    public static void writePaths(List<List<Point>> droneRuns, WritableByteChannel channel) throws IOException {
+        long start = Metrics.WRITE.start();
+        try (PathWriter writer = new PathWriter(channel)) {
+            for (List<Point> runPath : droneRuns) {
+                writer.run(runPath);
             }
-            sb.append("["); // Start of a single run list
+        } finally {
+            Metrics.WRITE.stop(start);
+        }
+    }
 
-            boolean firstPoint = true;
-            for (Point p : runPath) {
-                if (!firstPoint) {
-                    sb.append(","); // Separator between points
+    /**
+     * Replaces a paths file in one step, so readers (and a later crash) only ever see the old
+     * or the new file complete: the paths go to a temporary file in the same directory, which
+     * is synced and then renamed over the target. The file ends up with the permissions a plain
+     * write would give it.
+     *
+     * @param droneRuns The list of drone runs (each run is a list of Points).
+     * @param filePath  The path to the output file.
+     * @throws IOException If an error occurs during file writing; the old file is then left as it was.
+     */
+    public static void replacePathsFile(List<List<Point>> droneRuns, String filePath) throws IOException {
+        long start = Metrics.WRITE.start();
+        Path target = Path.of(filePath).toAbsolutePath();
+        Path temp = createSibling(target);
+        try {
+            try (PathWriter writer = new PathWriter(temp, true)) {
+                for (List<Point> runPath : droneRuns) {
+                    writer.run(runPath);
                 }
-                // Format as (x,y) - using the helper method from Point class
-                sb.append("(").append(p.getX()).append(",").append(p.getY()).append(")");
-                firstPoint = false;
             }
-            sb.append("]"); // End of a single run list
-            firstRun = false;
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing paths file: " + filePath);
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            Metrics.WRITE.stop(start);
         }
+    }
 
-        sb.append("]"); // End of the main list
+    // An empty file next to the target with the permissions a plain write would give: the target's own if it exists,
+    // else the umask default (Files.createTempFile would make it owner-only, and the rename keeps that)
+    private static Path createSibling(Path target) throws IOException {
+        Path directory = target.getParent();
+        while (true) {
+            Path temp = directory.resolve(target.getFileName() + "." + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE) + ".tmp");
+            try {
+                Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            }
+            try {
+                if (Files.exists(target) && Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                    Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            return temp;
+        }
+    }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            writer.write(sb.toString());
+    /**
+     * Writes drone paths given as primitive coordinates, in the same format as {@link #writePathsToFile(List, String)}.
+     *
+     * @param droneRuns One array per run with the coordinates of its points interleaved: x0, y0, x1, y1, ...
+     * @param filePath  The path to the output file.
+     * @throws IOException If an error occurs during file writing.
+     */
+    public static void writePathsToFile(int[][] droneRuns, String filePath) throws IOException {
+        long start = Metrics.WRITE.start();
+        try (PathWriter writer = new PathWriter(Path.of(filePath))) {
+            for (int[] coordinates : droneRuns) {
+                writer.run(coordinates, coordinates.length / 2);
+            }
         } catch (IOException e) {
             System.err.println("Error writing paths file: " + filePath);
             throw e;
+        } finally {
+            Metrics.WRITE.stop(start);
+        }
+    }
+
+    /**
+     * Writes a zoo specification in the six-line input format, so it reads back as the same zoo.
+     * Used for synthetic zoos; the number of battery swaps is not part of the format.
+     *
+     * @param zoo      The zoo.
+     * @param filePath The path to the output file.
+     * @throws IOException If an error occurs during file writing.
+     */
+    public static void writeZooToFile(Zoo zoo, String filePath) throws IOException {
+        ZooColumns c = zoo.getColumns();
+        try (ZooWriter writer = new ZooWriter(Path.of(filePath))) {
+            writer.header(c.getDimensionX(), c.getDimensionY(), c.getDimensionZ(),
+                    c.getDepotX(), c.getDepotY(), c.getDepotZ(), c.getBatteryCapacity());
+            for (int i = 0; i < c.getStorageCount(); i++) {
+                writer.storage(c.getStorageX()[i], c.getStorageY()[i], c.getStorageZ()[i], (char) c.getStorageDiet()[i]);
+            }
+            for (int i = 0; i < c.getEnclosureCount(); i++) {
+                writer.enclosure(c.getEnclosureX()[i], c.getEnclosureY()[i], c.getEnclosureZ()[i],
+                        c.getImportance()[i], (char) c.getEnclosureDiet()[i]);
+            }
+            for (int i = 0; i < c.getDeadZoneCount(); i++) {
+                writer.deadZone(c.getDeadZoneX()[i], c.getDeadZoneY()[i], c.getDeadZoneRadius()[i]);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing zoo file: " + filePath);
+            throw e;
         }
     }
-}
\ No newline at end of file
+}
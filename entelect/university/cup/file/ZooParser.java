@@ -0,0 +1,288 @@
+package entelect.university.cup.file;
+
+import entelect.university.cup.models.ZooColumns;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte-level parser for zoo specification files. Reads the file through a {@link FileChannel}
+ * into one byte buffer and tokenizes it in place, without regular expressions,
+ * per-line strings or per-item objects: the storages, enclosures and dead zones go
+ * straight into the primitive arrays of a {@link ZooColumns}. Whitespace between tokens (including line breaks)
+ * is ignored; anything else unexpected is reported with its line and column.
+ *
+ * <p>The expected layout is six entries: the dimensions point, the depot point, the
+ * battery capacity, then the lists of storages {@code (x,y,z,diet)}, enclosures
+ * {@code (x,y,z,importance,diet)} and dead zones {@code (x,y,radius)}. Lists missing
+ * at the end of the file are taken as empty.
+ */
+public class ZooParser {
+
+    private static final int MAX_EXACT_DIGITS = 15; // Keeps the mantissa below 2^53, so it is an exact double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final byte[] bytes;
+    private final int limit;
+    private int position;
+    private int line = 1;
+    private int lineStart;
+
+    private final ZooColumns.Builder columns = new ZooColumns.Builder();
+    private int batteryCapacity;
+
+    /**
+     * @param buffer The file contents, from its position to its limit. Heap buffers are read
+     *               in place; others (direct or mapped) are copied out first.
+     */
+    public ZooParser(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.bytes = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+            this.limit = buffer.arrayOffset() + buffer.limit();
+        } else {
+            this.bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            this.position = 0;
+            this.limit = bytes.length;
+        }
+        this.lineStart = position;
+    }
+
+    /**
+     * Reads a file and parses it.
+     *
+     * @param file The zoo specification file.
+     * @return The parser holding the parsed values.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the content is malformed.
+     */
+    public static ZooParser parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Zoo file too large: " + size + " bytes");
+            }
+            // Indexing a heap array is cheaper per byte than going through a mapped buffer
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the file is in
+            }
+            buffer.flip();
+            ZooParser parser = new ZooParser(buffer);
+            parser.parse();
+            return parser;
+        }
+    }
+
+    /**
+     * Parses the whole buffer.
+     *
+     * @throws IllegalArgumentException If the content is malformed; the message gives the line and column.
+     */
+    public void parse() {
+        int[] dimensions = parsePoint();
+        columns.dimensions(dimensions[0], dimensions[1], dimensions[2]);
+        int[] depot = parsePoint();
+        columns.depot(depot[0], depot[1], depot[2]);
+        skipWhitespace();
+        batteryCapacity = parseInt();
+        parseList(this::parseStorage);
+        parseList(this::parseEnclosure);
+        parseList(this::parseDeadZone);
+        skipWhitespace();
+        if (position < limit) {
+            throw error("Unexpected content after the dead zone list");
+        }
+    }
+
+    // --- Items ---
+
+    private int[] parsePoint() {
+        expect('(');
+        int x = parseInt();
+        expect(',');
+        int y = parseInt();
+        expect(',');
+        int z = parseInt();
+        expect(')');
+        return new int[]{x, y, z};
+    }
+
+    private void parseStorage() {
+        expect('(');
+        int x = parseInt();
+        expect(',');
+        int y = parseInt();
+        expect(',');
+        int z = parseInt();
+        expect(',');
+        char diet = parseDiet();
+        expect(')');
+        columns.addStorage(x, y, z, diet);
+    }
+
+    private void parseEnclosure() {
+        expect('(');
+        int x = parseInt();
+        expect(',');
+        int y = parseInt();
+        expect(',');
+        int z = parseInt();
+        expect(',');
+        double importance = parseDecimal();
+        expect(',');
+        char diet = parseDiet();
+        expect(')');
+        columns.addEnclosure(x, y, z, importance, diet);
+    }
+
+    private void parseDeadZone() {
+        expect('(');
+        int x = parseInt();
+        expect(',');
+        int y = parseInt();
+        expect(',');
+        int radius = parseInt();
+        expect(')');
+        columns.addDeadZone(x, y, radius);
+    }
+
+    // A bracketed, comma separated list; a list missing at the end of the file is empty
+    private void parseList(Runnable item) {
+        skipWhitespace();
+        if (position == limit) return;
+        expect('[');
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return;
+        }
+        while (true) {
+            item.run();
+            skipWhitespace();
+            int c = peek();
+            if (c == ']') {
+                position++;
+                return;
+            }
+            if (c != ',') throw error("Expected ',' or ']'");
+            position++;
+        }
+    }
+
+    // --- Tokens ---
+
+    private int parseInt() {
+        skipWhitespace();
+        int start = position;
+        long value = 0;
+        while (position < limit) {
+            int c = bytes[position];
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                position = start;
+                throw error("Integer out of range");
+            }
+            position++;
+        }
+        if (position == start) throw error("Expected a non-negative integer");
+        return (int) value;
+    }
+
+    // Digits with an optional fraction, as mantissa / 10^fractionDigits: one correctly rounded division
+    private double parseDecimal() {
+        skipWhitespace();
+        int start = position;
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        while (position < limit) {
+            int c = bytes[position];
+            if (c >= '0' && c <= '9') {
+                if (digits > 0 || c != '0') digits++;
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) fractionDigits++;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (position == start || bytes[start] == '.') throw error("Expected a decimal number");
+        if (digits > MAX_EXACT_DIGITS || fractionDigits >= POWERS_OF_TEN.length) {
+            // Too long for the fast path; rare enough to afford a string
+            return Double.parseDouble(new String(bytes, start, position - start, StandardCharsets.US_ASCII));
+        }
+        return mantissa / POWERS_OF_TEN[fractionDigits];
+    }
+
+    private char parseDiet() {
+        skipWhitespace();
+        int c = peek();
+        if (c != 'c' && c != 'h' && c != 'o') throw error("Expected a diet type (c, h or o)");
+        position++;
+        return (char) c;
+    }
+
+    private void expect(char expected) {
+        if (position < limit && bytes[position] == expected) {
+            position++; // Common case: no whitespace in between
+            return;
+        }
+        skipWhitespace();
+        if (peek() != expected) throw error("Expected '" + expected + "'");
+        position++;
+    }
+
+    private int peek() {
+        return position < limit ? bytes[position] : -1;
+    }
+
+    private void skipWhitespace() {
+        while (position < limit) {
+            int c = bytes[position];
+            if (c == '\n') {
+                line++;
+                lineStart = position + 1;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        String found = position < limit ? "'" + (char) bytes[position] + "'" : "end of file";
+        return new IllegalArgumentException(message + " at line " + line + ", column "
+                + (position - lineStart + 1) + " but found " + found);
+    }
+
+    // --- Parsed values ---
+
+    public int getBatteryCapacity() {
+        return batteryCapacity;
+    }
+
+    public int getEnclosureCount() {
+        return columns.getEnclosureCount();
+    }
+
+    /**
+     * @param batterySwaps The number of battery swaps, which the file does not state.
+     * @return The parsed zoo in columnar form.
+     */
+    public ZooColumns toColumns(int batterySwaps) {
+        return columns.battery(batteryCapacity, batterySwaps).build();
+    }
+}
@@ -0,0 +1,184 @@
+package entelect.university.cup.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a zoo specification in the six-line input format: dimensions, depot, battery
+ * capacity, then the storage, enclosure and dead zone lists. Items are encoded into one
+ * fixed byte buffer and flushed through a {@link FileChannel}, so files of any size are
+ * written in constant memory.
+ *
+ * <p>Write the {@link #header}, then the storages, the enclosures and the dead zones in
+ * that order (each list may be empty), then {@link #close()}. Moving on to a later list
+ * closes the earlier ones.
+ */
+public class ZooWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ITEM_BYTES = 128; // One item or header line, with separators
+
+    // The part of the file being written
+    private static final int HEADER = 0;
+    private static final int STORAGES = 1;
+    private static final int ENCLOSURES = 2;
+    private static final int DEAD_ZONES = 3;
+    private static final int DONE = 4;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private int position;
+    private int section = HEADER;
+    private boolean headerWritten;
+    private boolean firstItem;
+
+    public ZooWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.bytes = buffer.array();
+    }
+
+    public void header(int dimensionX, int dimensionY, int dimensionZ,
+                       int depotX, int depotY, int depotZ, int batteryCapacity) throws IOException {
+        if (headerWritten) throw new IllegalStateException("The header has already been written");
+        headerWritten = true;
+        ensure(MAX_ITEM_BYTES);
+        triple(dimensionX, dimensionY, dimensionZ);
+        bytes[position++] = '\n';
+        triple(depotX, depotY, depotZ);
+        bytes[position++] = '\n';
+        writeInt(batteryCapacity);
+        bytes[position++] = '\n';
+    }
+
+    public void storage(int x, int y, int z, char diet) throws IOException {
+        beginItem(STORAGES);
+        bytes[position++] = '(';
+        writeInt(x);
+        bytes[position++] = ',';
+        writeInt(y);
+        bytes[position++] = ',';
+        writeInt(z);
+        bytes[position++] = ',';
+        bytes[position++] = (byte) diet;
+        bytes[position++] = ')';
+    }
+
+    public void enclosure(int x, int y, int z, double importance, char diet) throws IOException {
+        beginItem(ENCLOSURES);
+        bytes[position++] = '(';
+        writeInt(x);
+        bytes[position++] = ',';
+        writeInt(y);
+        bytes[position++] = ',';
+        writeInt(z);
+        bytes[position++] = ',';
+        writeDecimal(importance);
+        bytes[position++] = ',';
+        bytes[position++] = (byte) diet;
+        bytes[position++] = ')';
+    }
+
+    public void deadZone(int x, int y, int radius) throws IOException {
+        beginItem(DEAD_ZONES);
+        triple(x, y, radius);
+    }
+
+    /**
+     * Closes the remaining lists, flushes and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (section == DONE) return;
+        try {
+            if (!headerWritten) throw new IllegalStateException("No header was written");
+            advanceTo(DONE);
+            flush();
+        } finally {
+            section = DONE;
+            channel.close();
+        }
+    }
+
+    // --- Layout ---
+
+    private void beginItem(int itemSection) throws IOException {
+        if (!headerWritten) throw new IllegalStateException("The header must be written first");
+        if (itemSection < section) throw new IllegalStateException("Lists must be written in file order");
+        advanceTo(itemSection);
+        ensure(MAX_ITEM_BYTES);
+        if (!firstItem) bytes[position++] = ',';
+        firstItem = false;
+    }
+
+    // Ends the open list and writes any empty lists up to the target one, then opens it
+    private void advanceTo(int target) throws IOException {
+        while (section < target) {
+            ensure(4);
+            if (section != HEADER) {
+                bytes[position++] = ']';
+                bytes[position++] = '\n';
+            }
+            section++;
+            if (section != DONE) {
+                bytes[position++] = '[';
+                firstItem = true;
+            }
+        }
+    }
+
+    private void triple(int a, int b, int c) {
+        bytes[position++] = '(';
+        writeInt(a);
+        bytes[position++] = ',';
+        writeInt(b);
+        bytes[position++] = ',';
+        writeInt(c);
+        bytes[position++] = ')';
+    }
+
+    // --- Encoding ---
+
+    private void ensure(int room) throws IOException {
+        if (position + room > bytes.length) flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.clear().limit(position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+
+    // Plain decimal as in the level files ("8", "0.09"); whole hundredths skip BigDecimal
+    private void writeDecimal(double value) throws IOException {
+        long hundredths = Math.round(value * 100);
+        if (value >= 0 && hundredths < Integer.MAX_VALUE && hundredths / 100.0 == value) {
+            writeInt((int) (hundredths / 100));
+            int fraction = (int) (hundredths % 100);
+            if (fraction != 0) {
+                bytes[position++] = '.';
+                bytes[position++] = (byte) ('0' + fraction / 10);
+                if (fraction % 10 != 0) bytes[position++] = (byte) ('0' + fraction % 10);
+            }
+            return;
+        }
+        String text = BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        ensure(text.length() + 3); // And the rest of the item
+        for (int i = 0; i < text.length(); i++) {
+            bytes[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void writeInt(int value) {
+        position = AsciiDigits.writeInt(bytes, position, value);
+    }
+}
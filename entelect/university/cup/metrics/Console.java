@@ -0,0 +1,25 @@
+package entelect.university.cup.metrics;
+
+/**
+ * Progress messages of the solvers, printed to standard output only when verbose output
+ * is switched on (the --verbose option). Errors still go straight to standard error.
+ */
+public final class Console {
+
+    private static volatile boolean verbose;
+
+    private Console() {
+    }
+
+    public static void setVerbose(boolean verbose) {
+        Console.verbose = verbose;
+    }
+
+    public static boolean isVerbose() {
+        return verbose;
+    }
+
+    public static void println(String message) {
+        if (verbose) System.out.println(message);
+    }
+}
@@ -0,0 +1,43 @@
+package entelect.university.cup.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A process-wide event count. Backed by a {@link LongAdder}, so solver threads can bump it
+ * concurrently for a few nanoseconds each; hot loops add their local tally once per call.
+ */
+public class Counter {
+
+    private final String name;
+    private final String help;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    void reset() {
+        count.reset();
+    }
+}
@@ -0,0 +1,144 @@
+package entelect.university.cup.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The solver's built-in instrumentation: process-wide counters of the work done and timers
+ * per phase. Always on; each event costs one uncontended {@link java.util.concurrent.atomic.LongAdder}
+ * update, and loops over many candidates or legs (run pricing, detour searches, batched
+ * leg tests) tally locally and add once per call. The enclosure-to-enclosure leg checks
+ * of the table's flight lookups are too frequent to count at all. Exported as JSON or in
+ * the Prometheus text format.
+ */
+public final class Metrics {
+
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+    private static final List<PhaseTimer> TIMERS = new ArrayList<>();
+
+    public static final Counter CANDIDATES_EVALUATED = counter("candidates_evaluated",
+            "Candidate enclosures priced by the constructions and insertion moves");
+    public static final Counter DEAD_ZONE_TESTS = counter("dead_zone_tests",
+            "Legs tested against the dead zone index by table builds, detour searches and evaluations");
+    public static final Counter COST_EVALUATIONS = counter("cost_evaluations",
+            "Run costs computed, whole or for an extension");
+    public static final Counter PATH_ALLOCATIONS = counter("path_allocations",
+            "Point paths built from runs");
+    public static final Counter RUNS_BUILT = counter("runs_built",
+            "Runs built by the constructions");
+    public static final Counter CACHE_HITS = counter("cache_hits",
+            "Solves answered from the solution cache");
+    public static final Counter CACHE_WARM_STARTS = counter("cache_warm_starts",
+            "Solves started from the cached solution of a similar zoo");
+    public static final Counter PRECOMPUTE_REUSES = counter("precompute_reuses",
+            "Solves that reused the leg costs and search lookups of a zoo solved before in the process");
+    public static final Counter INCREMENTAL_FALLBACKS = counter("incremental_fallbacks",
+            "Zoo changes solved from scratch because the repaired solution failed the evaluator");
+    public static final Counter SERVICE_REQUESTS = counter("service_requests",
+            "Solve requests received by the solver service");
+    public static final Counter SERVICE_REJECTIONS = counter("service_rejections",
+            "Solve requests turned away because every worker and queue slot was taken");
+
+    public static final PhaseTimer PARSE = timer("parse", "Reading and parsing zoo files");
+    public static final PhaseTimer PRECOMPUTE = timer("precompute", "Building the leg cost tables and search lookups");
+    public static final PhaseTimer CONSTRUCT = timer("construct", "Constructing the initial runs (exact, portfolio or greedy)");
+    public static final PhaseTimer IMPROVE = timer("improve", "Local search and annealing");
+    public static final PhaseTimer WRITE = timer("write", "Writing solution files");
+
+    private Metrics() {
+    }
+
+    private static Counter counter(String name, String help) {
+        Counter counter = new Counter(name, help);
+        COUNTERS.add(counter);
+        return counter;
+    }
+
+    private static PhaseTimer timer(String name, String help) {
+        PhaseTimer timer = new PhaseTimer(name, help);
+        TIMERS.add(timer);
+        return timer;
+    }
+
+    public static List<Counter> counters() {
+        return Collections.unmodifiableList(COUNTERS);
+    }
+
+    public static List<PhaseTimer> timers() {
+        return Collections.unmodifiableList(TIMERS);
+    }
+
+    /**
+     * Zeroes every counter and timer (e.g. between benchmark runs).
+     */
+    public static void reset() {
+        COUNTERS.forEach(Counter::reset);
+        TIMERS.forEach(PhaseTimer::reset);
+    }
+
+    /**
+     * @return {@code {"counters": {name: value, ...}, "phases": {name: {"count": n, "seconds": s}, ...}}}
+     */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"counters\": {");
+        for (int i = 0; i < COUNTERS.size(); i++) {
+            Counter c = COUNTERS.get(i);
+            sb.append(i == 0 ? "\n" : ",\n").append("    \"").append(c.getName()).append("\": ").append(c.get());
+        }
+        sb.append("\n  },\n  \"phases\": {");
+        for (int i = 0; i < TIMERS.size(); i++) {
+            PhaseTimer t = TIMERS.get(i);
+            sb.append(i == 0 ? "\n" : ",\n").append("    \"").append(t.getName()).append("\": {\"count\": ")
+                    .append(t.getCount()).append(", \"seconds\": ").append(seconds(t.getTotalNanos())).append('}');
+        }
+        return sb.append("\n  }\n}\n").toString();
+    }
+
+    /**
+     * @return The metrics in the Prometheus text exposition format, prefixed {@code zoo_}.
+     */
+    public static String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        for (Counter c : COUNTERS) {
+            String name = "zoo_" + c.getName() + "_total";
+            sb.append("# HELP ").append(name).append(' ').append(c.getHelp()).append('\n');
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            sb.append(name).append(' ').append(c.get()).append('\n');
+        }
+        sb.append("# HELP zoo_phase_seconds_total Wall-clock time spent per solving phase\n");
+        sb.append("# TYPE zoo_phase_seconds_total counter\n");
+        for (PhaseTimer t : TIMERS) {
+            sb.append("zoo_phase_seconds_total{phase=\"").append(t.getName()).append("\"} ")
+                    .append(seconds(t.getTotalNanos())).append('\n');
+        }
+        sb.append("# HELP zoo_phase_runs_total Times each solving phase ran\n");
+        sb.append("# TYPE zoo_phase_runs_total counter\n");
+        for (PhaseTimer t : TIMERS) {
+            sb.append("zoo_phase_runs_total{phase=\"").append(t.getName()).append("\"} ")
+                    .append(t.getCount()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the metrics to a file: JSON if its name ends in {@code .json}, Prometheus text otherwise.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        String text = name.endsWith(".json") ? toJson() : toPrometheus();
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+}
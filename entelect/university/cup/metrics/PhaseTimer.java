@@ -0,0 +1,54 @@
+package entelect.university.cup.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Total wall-clock time and number of runs of one solving phase, summed over all zoos
+ * solved in the process. Usage: {@code long start = timer.start(); ... timer.stop(start);}
+ */
+public class PhaseTimer {
+
+    private final String name;
+    private final String help;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    PhaseTimer(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void stop(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long elapsedNanos) {
+        count.increment();
+        nanos.add(elapsedNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return nanos.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    void reset() {
+        count.reset();
+        nanos.reset();
+    }
+}
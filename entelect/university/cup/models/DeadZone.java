@@ -31,37 +31,38 @@ public class DeadZone {
      * @return true if the segment intersects the dead zone circle, false otherwise.
      */
     public boolean intersects(Point p1, Point p2) {
-        // Simplified check: distance from center to line segment
-        double p1x = p1.getX();
-        double p1y = p1.getY();
-        double p2x = p2.getX();
-        double p2y = p2.getY();
-        double dzx = this.center.getX();
-        double dzy = this.center.getY();
-        double r = this.radius;
+        return segmentIntersectsCircle(p1.getX(), p1.getY(), p2.getX(), p2.getY(),
+                center.getX(), center.getY(), radius);
+    }
 
+    /**
+     * Allocation-free segment/circle test on raw coordinates, using squared distances only.
+     *
+     * @return true if the segment (p1x,p1y)-(p2x,p2y) comes strictly closer than r to (dzx,dzy).
+     */
+    public static boolean segmentIntersectsCircle(double p1x, double p1y, double p2x, double p2y,
+                                                  double dzx, double dzy, double r) {
         double dx = p2x - p1x;
         double dy = p2y - p1y;
         double lenSq = dx * dx + dy * dy;
 
         // Handle case where p1 and p2 are the same point
         if (lenSq == 0.0) {
-            return Math.sqrt(Math.pow(dzx - p1x, 2) + Math.pow(dzy - p1y, 2)) < r;
+            double ex = dzx - p1x;
+            double ey = dzy - p1y;
+            return ex * ex + ey * ey < r * r;
         }
 
         // Parameter t representing the projection of the center onto the line
         double t = ((dzx - p1x) * dx + (dzy - p1y) * dy) / lenSq;
         t = Math.max(0, Math.min(1, t)); // Clamp t to the segment [0, 1]
 
-        // Coordinates of the closest point on the line segment to the deadzone center
-        double closestX = p1x + t * dx;
-        double closestY = p1y + t * dy;
-
-        // Distance from the deadzone center to this closest point
-        double distSq = Math.pow(dzx - closestX, 2) + Math.pow(dzy - closestY, 2);
+        // Vector from the closest point on the line segment to the deadzone center
+        double ex = dzx - (p1x + t * dx);
+        double ey = dzy - (p1y + t * dy);
 
         // Intersects if the squared distance is less than the squared radius
-        return distSq < (r * r);
+        return ex * ex + ey * ey < r * r;
     }
 
 
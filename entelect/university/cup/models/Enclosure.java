@@ -4,16 +4,20 @@ package entelect.university.cup.models;
  * Represents an Animal Enclosure in the zoo.
  */
 public class Enclosure {
+    private final int id; // Index in the zoo's enclosure list
     private final Point feedingPoint;
     private final double importance;
     private final char dietType; // 'c', 'h', 'o'
-    private boolean fed; // To track if it has been visited in any run
 
-    public Enclosure(Point feedingPoint, double importance, char dietType) {
+    public Enclosure(int id, Point feedingPoint, double importance, char dietType) {
+        this.id = id;
         this.feedingPoint = feedingPoint;
         this.importance = importance;
         this.dietType = dietType;
-        this.fed = false; // Initially not fed
+    }
+
+    public int getId() {
+        return id;
     }
 
     public Point getFeedingPoint() {
@@ -28,21 +32,12 @@ public class Enclosure {
         return dietType;
     }
 
-    public boolean isFed() {
-        return fed;
-    }
-
-    public void setFed(boolean fed) {
-        this.fed = fed;
-    }
-
     @Override
     public String toString() {
         return "Enclosure{" +
                "feedingPoint=" + feedingPoint +
                ", importance=" + importance +
                ", dietType=" + dietType +
-               ", fed=" + fed +
                '}';
     }
 }
\ No newline at end of file
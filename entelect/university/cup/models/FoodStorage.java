@@ -4,14 +4,20 @@ package entelect.university.cup.models;
  * Represents a Food Storage location in the zoo.
  */
 public class FoodStorage {
+    private final int id; // Index in the zoo's food storage list
     private final Point location;
     private final char dietType; // 'c', 'h', 'o'
 
-    public FoodStorage(Point location, char dietType) {
+    public FoodStorage(int id, Point location, char dietType) {
+        this.id = id;
         this.location = location;
         this.dietType = dietType;
     }
 
+    public int getId() {
+        return id;
+    }
+
     public Point getLocation() {
         return location;
     }
@@ -1,32 +1,49 @@
 package entelect.university.cup.models;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * Represents the entire Zoo environment for a specific level.
+ * Immutable once parsed, so one instance can be shared by any number of solvers.
+ * The data lives in a {@link ZooColumns}; the storage, enclosure and dead zone objects
+ * are a view over it, built on first use, for code that has not moved to the columns.
  */
 public class Zoo {
+    private final ZooColumns columns;
     private final Point dimensions; // Max x, y, z
     private final Point droneDepot;
     private final int batteryCapacity; // in meters
     private final int batterySwaps; // Number of runs allowed
-    private final List<FoodStorage> foodStorages;
-    private final List<Enclosure> enclosures;
-    private final List<DeadZone> deadzones;
+    private volatile List<FoodStorage> foodStorages;
+    private volatile List<Enclosure> enclosures; // Fed status is tracked per solver
+    private volatile List<DeadZone> deadzones;
+
+    public Zoo(ZooColumns columns) {
+        this.columns = columns;
+        this.dimensions = new Point(columns.getDimensionX(), columns.getDimensionY(), columns.getDimensionZ());
+        this.droneDepot = new Point(columns.getDepotX(), columns.getDepotY(), columns.getDepotZ());
+        this.batteryCapacity = columns.getBatteryCapacity();
+        this.batterySwaps = columns.getBatterySwaps();
+    }
 
     public Zoo(Point dimensions, Point droneDepot, int batteryCapacity, int batterySwaps,
                List<FoodStorage> foodStorages, List<Enclosure> enclosures, List<DeadZone> deadzones) {
-        this.dimensions = dimensions;
-        this.droneDepot = droneDepot;
-        this.batteryCapacity = batteryCapacity;
-        this.batterySwaps = batterySwaps;
+        this(ZooColumns.of(dimensions, droneDepot, batteryCapacity, batterySwaps, foodStorages, enclosures, deadzones));
         // Use unmodifiable lists to prevent accidental modification after creation
         this.foodStorages = Collections.unmodifiableList(foodStorages);
-        this.enclosures = enclosures; // Keep mutable for setting 'fed' status
+        this.enclosures = Collections.unmodifiableList(enclosures);
         this.deadzones = Collections.unmodifiableList(deadzones);
     }
 
+    /**
+     * @return The columnar form of the zoo, for hot loops.
+     */
+    public ZooColumns getColumns() {
+        return columns;
+    }
+
     public Point getDimensions() {
         return dimensions;
     }
@@ -44,15 +61,58 @@ public class Zoo {
     }
 
     public List<FoodStorage> getFoodStorages() {
-        return foodStorages;
+        List<FoodStorage> list = foodStorages;
+        if (list == null) {
+            synchronized (this) {
+                list = foodStorages;
+                if (list == null) {
+                    List<FoodStorage> built = new ArrayList<>(columns.getStorageCount());
+                    for (int i = 0; i < columns.getStorageCount(); i++) {
+                        Point location = new Point(columns.getStorageX()[i], columns.getStorageY()[i], columns.getStorageZ()[i]);
+                        built.add(new FoodStorage(i, location, (char) columns.getStorageDiet()[i]));
+                    }
+                    foodStorages = list = Collections.unmodifiableList(built);
+                }
+            }
+        }
+        return list;
     }
 
     public List<Enclosure> getEnclosures() {
-        return enclosures;
+        List<Enclosure> list = enclosures;
+        if (list == null) {
+            synchronized (this) {
+                list = enclosures;
+                if (list == null) {
+                    List<Enclosure> built = new ArrayList<>(columns.getEnclosureCount());
+                    for (int i = 0; i < columns.getEnclosureCount(); i++) {
+                        Point feedingPoint = new Point(columns.getEnclosureX()[i], columns.getEnclosureY()[i], columns.getEnclosureZ()[i]);
+                        built.add(new Enclosure(i, feedingPoint, columns.getImportance()[i], (char) columns.getEnclosureDiet()[i]));
+                    }
+                    enclosures = list = Collections.unmodifiableList(built);
+                }
+            }
+        }
+        return list;
     }
 
     public List<DeadZone> getDeadzones() {
-        return deadzones;
+        List<DeadZone> list = deadzones;
+        if (list == null) {
+            synchronized (this) {
+                list = deadzones;
+                if (list == null) {
+                    List<DeadZone> built = new ArrayList<>(columns.getDeadZoneCount());
+                    for (int i = 0; i < columns.getDeadZoneCount(); i++) {
+                        // The center's Z is irrelevant
+                        Point center = new Point(columns.getDeadZoneX()[i], columns.getDeadZoneY()[i], 0);
+                        built.add(new DeadZone(center, columns.getDeadZoneRadius()[i]));
+                    }
+                    deadzones = list = Collections.unmodifiableList(built);
+                }
+            }
+        }
+        return list;
     }
 
     @Override
@@ -62,9 +122,9 @@ public class Zoo {
                ", droneDepot=" + droneDepot +
                ", batteryCapacity=" + batteryCapacity +
                ", batterySwaps=" + batterySwaps +
-               ", #foodStorages=" + foodStorages.size() +
-               ", #enclosures=" + enclosures.size() +
-               ", #deadzones=" + deadzones.size() +
+               ", #foodStorages=" + columns.getStorageCount() +
+               ", #enclosures=" + columns.getEnclosureCount() +
+               ", #deadzones=" + columns.getDeadZoneCount() +
                '}';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,276 @@
+package entelect.university.cup.models;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Struct-of-arrays form of a zoo: one primitive array per field, indexed by the dense
+ * storage, enclosure and dead zone ids (their positions in the file). Hot loops read
+ * these arrays directly instead of chasing {@link Enclosure} and {@link Point} objects,
+ * and 100k enclosures take a few megabytes instead of tens. {@link Zoo} is a view over
+ * an instance of this class.
+ * The arrays handed out by the getters are the internal ones and must not be modified.
+ */
+public class ZooColumns {
+
+    private final int[] dimensions; // {x, y, z}
+    private final int[] depot; // {x, y, z}
+    private final int batteryCapacity;
+    private final int batterySwaps;
+
+    private final int storageCount;
+    private final int[] storageX, storageY, storageZ;
+    private final byte[] storageDiet;
+
+    private final int enclosureCount;
+    private final int[] enclosureX, enclosureY, enclosureZ;
+    private final double[] importance;
+    private final byte[] enclosureDiet;
+
+    private final int deadZoneCount;
+    private final int[] deadZoneX, deadZoneY, deadZoneRadius;
+
+    private ZooColumns(Builder builder) {
+        this.dimensions = builder.dimensions.clone();
+        this.depot = builder.depot.clone();
+        this.batteryCapacity = builder.batteryCapacity;
+        this.batterySwaps = builder.batterySwaps;
+
+        this.storageCount = builder.storageCount;
+        this.storageX = Arrays.copyOf(builder.storageX, storageCount);
+        this.storageY = Arrays.copyOf(builder.storageY, storageCount);
+        this.storageZ = Arrays.copyOf(builder.storageZ, storageCount);
+        this.storageDiet = Arrays.copyOf(builder.storageDiet, storageCount);
+
+        this.enclosureCount = builder.enclosureCount;
+        this.enclosureX = Arrays.copyOf(builder.enclosureX, enclosureCount);
+        this.enclosureY = Arrays.copyOf(builder.enclosureY, enclosureCount);
+        this.enclosureZ = Arrays.copyOf(builder.enclosureZ, enclosureCount);
+        this.importance = Arrays.copyOf(builder.importance, enclosureCount);
+        this.enclosureDiet = Arrays.copyOf(builder.enclosureDiet, enclosureCount);
+
+        this.deadZoneCount = builder.deadZoneCount;
+        this.deadZoneX = Arrays.copyOf(builder.deadZoneX, deadZoneCount);
+        this.deadZoneY = Arrays.copyOf(builder.deadZoneY, deadZoneCount);
+        this.deadZoneRadius = Arrays.copyOf(builder.deadZoneRadius, deadZoneCount);
+    }
+
+    /**
+     * Collects the columns of the object form of a zoo, for zoos built from lists.
+     */
+    public static ZooColumns of(Point dimensions, Point droneDepot, int batteryCapacity, int batterySwaps,
+                                List<FoodStorage> foodStorages, List<Enclosure> enclosures, List<DeadZone> deadzones) {
+        Builder builder = new Builder()
+                .dimensions(dimensions.getX(), dimensions.getY(), dimensions.getZ())
+                .depot(droneDepot.getX(), droneDepot.getY(), droneDepot.getZ())
+                .battery(batteryCapacity, batterySwaps);
+        for (FoodStorage storage : foodStorages) {
+            Point p = storage.getLocation();
+            builder.addStorage(p.getX(), p.getY(), p.getZ(), storage.getDietType());
+        }
+        for (Enclosure enclosure : enclosures) {
+            Point p = enclosure.getFeedingPoint();
+            builder.addEnclosure(p.getX(), p.getY(), p.getZ(), enclosure.getImportance(), enclosure.getDietType());
+        }
+        for (DeadZone zone : deadzones) {
+            builder.addDeadZone(zone.getCenter().getX(), zone.getCenter().getY(), zone.getRadius());
+        }
+        return builder.build();
+    }
+
+    public int getDimensionX() {
+        return dimensions[0];
+    }
+
+    public int getDimensionY() {
+        return dimensions[1];
+    }
+
+    public int getDimensionZ() {
+        return dimensions[2];
+    }
+
+    public int getDepotX() {
+        return depot[0];
+    }
+
+    public int getDepotY() {
+        return depot[1];
+    }
+
+    public int getDepotZ() {
+        return depot[2];
+    }
+
+    public int getBatteryCapacity() {
+        return batteryCapacity;
+    }
+
+    public int getBatterySwaps() {
+        return batterySwaps;
+    }
+
+    public int getStorageCount() {
+        return storageCount;
+    }
+
+    public int[] getStorageX() {
+        return storageX;
+    }
+
+    public int[] getStorageY() {
+        return storageY;
+    }
+
+    public int[] getStorageZ() {
+        return storageZ;
+    }
+
+    /**
+     * @return The diet type characters ('c', 'h', 'o') of the storages, as bytes.
+     */
+    public byte[] getStorageDiet() {
+        return storageDiet;
+    }
+
+    public int getEnclosureCount() {
+        return enclosureCount;
+    }
+
+    public int[] getEnclosureX() {
+        return enclosureX;
+    }
+
+    public int[] getEnclosureY() {
+        return enclosureY;
+    }
+
+    public int[] getEnclosureZ() {
+        return enclosureZ;
+    }
+
+    public double[] getImportance() {
+        return importance;
+    }
+
+    /**
+     * @return The diet type characters ('c', 'h', 'o') of the enclosures, as bytes.
+     */
+    public byte[] getEnclosureDiet() {
+        return enclosureDiet;
+    }
+
+    public int getDeadZoneCount() {
+        return deadZoneCount;
+    }
+
+    public int[] getDeadZoneX() {
+        return deadZoneX;
+    }
+
+    public int[] getDeadZoneY() {
+        return deadZoneY;
+    }
+
+    public int[] getDeadZoneRadius() {
+        return deadZoneRadius;
+    }
+
+    /**
+     * Accumulates the columns item by item in growable arrays, without an object per item.
+     */
+    public static class Builder {
+
+        private int[] dimensions = new int[3];
+        private int[] depot = new int[3];
+        private int batteryCapacity;
+        private int batterySwaps;
+
+        private int storageCount;
+        private int[] storageX = new int[8], storageY = new int[8], storageZ = new int[8];
+        private byte[] storageDiet = new byte[8];
+
+        private int enclosureCount;
+        private int[] enclosureX = new int[64], enclosureY = new int[64], enclosureZ = new int[64];
+        private double[] importance = new double[64];
+        private byte[] enclosureDiet = new byte[64];
+
+        private int deadZoneCount;
+        private int[] deadZoneX = new int[8], deadZoneY = new int[8], deadZoneRadius = new int[8];
+
+        public Builder dimensions(int x, int y, int z) {
+            dimensions = new int[]{x, y, z};
+            return this;
+        }
+
+        public Builder depot(int x, int y, int z) {
+            depot = new int[]{x, y, z};
+            return this;
+        }
+
+        public Builder battery(int batteryCapacity, int batterySwaps) {
+            this.batteryCapacity = batteryCapacity;
+            this.batterySwaps = batterySwaps;
+            return this;
+        }
+
+        public Builder addStorage(int x, int y, int z, char diet) {
+            if (storageCount == storageX.length) {
+                int size = storageCount * 2;
+                storageX = Arrays.copyOf(storageX, size);
+                storageY = Arrays.copyOf(storageY, size);
+                storageZ = Arrays.copyOf(storageZ, size);
+                storageDiet = Arrays.copyOf(storageDiet, size);
+            }
+            storageX[storageCount] = x;
+            storageY[storageCount] = y;
+            storageZ[storageCount] = z;
+            storageDiet[storageCount] = (byte) diet;
+            storageCount++;
+            return this;
+        }
+
+        public Builder addEnclosure(int x, int y, int z, double importance, char diet) {
+            if (enclosureCount == enclosureX.length) {
+                int size = enclosureCount * 2;
+                enclosureX = Arrays.copyOf(enclosureX, size);
+                enclosureY = Arrays.copyOf(enclosureY, size);
+                enclosureZ = Arrays.copyOf(enclosureZ, size);
+                this.importance = Arrays.copyOf(this.importance, size);
+                enclosureDiet = Arrays.copyOf(enclosureDiet, size);
+            }
+            enclosureX[enclosureCount] = x;
+            enclosureY[enclosureCount] = y;
+            enclosureZ[enclosureCount] = z;
+            this.importance[enclosureCount] = importance;
+            enclosureDiet[enclosureCount] = (byte) diet;
+            enclosureCount++;
+            return this;
+        }
+
+        public int getEnclosureCount() {
+            return enclosureCount;
+        }
+
+        public Builder addDeadZone(int x, int y, int radius) {
+            if (deadZoneCount == deadZoneX.length) {
+                int size = deadZoneCount * 2;
+                deadZoneX = Arrays.copyOf(deadZoneX, size);
+                deadZoneY = Arrays.copyOf(deadZoneY, size);
+                deadZoneRadius = Arrays.copyOf(deadZoneRadius, size);
+            }
+            deadZoneX[deadZoneCount] = x;
+            deadZoneY[deadZoneCount] = y;
+            deadZoneRadius[deadZoneCount] = radius;
+            deadZoneCount++;
+            return this;
+        }
+
+        /**
+         * @return The columns, trimmed to their sizes. The builder can be reused afterwards.
+         */
+        public ZooColumns build() {
+            return new ZooColumns(this);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package entelect.university.cup.models;
+
+import java.util.Arrays;
+
+/**
+ * A small change to a zoo: new importances for some enclosures, enclosures added and dead
+ * zones added. Everything else (map, depot, battery, storages) stays as it is. Added
+ * enclosures and dead zones go after the existing ones, so the enclosures of the zoo keep
+ * their indexes, which lets a solution of the zoo carry over to the changed one.
+ * Collected with the chained methods, then {@link #applyTo} builds the changed zoo.
+ */
+public class ZooDelta {
+
+    private int changeCount;
+    private int[] changedEnclosures = new int[8]; // Enclosure indexes, in the changed zoo
+    private double[] changedImportance = new double[8];
+    private final ZooColumns.Builder additions = new ZooColumns.Builder();
+    private int addedEnclosures;
+    private int addedDeadZones;
+
+    /**
+     * Sets an enclosure's importance. Later changes of the same enclosure win.
+     *
+     * @param enclosureIndex The index of the enclosure in the zoo's list, or beyond it for one added by this delta.
+     */
+    public ZooDelta changeImportance(int enclosureIndex, double importance) {
+        if (changeCount == changedEnclosures.length) {
+            changedEnclosures = Arrays.copyOf(changedEnclosures, changeCount * 2);
+            changedImportance = Arrays.copyOf(changedImportance, changeCount * 2);
+        }
+        changedEnclosures[changeCount] = enclosureIndex;
+        changedImportance[changeCount] = importance;
+        changeCount++;
+        return this;
+    }
+
+    public ZooDelta addEnclosure(int x, int y, int z, double importance, char diet) {
+        additions.addEnclosure(x, y, z, importance, diet);
+        addedEnclosures++;
+        return this;
+    }
+
+    public ZooDelta addDeadZone(int x, int y, int radius) {
+        additions.addDeadZone(x, y, radius);
+        addedDeadZones++;
+        return this;
+    }
+
+    public int getImportanceChanges() {
+        return changeCount;
+    }
+
+    public int getAddedEnclosures() {
+        return addedEnclosures;
+    }
+
+    public int getAddedDeadZones() {
+        return addedDeadZones;
+    }
+
+    public boolean isEmpty() {
+        return changeCount == 0 && addedEnclosures == 0 && addedDeadZones == 0;
+    }
+
+    /**
+     * Builds the changed zoo. The given zoo is left untouched.
+     *
+     * @param zoo The zoo to change.
+     * @return A new zoo with the changes.
+     * @throws IllegalArgumentException If an importance change names an enclosure that does not exist.
+     */
+    public Zoo applyTo(Zoo zoo) {
+        ZooColumns c = zoo.getColumns();
+        ZooColumns added = additions.build();
+        ZooColumns.Builder builder = new ZooColumns.Builder()
+                .dimensions(c.getDimensionX(), c.getDimensionY(), c.getDimensionZ())
+                .depot(c.getDepotX(), c.getDepotY(), c.getDepotZ())
+                .battery(c.getBatteryCapacity(), c.getBatterySwaps());
+        for (int i = 0; i < c.getStorageCount(); i++) {
+            builder.addStorage(c.getStorageX()[i], c.getStorageY()[i], c.getStorageZ()[i], (char) c.getStorageDiet()[i]);
+        }
+
+        int enclosureCount = c.getEnclosureCount() + added.getEnclosureCount();
+        double[] importance = Arrays.copyOf(c.getImportance(), enclosureCount);
+        System.arraycopy(added.getImportance(), 0, importance, c.getEnclosureCount(), added.getEnclosureCount());
+        for (int k = 0; k < changeCount; k++) {
+            int index = changedEnclosures[k];
+            if (index < 0 || index >= enclosureCount) {
+                throw new IllegalArgumentException("No enclosure " + index + " to change the importance of (the zoo has " + enclosureCount + ")");
+            }
+            importance[index] = changedImportance[k];
+        }
+        for (int i = 0; i < c.getEnclosureCount(); i++) {
+            builder.addEnclosure(c.getEnclosureX()[i], c.getEnclosureY()[i], c.getEnclosureZ()[i],
+                    importance[i], (char) c.getEnclosureDiet()[i]);
+        }
+        for (int i = 0; i < added.getEnclosureCount(); i++) {
+            builder.addEnclosure(added.getEnclosureX()[i], added.getEnclosureY()[i], added.getEnclosureZ()[i],
+                    importance[c.getEnclosureCount() + i], (char) added.getEnclosureDiet()[i]);
+        }
+
+        for (int i = 0; i < c.getDeadZoneCount(); i++) {
+            builder.addDeadZone(c.getDeadZoneX()[i], c.getDeadZoneY()[i], c.getDeadZoneRadius()[i]);
+        }
+        for (int i = 0; i < added.getDeadZoneCount(); i++) {
+            builder.addDeadZone(added.getDeadZoneX()[i], added.getDeadZoneY()[i], added.getDeadZoneRadius()[i]);
+        }
+        return new Zoo(builder.build());
+    }
+}
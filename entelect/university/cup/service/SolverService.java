@@ -0,0 +1,278 @@
+package entelect.university.cup.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.solver.ZooSolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one JVM solving zoos on request, so start-up, JIT warm-up and (with a
+ * {@link entelect.university.cup.solver.PrecomputeCache} on the solver) the leg cost tables
+ * of zoos seen before are paid once instead of per solve. Listens on HTTP on the loopback
+ * interface only:
+ * <ul>
+ *     <li>{@code POST /solve?time=<secs>} with the zoo specification as the body, or
+ *     {@code POST /solve?file=<name>&time=<secs>} for a zoo file in the zoo directory, if
+ *     one is set ({@link #setZooDirectory}); names that lead out of it are refused. The
+ *     budget is optional (the solver's configured one otherwise). The response is the paths
+ *     in the output file format, with the score, runs and solve time in the
+ *     {@code X-Score}, {@code X-Runs} and {@code X-Solve-Millis} headers.</li>
+ *     <li>{@code GET /health} answers {@code ok}; {@code GET /metrics} gives the solver
+ *     metrics in the Prometheus text format.</li>
+ * </ul>
+ * Solves run on a fixed pool of workers with a bounded queue in front; a request that
+ * finds both full is answered {@code 503} straight away rather than left waiting. A zoo
+ * that does not parse is answered {@code 400}, a body over the size limit {@code 413}, a
+ * file request without a zoo directory {@code 403} and a file that cannot be read
+ * {@code 404}; why a file could not be read is only logged, not sent back.
+ */
+public class SolverService implements Closeable {
+
+    public static final long DEFAULT_MAX_BODY_BYTES = 16L * 1024 * 1024;
+    private static final double MAX_TIME_SECONDS = 365 * 24 * 3600;
+
+    private final ZooSolver solver;
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService connections;
+    private volatile Path zooDirectory; // Real path; null while file requests are off
+    private volatile long maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+
+    /**
+     * @param solver        The configured pipeline, shared by all workers.
+     * @param port          The port to listen on; 0 for any free one.
+     * @param workers       The number of zoos solved at once.
+     * @param queueCapacity The number of requests that may wait for a worker.
+     * @throws IOException If the port cannot be bound.
+     */
+    public SolverService(ZooSolver solver, int port, int workers, int queueCapacity) throws IOException {
+        this.solver = solver;
+        this.workers = new ThreadPoolExecutor(Math.max(1, workers), Math.max(1, workers), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), new ThreadPoolExecutor.AbortPolicy());
+        // Request threads mostly wait on a solve; a refused request frees its thread at once
+        this.connections = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(connections);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/health", exchange -> respond(exchange, 200, "ok\n"));
+        server.createContext("/metrics", exchange -> respond(exchange, 200, Metrics.toPrometheus()));
+    }
+
+    /**
+     * @return Half a worker per core, at least one; each solve then has two cores for its own threads.
+     */
+    public static int defaultWorkers() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * Allows {@code ?file=} requests for the zoo files in a directory (and its
+     * subdirectories); off unless set.
+     *
+     * @param directory The directory the names are resolved in.
+     * @throws IOException If the directory does not exist or cannot be resolved.
+     */
+    public void setZooDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Zoo directory not found: " + directory);
+        }
+        this.zooDirectory = directory.toRealPath();
+    }
+
+    /**
+     * @param maxBodyBytes The largest zoo specification accepted as a request body
+     *                     ({@link #DEFAULT_MAX_BODY_BYTES} unless set).
+     */
+    public void setMaxBodyBytes(long maxBodyBytes) {
+        this.maxBodyBytes = Math.max(1, maxBodyBytes);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops listening and drops the solves still queued; running solves are interrupted.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+        connections.shutdownNow();
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "Use POST\n");
+                return;
+            }
+            Metrics.SERVICE_REQUESTS.increment();
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            long timeLimitMillis;
+            Zoo zoo;
+            try {
+                timeLimitMillis = query.containsKey("time") ? timeBudget(query.get("time")) : -1;
+                zoo = query.containsKey("file") ? readZooFile(query.get("file")) : readZooBody(exchange);
+            } catch (RequestException e) {
+                respond(exchange, e.status, e.getMessage() + "\n");
+                return;
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+
+            Future<ZooSolver.Result> solve;
+            try {
+                solve = workers.submit(() -> timeLimitMillis < 0 ? solver.solve(zoo) : solver.solve(zoo, timeLimitMillis));
+            } catch (RejectedExecutionException e) {
+                Metrics.SERVICE_REJECTIONS.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "All " + workers.getMaximumPoolSize() + " worker(s) busy and the queue is full\n");
+                return;
+            }
+            ZooSolver.Result result;
+            try {
+                result = solve.get();
+            } catch (ExecutionException e) {
+                System.err.println("Error solving zoo: " + e.getCause());
+                respond(exchange, 500, "Error solving zoo: " + e.getCause().getMessage() + "\n");
+                return;
+            } catch (InterruptedException e) {
+                solve.cancel(true);
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "Service shutting down\n");
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.getResponseHeaders().set("X-Score", String.format(Locale.ROOT, "%.2f", result.getScore()));
+            exchange.getResponseHeaders().set("X-Runs", result.getRuns() + "/" + (zoo.getBatterySwaps() + 1));
+            exchange.getResponseHeaders().set("X-Solve-Millis", Long.toString(result.getSolveMillis()));
+            exchange.sendResponseHeaders(200, 0); // Streamed, as the length is not known up front
+            ZooFileHandler.writePaths(result.getPaths(), Channels.newChannel(exchange.getResponseBody()));
+            Console.println("Solved " + (query.containsKey("file") ? query.get("file") : "posted zoo")
+                    + ": score " + String.format("%.2f", result.getScore()) + " in " + result.getSolveMillis() + " ms");
+        }
+    }
+
+    // ?time= in seconds, as milliseconds. NaN would round to 0 (no budget) and huge values overflow the solver's
+    // nanosecond deadline, so only finite budgets of up to MAX_TIME_SECONDS are taken
+    private static long timeBudget(String value) {
+        double seconds = Double.parseDouble(value);
+        if (!Double.isFinite(seconds) || seconds < 0 || seconds > MAX_TIME_SECONDS) {
+            throw new IllegalArgumentException("Invalid time budget: " + value);
+        }
+        return Math.round(seconds * 1000);
+    }
+
+        // A file in the zoo directory; the client only learns that it could not be read, not why
+    private Zoo readZooFile(String name) throws RequestException {
+        Path directory = zooDirectory;
+        if (directory == null) {
+            throw new RequestException(403, "Zoo files are not served; send the zoo specification as the body");
+        }
+        Path file;
+        try {
+            file = directory.resolve(name).toRealPath(); // Follows links, so they cannot lead out either
+        } catch (IOException | InvalidPathException e) {
+            System.err.println("Cannot read zoo file " + name + ": " + e);
+            throw new RequestException(404, "Cannot read zoo file " + name);
+        }
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            throw new RequestException(404, "Cannot read zoo file " + name);
+        }
+        try {
+            return ZooFileHandler.readZooFromFile(file.toString());
+        } catch (IOException e) {
+            System.err.println("Cannot read zoo file " + file + ": " + e);
+            throw new RequestException(404, "Cannot read zoo file " + name);
+        }
+    }
+
+    // The body, read no further than the size limit
+    private Zoo readZooBody(HttpExchange exchange) throws IOException, RequestException {
+        long limit = maxBodyBytes;
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && length.matches("\\d+") && (length.length() > 18 || Long.parseLong(length) > limit)) {
+            throw new RequestException(413, "Zoo specification over the limit of " + limit + " bytes");
+        }
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readNBytes((int) Math.min(limit + 1, Integer.MAX_VALUE - 8));
+        }
+        if (body.length > limit) {
+            throw new RequestException(413, "Zoo specification over the limit of " + limit + " bytes");
+        }
+        if (body.length == 0) {
+            throw new IllegalArgumentException("Send the zoo specification as the body");
+        }
+        return ZooFileHandler.readZoo(body, "request body");
+    }
+
+    // A request answered with an error status and a message
+    private static class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) return parameters;
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
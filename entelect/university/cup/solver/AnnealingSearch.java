@@ -0,0 +1,364 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.models.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Large-neighbourhood search with simulated-annealing acceptance.
+ * Each iteration destroys part of the solution (a cluster of nearby enclosures, a
+ * stretch of one run, or enclosures picked at random), then repairs it by inserting the
+ * removed enclosures and unfed ones around them, most important first with some noise,
+ * each at its cheapest feasible gap. The result is kept if it scores better, or with a
+ * probability that shrinks as the temperature cools over the time limit; otherwise the
+ * {@link WorkingSolution} journal rolls it back, so an iteration only costs as much as
+ * the runs it touched.
+ * Runs one or more independent chains with their own seeds in parallel and keeps the
+ * best solution found. With a {@link SolutionListener} set, each chain also hands it a copy
+ * of its best solution whenever that improved, at most every half second.
+ */
+public class AnnealingSearch {
+
+    private static final int MIN_REMOVED = 2;
+    private static final int MAX_REMOVED = 15;
+    private static final int RANDOM_CANDIDATES = 3;
+    private static final double NOISE = 0.3;
+    private static final double START_TEMPERATURE = 0.5; // In units of the mean importance
+    private static final double END_TEMPERATURE = 0.005;
+    // How much a unit of distance is worth, in units of the mean importance per mean distance per fed enclosure
+    private static final double DISTANCE_WEIGHT = 0.1;
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final SearchContext context;
+    private final LegCostTable table;
+
+    private long timeLimitMillis = 10_000;
+    private long maxIterations = Long.MAX_VALUE;
+    private long seed = 1;
+    private int chains = Runtime.getRuntime().availableProcessors();
+    private SolutionListener listener;
+
+    private long iterations;
+
+    public AnnealingSearch(LegCostTable table) {
+        this(new SearchContext(table));
+    }
+
+    public AnnealingSearch(SearchContext context) {
+        this.context = context;
+        this.table = context.getTable();
+    }
+
+    /**
+     * @param timeLimitMillis Wall-clock budget per {@link #improve} call.
+     */
+    public void setTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = Math.max(1, timeLimitMillis);
+    }
+
+    /**
+     * @param maxIterations The maximum number of iterations of each chain.
+     */
+    public void setMaxIterations(long maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * @param seed The random seed of the first chain; the others use the following seeds.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param chains The number of independent chains, run in parallel.
+     */
+    public void setChains(int chains) {
+        this.chains = Math.max(1, chains);
+    }
+
+    /**
+     * @param listener Told about better solutions while the chains run; null for none.
+     */
+    public void setListener(SolutionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return The iterations run by all chains in the last {@link #improve} call.
+     */
+    public synchronized long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Improves point paths as produced by {@link PathFinder#generatePaths()}.
+     *
+     * @param paths The runs to improve.
+     * @return The improved runs.
+     */
+    public List<List<Point>> improve(List<List<Point>> paths) {
+        return improve(Solution.fromPaths(table, paths)).toPaths();
+    }
+
+    /**
+     * Improves a solution. The given solution is left untouched.
+     *
+     * @param start The solution to start from.
+     * @return The best solution found by any chain.
+     */
+    public Solution improve(Solution start) {
+        iterations = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+        Solution best = start.copy();
+        best.removeEmptyRuns();
+
+        ForkJoinPool pool = new ForkJoinPool(chains);
+        try {
+            List<Future<Solution>> results = new ArrayList<>();
+            for (int c = 0; c < chains; c++) {
+                Chain chain = new Chain(start, seed + c, deadline);
+                results.add(pool.submit(chain::run));
+            }
+            for (Future<Solution> result : results) {
+                Solution found = result.get();
+                if (found.getScore() > best.getScore()
+                        || (found.getScore() == best.getScore() && found.getTotalDistance() < best.getTotalDistance())) {
+                    best = found;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Annealing chain failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Console.println("Annealing ran " + iterations + " iterations in " + chains + " chain(s); score "
+                + String.format("%.2f", start.getScore()) + " -> " + String.format("%.2f", best.getScore()));
+        return best;
+    }
+
+    /**
+     * One independent annealing chain over its own copy of the start solution.
+     */
+    private class Chain {
+
+        private final Random random;
+        private final long startNanos;
+        private final long deadline;
+        private final WorkingSolution state;
+        private final double distanceWeight;
+        private final double startTemperature;
+        private final double endTemperature;
+
+        private int[] removed = new int[MAX_REMOVED];
+        private int removedCount;
+        private int[] candidates = new int[MAX_REMOVED * 12];
+        private double[] priorities = new double[candidates.length];
+        private int candidateCount;
+
+        Chain(Solution start, long seed, long deadline) {
+            this.random = new Random(seed);
+            this.startNanos = System.nanoTime();
+            this.deadline = deadline;
+            this.state = new WorkingSolution(context, start.copy());
+
+            Solution solution = state.getSolution();
+            int fed = Math.max(1, solution.getFed().count());
+            double meanImportance = fed > 1 || solution.getScore() > 0 ? solution.getScore() / fed : 1;
+            double distancePerFed = Math.max(1, solution.getTotalDistance() / fed);
+            this.distanceWeight = DISTANCE_WEIGHT * meanImportance / distancePerFed;
+            this.startTemperature = START_TEMPERATURE * meanImportance;
+            this.endTemperature = END_TEMPERATURE * meanImportance;
+        }
+
+        Solution run() {
+            Solution best = null; // Null while the current solution is the best one
+            double bestValue = value();
+            double currentValue = bestValue;
+            double temperature = startTemperature;
+            long iteration = 0;
+            double reportedValue = bestValue; // The start solution is already known to the listener
+            long reportedNanos = startNanos;
+
+            while (iteration < maxIterations) {
+                if ((iteration & 63) == 0) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) break;
+                    if (listener != null && bestValue > reportedValue && now - reportedNanos >= REPORT_INTERVAL_NANOS) {
+                        // Between iterations, so the working solution is consistent
+                        listener.improved((best == null ? state.getSolution() : best).copy());
+                        reportedValue = bestValue;
+                        reportedNanos = now;
+                    }
+                    double progress = (double) (now - startNanos) / Math.max(1, deadline - startNanos);
+                    temperature = startTemperature * Math.pow(endTemperature / startTemperature, progress);
+                }
+                iteration++;
+
+                state.beginJournal();
+                destroy();
+                repair();
+                double candidateValue = value();
+                double delta = candidateValue - currentValue;
+                if (delta >= 0 || random.nextDouble() < Math.exp(delta / temperature)) {
+                    if (delta < 0 && best == null) {
+                        // Leaving the best solution: keep a copy of it first
+                        state.rollback();
+                        best = state.getSolution().copy();
+                        continue;
+                    }
+                    state.commit();
+                    currentValue = candidateValue;
+                    if (currentValue > bestValue) {
+                        bestValue = currentValue;
+                        best = null;
+                    }
+                } else {
+                    state.rollback();
+                }
+            }
+
+            synchronized (AnnealingSearch.this) {
+                iterations += iteration;
+            }
+            if (best == null) {
+                best = state.getSolution();
+            }
+            best.removeEmptyRuns();
+            return best;
+        }
+
+        private double value() {
+            Solution solution = state.getSolution();
+            return solution.getScore() - distanceWeight * solution.getTotalDistance();
+        }
+
+        // --- Destroy ---
+
+        private void destroy() {
+            removedCount = 0;
+            int target = MIN_REMOVED + random.nextInt(MAX_REMOVED - MIN_REMOVED + 1);
+            switch (random.nextInt(3)) {
+                case 0 -> removeCluster(target);
+                case 1 -> removeStretch(target);
+                default -> removeRandom(target);
+            }
+        }
+
+        // A fed enclosure and the fed enclosures around it
+        private void removeCluster(int target) {
+            int first = randomFed();
+            if (first < 0) return;
+            remove(first);
+            for (int k = 0; k < removedCount && removedCount < target; k++) {
+                for (int y : context.neighboursOf(removed[k])) {
+                    if (removedCount == target) break;
+                    if (state.isFed(y)) remove(y);
+                }
+            }
+        }
+
+        // Consecutive enclosures of one run
+        private void removeStretch(int target) {
+            int first = randomFed();
+            if (first < 0) return;
+            RunPlan run = state.getRuns().get(state.runOf(first));
+            int position = state.positionOf(first);
+            int[] stops = run.toArray();
+            for (int i = position; i < stops.length && removedCount < target; i++) {
+                if (!table.isStorage(stops[i])) remove(stops[i]);
+            }
+        }
+
+        private void removeRandom(int target) {
+            for (int k = 0; k < target; k++) {
+                int x = randomFed();
+                if (x >= 0) remove(x);
+            }
+        }
+
+        private void remove(int x) {
+            if (!state.isFed(x)) return;
+            state.unfeed(x);
+            removed[removedCount++] = x;
+        }
+
+        private int randomFed() {
+            int count = context.getEnclosureCount();
+            for (int attempt = 0; attempt < 32; attempt++) {
+                int x = context.getHubCount() + random.nextInt(count);
+                if (state.isFed(x)) return x;
+            }
+            return -1;
+        }
+
+        // --- Repair ---
+
+        private void repair() {
+            candidateCount = 0;
+            for (int k = 0; k < removedCount; k++) {
+                addCandidate(removed[k]);
+                for (int y : context.neighboursOf(removed[k])) {
+                    if (!state.isFed(y)) addCandidate(y);
+                }
+            }
+            int count = context.getEnclosureCount();
+            for (int k = 0; k < RANDOM_CANDIDATES; k++) {
+                int x = context.getHubCount() + random.nextInt(count);
+                if (!state.isFed(x)) addCandidate(x);
+            }
+
+            // Most important first, shuffled a little so repeated repairs differ
+            for (int k = 0; k < candidateCount; k++) {
+                priorities[k] = -context.importanceOf(candidates[k]) * (1 + NOISE * random.nextDouble());
+            }
+            sortCandidates();
+            for (int k = 0; k < candidateCount; k++) {
+                int e = candidates[k];
+                if (state.isFed(e)) continue;
+                WorkingSolution.Insertion insertion = state.bestInsertion(e);
+                if (insertion != null) {
+                    state.apply(insertion, e);
+                }
+            }
+        }
+
+        private void addCandidate(int e) {
+            for (int k = 0; k < candidateCount; k++) {
+                if (candidates[k] == e) return;
+            }
+            if (candidateCount == candidates.length) {
+                candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                priorities = Arrays.copyOf(priorities, candidateCount * 2);
+            }
+            candidates[candidateCount++] = e;
+        }
+
+        // Insertion sort by priority; the lists are short
+        private void sortCandidates() {
+            for (int i = 1; i < candidateCount; i++) {
+                int e = candidates[i];
+                double p = priorities[i];
+                int j = i - 1;
+                while (j >= 0 && priorities[j] > p) {
+                    candidates[j + 1] = candidates[j];
+                    priorities[j + 1] = priorities[j];
+                    j--;
+                }
+                candidates[j + 1] = e;
+                priorities[j + 1] = p;
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Construction that plans how the runs (battery swaps) are spread over the zoo before
+ * building any of them, instead of spending them one at a time like {@link PathFinder}.
+ * <ol>
+ *     <li>The enclosures of each diet are cut into grid cells sized so that a cell holds
+ *     about twice what one battery can feed there: each cell of one diet is a cluster.</li>
+ *     <li>Each cluster gets an estimate of the stops one run can make in it (the battery
+ *     left after flying out through the handiest storage of its diet and back, divided
+ *     by the typical cost of a stop of its diet), and so of the importance the next run
+ *     sent there would feed (its most important enclosures not yet counted for an earlier
+ *     run).</li>
+ *     <li>Runs are handed out one at a time to the cluster where the next run is expected
+ *     to feed the most importance per metre of battery.</li>
+ *     <li>The runs are built in parallel, one task per cluster: each run picks up the
+ *     cluster's food at the {@link PickupTable} storage of its first enclosure, then keeps
+ *     adding the enclosure of the cluster with the most importance per metre added, until
+ *     the battery is spent. Clusters share no enclosures, so the tasks need no
+ *     coordination.</li>
+ * </ol>
+ */
+public class ClusterPlanner {
+
+    private static final double MEMBERS_PER_STOP = 2.0; // Cluster size, in stops a run can make there
+    private static final double LEG_FACTOR = 1.5; // Mean leg between stops, in mean nearest-neighbour distances
+
+    private final LegCostTable table;
+    private final int parallelism;
+    private final int hubCount;
+    private final int batteryCapacity;
+
+    private double score;
+
+    public ClusterPlanner(LegCostTable table) {
+        this(table, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ClusterPlanner(LegCostTable table, int parallelism) {
+        this.table = table;
+        this.parallelism = Math.max(1, parallelism);
+        this.hubCount = table.getHubCount();
+        this.batteryCapacity = table.getZoo().getBatteryCapacity();
+    }
+
+    /**
+     * @return The total importance of the enclosures fed by the last {@link #generatePaths()} call.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Plans and builds the runs.
+     *
+     * @return A list of paths (each path is a list of Points), at most one per battery.
+     */
+    public List<List<Point>> generatePaths() {
+        List<List<Point>> paths = new ArrayList<>();
+        boolean[] fed = new boolean[table.getLocationCount()];
+        int runsLeft = table.getZoo().getBatterySwaps() + 1;
+        score = 0;
+        int rounds = 0;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // Runs the estimates left unused (or clusters emptied early) go to a new plan over what is still unfed
+            while (runsLeft > 0) {
+                List<Cluster> clusters = buildClusters(fed);
+                allocateRuns(clusters, runsLeft);
+                List<Future<List<List<Point>>>> built = new ArrayList<>();
+                for (Cluster cluster : clusters) {
+                    if (cluster.runs > 0) built.add(pool.submit(() -> cluster.buildRuns(fed)));
+                }
+                int before = paths.size();
+                for (Future<List<List<Point>>> runs : built) {
+                    paths.addAll(runs.get());
+                }
+                for (Cluster cluster : clusters) {
+                    score += cluster.fedImportance;
+                }
+                rounds++;
+                if (paths.size() == before) break; // Nothing left that a run can reach
+                runsLeft -= paths.size() - before;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cluster run construction failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Console.println("Planned " + paths.size() + " runs in " + rounds + " round(s); score "
+                + String.format("%.2f", score));
+        return paths;
+    }
+
+    // --- Clustering ---
+
+    private List<Cluster> buildClusters(boolean[] fed) {
+        int locationCount = table.getLocationCount();
+        Point dimensions = table.getZoo().getDimensions();
+        double width = Math.max(1, dimensions.getX());
+        double height = Math.max(1, dimensions.getY());
+
+        // Group the enclosures by diet, noting the storages each diet can be fed from
+        List<Character> diets = new ArrayList<>();
+        List<List<Integer>> storagesOfDiet = new ArrayList<>();
+        for (int id = 1; id < hubCount; id++) {
+            int d = diets.indexOf(table.diet(id));
+            if (d < 0) {
+                diets.add(table.diet(id));
+                storagesOfDiet.add(new ArrayList<>());
+                d = diets.size() - 1;
+            }
+            storagesOfDiet.get(d).add(id);
+        }
+        int[] dietOf = new int[locationCount];
+        int[] dietCount = new int[diets.size()];
+        double[] dietArrival = new double[diets.size()];
+        double depotDistance = 0;
+        int reachable = 0;
+        for (int id = hubCount; id < locationCount; id++) {
+            int d = diets.indexOf(table.diet(id));
+            dietOf[id] = d;
+            if (d < 0 || fed[id]) continue; // Done, or no storage has its food
+            dietCount[d]++;
+            dietArrival[d] += table.arrivalCost(id);
+            depotDistance += table.horizontal(LegCostTable.DEPOT_ID, id);
+            reachable++;
+        }
+        if (reachable == 0) return new ArrayList<>();
+        double overhead = 2 * depotDistance / reachable + 2 * table.depotVerticalCost();
+
+        // A cell per diet holds about MEMBERS_PER_STOP times the stops of one typical run
+        List<Cluster> clusters = new ArrayList<>();
+        int[] firstCluster = new int[diets.size()];
+        int[] columns = new int[diets.size()];
+        int[] rows = new int[diets.size()];
+        double[] stopCost = new double[diets.size()];
+        for (int d = 0; d < diets.size(); d++) {
+            firstCluster[d] = clusters.size();
+            if (dietCount[d] == 0) continue;
+            double spacing = 0.5 * Math.sqrt(width * height / dietCount[d]); // Mean nearest-neighbour distance
+            stopCost[d] = dietArrival[d] / dietCount[d] + LEG_FACTOR * spacing;
+            double stops = Math.max(1, (batteryCapacity - overhead) / Math.max(1e-9, stopCost[d]));
+            double cells = Math.max(1, dietCount[d] / (MEMBERS_PER_STOP * stops));
+            double side = Math.sqrt(width * height / cells);
+            columns[d] = Math.max(1, (int) Math.ceil(width / side));
+            rows[d] = Math.max(1, (int) Math.ceil(height / side));
+            for (int c = 0; c < columns[d] * rows[d]; c++) {
+                clusters.add(new Cluster(d, stopCost[d]));
+            }
+        }
+        for (int id = hubCount; id < locationCount; id++) {
+            int d = dietOf[id];
+            if (d < 0 || fed[id]) continue;
+            int column = Math.min(columns[d] - 1, (int) (table.x(id) * columns[d] / width));
+            int row = Math.min(rows[d] - 1, (int) (table.y(id) * rows[d] / height));
+            clusters.get(firstCluster[d] + Math.max(0, row) * columns[d] + Math.max(0, column)).add(id);
+        }
+        clusters.removeIf(cluster -> cluster.size == 0);
+        for (Cluster cluster : clusters) {
+            cluster.prepare(storagesOfDiet.get(cluster.diet));
+        }
+        return clusters;
+    }
+
+    // --- Allocation ---
+
+    // Hands out the runs one at a time to the cluster whose next run is expected to feed the most
+    private void allocateRuns(List<Cluster> clusters, int runs) {
+        PriorityQueue<Cluster> queue = new PriorityQueue<>((a, b) -> Double.compare(b.nextValue(), a.nextValue()));
+        for (Cluster cluster : clusters) {
+            if (cluster.nextValue() > 0) queue.add(cluster);
+        }
+        for (int r = 0; r < runs && !queue.isEmpty(); r++) {
+            Cluster best = queue.poll();
+            best.runs++;
+            if (best.nextValue() > 0) queue.add(best);
+        }
+    }
+
+    /**
+     * The enclosures of one diet in one grid cell, and the runs planned for them.
+     */
+    private class Cluster {
+        private final int diet;
+        private final double stopCost;
+        private int[] members = new int[16]; // Location ids, most important first once prepared
+        private int size;
+        private int stopsPerRun; // Estimated
+        private double[] prefixImportance; // Of the members in order
+        private int runs; // Planned
+        private double fedImportance; // Once built
+
+        Cluster(int diet, double stopCost) {
+            this.diet = diet;
+            this.stopCost = stopCost;
+        }
+
+        void add(int id) {
+            if (size == members.length) members = Arrays.copyOf(members, size * 2);
+            members[size++] = id;
+        }
+
+        // Estimates what one run can feed here, and orders the members by importance
+        void prepare(List<Integer> storages) {
+            members = Arrays.copyOf(members, size);
+            double cx = 0, cy = 0;
+            for (int id : members) {
+                cx += table.x(id);
+                cy += table.y(id);
+            }
+            cx /= size;
+            cy /= size;
+
+            int storage = RunState.NO_STORAGE;
+            double bestOut = Double.POSITIVE_INFINITY;
+            for (int s : storages) {
+                double out = table.horizontal(LegCostTable.DEPOT_ID, s) + Math.hypot(table.x(s) - cx, table.y(s) - cy);
+                if (out < bestOut) {
+                    bestOut = out;
+                    storage = s;
+                }
+            }
+            double home = Math.hypot(table.x(LegCostTable.DEPOT_ID) - cx, table.y(LegCostTable.DEPOT_ID) - cy);
+            double left = batteryCapacity - 2 * table.depotVerticalCost() - table.arrivalCost(storage) - bestOut - home;
+            stopsPerRun = (int) Math.max(0, Math.min(size, left / stopCost));
+
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = members[i];
+            Arrays.sort(order, (a, b) -> Double.compare(table.importance(b), table.importance(a)));
+            prefixImportance = new double[size + 1];
+            for (int i = 0; i < size; i++) {
+                members[i] = order[i];
+                prefixImportance[i + 1] = prefixImportance[i] + table.importance(order[i]);
+            }
+        }
+
+        // Importance per metre of battery the next run sent here is expected to feed
+        double nextValue() {
+            int from = Math.min(size, runs * stopsPerRun);
+            int to = Math.min(size, from + stopsPerRun);
+            return (prefixImportance[to] - prefixImportance[from]) / batteryCapacity;
+        }
+
+        // Marks the enclosures it feeds in the shared array; clusters never share an enclosure
+        List<List<Point>> buildRuns(boolean[] fedLocations) {
+            boolean[] fed = new boolean[size];
+            PickupTable pickups = table.getPickups();
+            int left = size;
+            List<List<Point>> paths = new ArrayList<>(runs);
+            long evaluated = 0;
+            for (int r = 0; r < runs && left > 0; r++) {
+                RunState run = new RunState(table);
+                while (left > 0) {
+                    int pick = -1;
+                    int pickPickup = RunState.NO_STORAGE;
+                    double bestValue = Double.NEGATIVE_INFINITY;
+                    double base = run.getTotalDistance();
+                    boolean first = run.isEmpty();
+                    for (int i = 0; i < size; i++) {
+                        if (fed[i]) continue;
+                        int pickup = first ? pickups.bestPickup(LegCostTable.DEPOT_ID, members[i]) : RunState.NO_STORAGE;
+                        // Straight legs first: only a candidate that could still win gets its detours routed
+                        double bound = run.lowerBoundToExtend(pickup, members[i]);
+                        double importance = table.importance(members[i]);
+                        if (bound > batteryCapacity || importance / Math.max(bound - base, 1e-9) <= bestValue) continue;
+                        evaluated++;
+                        double cost = run.costToExtend(pickup, members[i]);
+                        if (cost > batteryCapacity) continue;
+                        double value = importance / Math.max(cost - base, 1e-9);
+                        if (value > bestValue) {
+                            bestValue = value;
+                            pick = i;
+                            pickPickup = pickup;
+                        }
+                    }
+                    if (pick < 0) break;
+                    run.extend(pickPickup, members[pick]);
+                    fed[pick] = true;
+                    fedLocations[members[pick]] = true;
+                    left--;
+                    fedImportance += table.importance(members[pick]);
+                }
+                if (run.isEmpty()) break; // Nothing here fits in a battery
+                paths.add(run.close());
+                Metrics.RUNS_BUILT.increment();
+            }
+            Metrics.CANDIDATES_EVALUATED.add(evaluated);
+            Metrics.COST_EVALUATIONS.add(evaluated); // Each candidate looked at is priced once
+            return paths;
+        }
+    }
+}
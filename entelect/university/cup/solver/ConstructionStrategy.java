@@ -0,0 +1,34 @@
+package entelect.university.cup.solver;
+
+/**
+ * How {@link PathFinder} picks the next enclosure to add to a run.
+ * Candidates are always visited best importance first (within the run's remaining reach);
+ * the strategies differ in how many feasible candidates they look at and which one they keep.
+ */
+public enum ConstructionStrategy {
+
+    /** The first feasible candidate, i.e. the most important enclosure that still fits. */
+    IMPORTANCE(1),
+
+    /** Of the first few feasible candidates, the one with the most importance per metre added. */
+    IMPORTANCE_PER_METRE(32),
+
+    /** The feasible candidate that adds the fewest metres, searching outwards from the drone. */
+    NEAREST_NEIGHBOUR(Integer.MAX_VALUE),
+
+    /** A random pick (seeded) among the first few feasible candidates. */
+    RANDOMIZED(3);
+
+    private final int candidateLimit;
+
+    ConstructionStrategy(int candidateLimit) {
+        this.candidateLimit = candidateLimit;
+    }
+
+    /**
+     * @return How many feasible candidates to consider before choosing.
+     */
+    public int getCandidateLimit() {
+        return candidateLimit;
+    }
+}
@@ -0,0 +1,185 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid over the bounding boxes of the dead zone circles, built once per zoo.
+ * A leg only runs the exact segment/circle test against the circles registered in the
+ * grid cells it sweeps through, so most legs are rejected without touching most circles.
+ * All queries are allocation-free and safe to call from several threads.
+ */
+public class DeadZoneIndex {
+
+    private static final double ROW_EPSILON = 1e-6;
+
+    private final int count;
+    private final double[] centreX;
+    private final double[] centreY;
+    private final double[] radius;
+    private final int[] minColumn; // Cell range covered by each circle's bounding box
+    private final int[] maxColumn;
+    private final int[] minRow;
+    private final int[] maxRow;
+
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[][] cells; // [cell] -> circle numbers, null when empty
+
+    /**
+     * Builds the index for the zoo's dead zones.
+     *
+     * @param zoo The zoo whose dead zones to index.
+     */
+    public DeadZoneIndex(Zoo zoo) {
+        List<DeadZone> deadzones = zoo.getDeadzones();
+        this.count = deadzones.size();
+        this.centreX = new double[count];
+        this.centreY = new double[count];
+        this.radius = new double[count];
+        this.minColumn = new int[count];
+        this.maxColumn = new int[count];
+        this.minRow = new int[count];
+        this.maxRow = new int[count];
+
+        double totalRadius = 0;
+        for (int i = 0; i < count; i++) {
+            DeadZone dz = deadzones.get(i);
+            centreX[i] = dz.getCenter().getX();
+            centreY[i] = dz.getCenter().getY();
+            radius[i] = dz.getRadius();
+            totalRadius += dz.getRadius();
+        }
+
+        // Aim for a few cells per circle, but never cells much smaller than a typical circle
+        Point dimensions = zoo.getDimensions();
+        double width = Math.max(1, dimensions.getX());
+        double height = Math.max(1, dimensions.getY());
+        double averageDiameter = count == 0 ? 1.0 : 2.0 * totalRadius / count;
+        double byCount = Math.sqrt(width * height / Math.max(1, 4 * count));
+        this.cellSize = Math.max(1.0, Math.max(averageDiameter, byCount));
+        this.columns = (int) (width / cellSize) + 1;
+        this.rows = (int) (height / cellSize) + 1;
+        this.cells = new int[columns * rows][];
+
+        for (int i = 0; i < count; i++) {
+            minColumn[i] = column(centreX[i] - radius[i]);
+            maxColumn[i] = column(centreX[i] + radius[i]);
+            minRow[i] = row(centreY[i] - radius[i]);
+            maxRow[i] = row(centreY[i] + radius[i]);
+            for (int r = minRow[i]; r <= maxRow[i]; r++) {
+                for (int c = minColumn[i]; c <= maxColumn[i]; c++) {
+                    int cell = r * columns + c;
+                    int[] ids = cells[cell];
+                    ids = ids == null ? new int[1] : Arrays.copyOf(ids, ids.length + 1);
+                    ids[ids.length - 1] = i;
+                    cells[cell] = ids;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Checks if the horizontal segment between two points crosses any dead zone.
+     */
+    public boolean intersectsAny(Point p1, Point p2) {
+        return intersectsAny(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+    }
+
+    /**
+     * Checks if the horizontal segment (x1,y1)-(x2,y2) crosses any dead zone.
+     * The segment is swept column by column through the grid; each circle met on the way
+     * is tested exactly once, in the first swept cell that holds it. Not counted here: the
+     * callers add their tests to {@link Metrics#DEAD_ZONE_TESTS}, once per call of their own.
+     */
+    public boolean intersectsAny(double x1, double y1, double x2, double y2) {
+        if (count == 0) return false;
+
+        // Sweep from left to right; the exact test still uses the caller's point order
+        double leftX = x1, leftY = y1, rightX = x2, rightY = y2;
+        if (x2 < x1) {
+            leftX = x2; leftY = y2; rightX = x1; rightY = y1;
+        }
+        double slope = rightX == leftX ? 0.0 : (rightY - leftY) / (rightX - leftX);
+        int firstColumn = column(leftX);
+        int lastColumn = column(rightX);
+
+        int previousLo = 1, previousHi = 0; // Rows swept in the previous column (none yet)
+        for (int c = firstColumn; c <= lastColumn; c++) {
+            double startX = c == firstColumn ? leftX : c * cellSize;
+            double endX = c == lastColumn ? rightX : (c + 1) * cellSize;
+            double startY = c == firstColumn ? leftY : leftY + (startX - leftX) * slope;
+            double endY = c == lastColumn ? rightY : leftY + (endX - leftX) * slope;
+            int lo = row(Math.min(startY, endY) - ROW_EPSILON);
+            int hi = row(Math.max(startY, endY) + ROW_EPSILON);
+
+            for (int r = lo; r <= hi; r++) {
+                int[] ids = cells[r * columns + c];
+                if (ids == null) continue;
+                for (int i : ids) {
+                    // Only test a circle in the first swept cell that holds it
+                    if (r != Math.max(lo, minRow[i])) continue;
+                    if (c > firstColumn && c - 1 >= minColumn[i]
+                            && previousLo <= maxRow[i] && previousHi >= minRow[i]) continue;
+                    if (DeadZone.segmentIntersectsCircle(x1, y1, x2, y2, centreX[i], centreY[i], radius[i])) {
+                        return true;
+                    }
+                }
+            }
+            previousLo = lo;
+            previousHi = hi;
+        }
+        return false;
+    }
+
+    /**
+     * Batch check of one origin against up to 64 destinations.
+     * If the origin itself lies inside a dead zone every leg is blocked, so that case
+     * is settled once for the whole batch.
+     *
+     * @param originX The origin X coordinate.
+     * @param originY The origin Y coordinate.
+     * @param destX   Destination X coordinates.
+     * @param destY   Destination Y coordinates.
+     * @param from    First destination index (inclusive).
+     * @param to      Last destination index (exclusive), at most 64 after from.
+     * @return A mask with bit (i - from) set if the leg to destination i is blocked.
+     */
+    public long blockedMask(int originX, int originY, int[] destX, int[] destY, int from, int to) {
+        if (to - from > 64) {
+            throw new IllegalArgumentException("At most 64 destinations per batch, got " + (to - from));
+        }
+        if (count == 0 || to <= from) return 0L;
+        Metrics.DEAD_ZONE_TESTS.add(to - from);
+        for (int i = 0; i < count; i++) {
+            double ex = centreX[i] - originX;
+            double ey = centreY[i] - originY;
+            if (ex * ex + ey * ey < radius[i] * radius[i]) {
+                return to - from == 64 ? -1L : (1L << (to - from)) - 1;
+            }
+        }
+        long bits = 0L;
+        for (int d = from; d < to; d++) {
+            if (intersectsAny(originX, originY, destX[d], destY[d])) {
+                bits |= 1L << (d - from);
+            }
+        }
+        return bits;
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor(x / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellSize)));
+    }
+}
@@ -0,0 +1,219 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the shortest horizontal path between two points that flies around the dead zones
+ * instead of through them. Each circle is wrapped in a slightly larger octagon whose
+ * integer corners become the candidate waypoints of a visibility graph, which is searched
+ * with A* (visibility of an edge is only tested when the edge is relaxed).
+ * A corner that falls on the XY of the depot, a storage or an enclosure is pushed further
+ * out, as a point there in the output would count as landing at that location.
+ * Waypoints are returned at {@link DroneMathUtils#FLIGHT_ALTITUDE}, so the drone flies
+ * straight over them and they add no landing or takeoff cost to a run.
+ */
+public class DetourRouter {
+
+    private static final int CORNERS_PER_ZONE = 8;
+    private static final double CLEARANCE = 1.0; // Meters kept between a waypoint edge and a circle
+    private static final int MAX_PUSHES = 8; // Tries to move a corner off a location, a meter further out each
+
+    private final DeadZoneIndex deadZones;
+    private final int[] cornerX;
+    private final int[] cornerY;
+
+    /**
+     * A route around the dead zones: the waypoints between the two endpoints and the
+     * total horizontal length. An unreachable pair has an infinite length and no waypoints.
+     */
+    public static class Detour {
+        public static final Detour UNREACHABLE = new Detour(Double.POSITIVE_INFINITY, new Point[0]);
+
+        private final double length;
+        private final Point[] waypoints;
+
+        Detour(double length, Point[] waypoints) {
+            this.length = length;
+            this.waypoints = waypoints;
+        }
+
+        public double getLength() {
+            return length;
+        }
+
+        public boolean isReachable() {
+            return length != Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @return The waypoints in flight order, excluding both endpoints.
+         */
+        public Point[] getWaypoints() {
+            return waypoints.clone();
+        }
+
+        /**
+         * Appends the waypoints to a path, in flight order or reversed when the leg is flown backwards.
+         */
+        public void appendWaypoints(List<Point> path, boolean reversed) {
+            if (reversed) {
+                for (int i = waypoints.length - 1; i >= 0; i--) path.add(waypoints[i]);
+            } else {
+                path.addAll(Arrays.asList(waypoints));
+            }
+        }
+    }
+
+    /**
+     * @param zoo       The zoo, for its dead zones and map dimensions.
+     * @param deadZones The dead zone index used for every visibility test.
+     */
+    public DetourRouter(Zoo zoo, DeadZoneIndex deadZones) {
+        this.deadZones = deadZones;
+        int width = zoo.getDimensions().getX();
+        int height = zoo.getDimensions().getY();
+
+        long[] locations = locationKeys(zoo);
+        List<int[]> corners = new ArrayList<>();
+        long tests = 0; // Added to the metrics once, as for the searches
+        for (DeadZone dz : zoo.getDeadzones()) {
+            // Octagon corners far enough out that its edges clear the circle after rounding
+            double cornerRadius = dz.getRadius() / Math.cos(Math.PI / CORNERS_PER_ZONE) + CLEARANCE;
+            for (int k = 0; k < CORNERS_PER_ZONE; k++) {
+                double angle = 2 * Math.PI * k / CORNERS_PER_ZONE;
+                int cx = 0, cy = 0;
+                boolean free = false;
+                // Further out along the same ray the octagon only grows, so its edges still clear the circle
+                for (int push = 0; push <= MAX_PUSHES && !free; push++) {
+                    cx = (int) Math.round(dz.getCenter().getX() + (cornerRadius + push) * Math.cos(angle));
+                    cy = (int) Math.round(dz.getCenter().getY() + (cornerRadius + push) * Math.sin(angle));
+                    free = Arrays.binarySearch(locations, key(cx, cy)) < 0;
+                }
+                if (!free) continue; // Locations all along the ray; the other corners have to do
+                if (cx < 0 || cy < 0 || cx > width || cy > height) continue; // Stay on the map
+                tests++;
+                if (deadZones.intersectsAny(cx, cy, cx, cy)) continue; // Inside a neighbouring zone
+                corners.add(new int[]{cx, cy});
+            }
+        }
+        Metrics.DEAD_ZONE_TESTS.add(tests);
+        this.cornerX = new int[corners.size()];
+        this.cornerY = new int[corners.size()];
+        for (int i = 0; i < corners.size(); i++) {
+            cornerX[i] = corners.get(i)[0];
+            cornerY[i] = corners.get(i)[1];
+        }
+    }
+
+    // The XY of the depot and of every storage and enclosure, sorted
+    private static long[] locationKeys(Zoo zoo) {
+        ZooColumns c = zoo.getColumns();
+        int storages = c.getStorageCount();
+        long[] keys = new long[1 + storages + c.getEnclosureCount()];
+        keys[0] = key(c.getDepotX(), c.getDepotY());
+        for (int i = 0; i < storages; i++) {
+            keys[1 + i] = key(c.getStorageX()[i], c.getStorageY()[i]);
+        }
+        for (int i = 0; i < c.getEnclosureCount(); i++) {
+            keys[1 + storages + i] = key(c.getEnclosureX()[i], c.getEnclosureY()[i]);
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * @return Whether a waypoint may fall on the point, i.e. a location placed there would
+     *         need a router built for it.
+     */
+    public boolean hasCornerAt(int x, int y) {
+        for (int i = 0; i < cornerX.length; i++) {
+            if (cornerX[i] == x && cornerY[i] == y) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the shortest dead-zone-free route between two points.
+     *
+     * @param from      The start of the leg.
+     * @param to        The end of the leg.
+     * @param maxLength Routes longer than this are not worth finding (e.g. the battery capacity).
+     * @return The detour, a direct route without waypoints if the leg is already clear,
+     *         or {@link Detour#UNREACHABLE}.
+     */
+    public Detour route(Point from, Point to, double maxLength) {
+        int sx = from.getX(), sy = from.getY(), tx = to.getX(), ty = to.getY();
+        if (!deadZones.intersectsAny(sx, sy, tx, ty)) {
+            Metrics.DEAD_ZONE_TESTS.increment();
+            double direct = from.distance2D(to);
+            return direct <= maxLength ? new Detour(direct, new Point[0]) : Detour.UNREACHABLE;
+        }
+
+        // Nodes: 0 = start, 1 = goal, 2.. = octagon corners
+        int nodes = cornerX.length + 2;
+        double[] best = new double[nodes];
+        int[] parent = new int[nodes];
+        boolean[] closed = new boolean[nodes];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        best[0] = 0;
+        parent[0] = -1;
+
+        long tests = 1; // Edges tested, added to the metrics once per search
+        PriorityQueue<double[]> open = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        open.add(new double[]{distance(sx, sy, tx, ty), 0});
+        while (!open.isEmpty()) {
+            int u = (int) open.poll()[1];
+            if (closed[u]) continue;
+            closed[u] = true;
+            if (u == 1) break;
+
+            int ux = nodeX(u, sx, tx), uy = nodeY(u, sy, ty);
+            for (int v = 1; v < nodes; v++) {
+                if (closed[v]) continue;
+                int vx = nodeX(v, sx, tx), vy = nodeY(v, sy, ty);
+                double g = best[u] + distance(ux, uy, vx, vy);
+                double f = g + distance(vx, vy, tx, ty);
+                if (g >= best[v] || f > maxLength) continue;
+                tests++;
+                if (deadZones.intersectsAny(ux, uy, vx, vy)) continue;
+                best[v] = g;
+                parent[v] = u;
+                open.add(new double[]{f, v});
+            }
+        }
+        Metrics.DEAD_ZONE_TESTS.add(tests);
+        if (!closed[1]) {
+            return Detour.UNREACHABLE;
+        }
+
+        List<Point> waypoints = new ArrayList<>();
+        for (int v = parent[1]; v > 0; v = parent[v]) {
+            waypoints.add(0, new Point(nodeX(v, sx, tx), nodeY(v, sy, ty), DroneMathUtils.FLIGHT_ALTITUDE));
+        }
+        return new Detour(best[1], waypoints.toArray(new Point[0]));
+    }
+
+    private int nodeX(int node, int startX, int goalX) {
+        return node == 0 ? startX : node == 1 ? goalX : cornerX[node - 2];
+    }
+
+    private int nodeY(int node, int startY, int goalY) {
+        return node == 0 ? startY : node == 1 ? goalY : cornerY[node - 2];
+    }
+
+    private static double distance(int x1, int y1, int x2, int y2) {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -1,5 +1,6 @@
 package entelect.university.cup.solver;
 
+import entelect.university.cup.metrics.Metrics;
 import entelect.university.cup.models.*;
 
 import java.util.ArrayList;
@@ -83,6 +84,7 @@ public class DroneMathUtils {
      * @return The total distance in meters for the run.
      */
     public static double calculateTotalRunDistance(List<Point> path, Zoo zoo) {
+        Metrics.COST_EVALUATIONS.increment();
         if (path == null || path.size() < 2) {
             return 0.0; // Or throw exception, an empty/single point path is invalid
         }
@@ -144,7 +146,7 @@ public class DroneMathUtils {
              if (!next.equals(depot)) {
                   // Check if drone actually lands (e.g., required food type, not already fed)
                   // For simplicity in this structure, we assume it lands at every non-depot point in the path.
-                  // A real solver would check this.
+                  // A real solver would check this. Detour waypoints sit at FLIGHT_ALTITUDE, so they add nothing here.
                  pdfTotalDistance += (FLIGHT_ALTITUDE - next.getZ()) * 2.0;
              }
         }
@@ -199,6 +201,20 @@ public class DroneMathUtils {
         return false;
     }
 
+    /**
+     * Checks if a planned drone path segment intersects any dead zone, using the
+     * zoo's precomputed dead zone grid to skip circles far from the segment.
+     *
+     * @param p1        Start point of the horizontal flight segment.
+     * @param p2        End point of the horizontal flight segment.
+     * @param deadzones The dead zone index built for the zoo.
+     * @return true if the segment intersects any dead zone, false otherwise.
+     */
+    public static boolean intersectsAnyDeadZone(Point p1, Point p2, DeadZoneIndex deadzones) {
+        Metrics.DEAD_ZONE_TESTS.increment();
+        return deadzones.intersectsAny(p1, p2);
+    }
+
      /**
       * Checks if the entire path is valid (within battery and avoids dead zones).
       * NOTE: This is a simplified check. A real implementation needs to check
@@ -250,4 +266,42 @@ public class DroneMathUtils {
 
          return true;
      }
-}
\ No newline at end of file
+
+    /**
+     * Calculates the total distance for a drone run given as {@link LegCostTable} location ids,
+     * looking leg costs up instead of recomputing them. Legs crossing a dead zone are counted
+     * as their detour around it.
+     *
+     * @param stops  The location ids visited between leaving and returning to the depot.
+     * @param length The number of stops to use from the array.
+     * @param table  The precomputed leg costs for the zoo.
+     * @return The total distance in meters for the run (infinite if a leg cannot be flown).
+     */
+    public static double calculateTotalRunDistance(int[] stops, int length, LegCostTable table) {
+        Metrics.COST_EVALUATIONS.increment();
+        double totalDistance = table.depotVerticalCost(); // Takeoff from the depot
+        int current = LegCostTable.DEPOT_ID;
+        for (int i = 0; i < length; i++) {
+            totalDistance += table.flightDistance(current, stops[i]);
+            totalDistance += table.arrivalCost(stops[i]);
+            current = stops[i];
+        }
+        totalDistance += table.flightDistance(current, LegCostTable.DEPOT_ID);
+        totalDistance += table.arrivalCost(LegCostTable.DEPOT_ID); // Final landing
+        return totalDistance;
+    }
+
+    /**
+     * Checks if a drone run given as {@link LegCostTable} location ids can be flown within
+     * the battery, with every leg either clear of the dead zones or detoured around them.
+     *
+     * @param stops  The location ids visited between leaving and returning to the depot.
+     * @param length The number of stops to use from the array.
+     * @param table  The precomputed leg costs for the zoo.
+     * @return true if the run is valid, false otherwise.
+     */
+    public static boolean isPathValid(int[] stops, int length, LegCostTable table) {
+        if (length == 0) return false;
+        return calculateTotalRunDistance(stops, length, table) <= table.getZoo().getBatteryCapacity();
+    }
+}
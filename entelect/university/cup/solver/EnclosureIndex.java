@@ -0,0 +1,302 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.models.*;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the XY feeding points of the enclosures, with one grid per diet type.
+ * Each cell keeps its enclosures sorted by importance (highest first), so a query can merge
+ * the cells within a radius and hand out candidates best-importance-first without visiting
+ * the rest of the map. Enclosures are removed as they are fed and can be added back
+ * (e.g. when a run is rolled back).
+ * Ids are the enclosure location ids of a {@link LegCostTable}.
+ */
+public class EnclosureIndex {
+
+    public static final char ANY_DIET = '*';
+    private static final int TARGET_PER_CELL = 8;
+
+    private final LegCostTable table;
+    private final int firstEnclosureId;
+    private final double[] importance; // By enclosure index
+    private final boolean[] present; // By enclosure index
+    private int size;
+
+    private final char[] diets; // Distinct diet types, one grid each
+    private final int[] dietOf; // Grid number by enclosure index
+    private final int columns;
+    private final int rows;
+    private final double cellSize;
+    private final int[][][] cells; // [grid][cell] -> ids, sorted by importance descending
+    private final int[][] cellSizes; // [grid][cell] -> number of ids in use
+
+    private final Cursor cursor;
+
+    /**
+     * Builds an index holding every enclosure of the zoo.
+     *
+     * @param table The leg cost table that defines the location ids.
+     */
+    public EnclosureIndex(LegCostTable table) {
+        this.table = table;
+        Zoo zoo = table.getZoo();
+        this.firstEnclosureId = table.getHubCount();
+        int count = table.getLocationCount() - firstEnclosureId;
+        this.importance = new double[count];
+        this.present = new boolean[count];
+        this.dietOf = new int[count];
+
+        char[] seen = new char[0];
+        for (int id = firstEnclosureId; id < firstEnclosureId + count; id++) {
+            char diet = table.diet(id);
+            if (indexOf(seen, diet) < 0) {
+                seen = Arrays.copyOf(seen, seen.length + 1);
+                seen[seen.length - 1] = diet;
+            }
+        }
+        this.diets = seen;
+
+        // Size the cells so that each diet grid holds a handful of enclosures per cell on average
+        Point dimensions = zoo.getDimensions();
+        double width = Math.max(1, dimensions.getX());
+        double height = Math.max(1, dimensions.getY());
+        int perGrid = Math.max(1, count / Math.max(1, diets.length));
+        double targetCells = Math.max(1.0, perGrid / (double) TARGET_PER_CELL);
+        this.cellSize = Math.max(1.0, Math.sqrt(width * height / targetCells));
+        this.columns = (int) (width / cellSize) + 1;
+        this.rows = (int) (height / cellSize) + 1;
+        this.cells = new int[diets.length][columns * rows][];
+        this.cellSizes = new int[diets.length][columns * rows];
+
+        for (int index = 0; index < count; index++) {
+            importance[index] = table.importance(firstEnclosureId + index);
+            dietOf[index] = indexOf(diets, table.diet(firstEnclosureId + index));
+        }
+        for (int id = firstEnclosureId; id < firstEnclosureId + count; id++) {
+            add(id);
+        }
+        this.cursor = new Cursor();
+    }
+
+    private static int indexOf(char[] values, char value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of enclosures currently in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int enclosureId) {
+        return present[enclosureId - firstEnclosureId];
+    }
+
+    /**
+     * Adds an enclosure (back) into its cell, keeping the cell ordered by importance.
+     */
+    public void add(int enclosureId) {
+        int index = enclosureId - firstEnclosureId;
+        if (present[index]) return;
+        int grid = dietOf[index];
+        int cell = cellOf(enclosureId);
+        int[] ids = cells[grid][cell];
+        int used = cellSizes[grid][cell];
+        if (ids == null) {
+            ids = new int[4];
+        } else if (used == ids.length) {
+            ids = Arrays.copyOf(ids, used * 2);
+        }
+        int pos = used;
+        while (pos > 0 && ranksBefore(enclosureId, ids[pos - 1])) {
+            ids[pos] = ids[pos - 1];
+            pos--;
+        }
+        ids[pos] = enclosureId;
+        cells[grid][cell] = ids;
+        cellSizes[grid][cell] = used + 1;
+        present[index] = true;
+        size++;
+    }
+
+    /**
+     * Removes an enclosure, e.g. once it has been fed.
+     */
+    public void remove(int enclosureId) {
+        int index = enclosureId - firstEnclosureId;
+        if (!present[index]) return;
+        int grid = dietOf[index];
+        int cell = cellOf(enclosureId);
+        int[] ids = cells[grid][cell];
+        int used = cellSizes[grid][cell];
+        int pos = 0;
+        while (ids[pos] != enclosureId) pos++;
+        System.arraycopy(ids, pos + 1, ids, pos, used - pos - 1);
+        cellSizes[grid][cell] = used - 1;
+        present[index] = false;
+        size--;
+    }
+
+    /**
+     * Starts a query for enclosures within a horizontal radius of a location,
+     * handed out best importance first. The returned cursor is reused by the next query,
+     * so only one query can be iterated at a time, and the index must not be modified
+     * while it is being iterated.
+     *
+     * @param location The location id to search around.
+     * @param radius   The maximum horizontal distance from the location.
+     * @param diet     The diet type to return, or {@link #ANY_DIET}.
+     * @return A cursor over the matching enclosure ids.
+     */
+    public Cursor query(int location, double radius, char diet) {
+        cursor.reset(table.x(location), table.y(location), radius, diet);
+        return cursor;
+    }
+
+    private int cellOf(int enclosureId) {
+        return cellIndex(column(table.x(enclosureId)), row(table.y(enclosureId)));
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) (x / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) (y / cellSize)));
+    }
+
+    private int cellIndex(int column, int row) {
+        return row * columns + column;
+    }
+
+    private boolean ranksBefore(int a, int b) {
+        double ia = importance[a - firstEnclosureId];
+        double ib = importance[b - firstEnclosureId];
+        return ia > ib || (ia == ib && a < b);
+    }
+
+    /**
+     * Best-first merge over the sorted cells that touch the query circle.
+     * The heap holds one head entry per cell and is reused between queries.
+     */
+    public class Cursor {
+        private int[] heapGrid = new int[16];
+        private int[] heapCell = new int[16];
+        private int[] heapPos = new int[16];
+        private int heapSize;
+        private int centreX;
+        private int centreY;
+        private double radiusSq;
+
+        private void reset(int x, int y, double radius, char diet) {
+            heapSize = 0;
+            centreX = x;
+            centreY = y;
+            radiusSq = radius * radius;
+            if (radius < 0) return;
+
+            int minColumn = column(x - radius);
+            int maxColumn = column(x + radius);
+            int minRow = row(y - radius);
+            int maxRow = row(y + radius);
+            for (int grid = 0; grid < diets.length; grid++) {
+                if (diet != ANY_DIET && diets[grid] != diet) continue;
+                for (int r = minRow; r <= maxRow; r++) {
+                    for (int c = minColumn; c <= maxColumn; c++) {
+                        int cell = cellIndex(c, r);
+                        if (cellSizes[grid][cell] > 0 && cellDistanceSq(c, r) <= radiusSq) {
+                            push(grid, cell);
+                        }
+                    }
+                }
+            }
+            for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        // Squared distance from the query centre to the nearest point of a cell
+        private double cellDistanceSq(int column, int row) {
+            double minX = column * cellSize;
+            double minY = row * cellSize;
+            double dx = Math.max(0, Math.max(minX - centreX, centreX - (minX + cellSize)));
+            double dy = Math.max(0, Math.max(minY - centreY, centreY - (minY + cellSize)));
+            return dx * dx + dy * dy;
+        }
+
+        /**
+         * @return The next enclosure id within the radius, or -1 when there are no more.
+         */
+        public int next() {
+            while (heapSize > 0) {
+                int grid = heapGrid[0];
+                int cell = heapCell[0];
+                int pos = heapPos[0];
+                int id = cells[grid][cell][pos];
+
+                if (pos + 1 < cellSizes[grid][cell]) {
+                    heapPos[0] = pos + 1;
+                } else {
+                    heapSize--;
+                    heapGrid[0] = heapGrid[heapSize];
+                    heapCell[0] = heapCell[heapSize];
+                    heapPos[0] = heapPos[heapSize];
+                }
+                siftDown(0);
+
+                double dx = table.x(id) - centreX;
+                double dy = table.y(id) - centreY;
+                if (dx * dx + dy * dy <= radiusSq) {
+                    return id;
+                }
+            }
+            return -1;
+        }
+
+        private void push(int grid, int cell) {
+            if (heapSize == heapGrid.length) {
+                heapGrid = Arrays.copyOf(heapGrid, heapSize * 2);
+                heapCell = Arrays.copyOf(heapCell, heapSize * 2);
+                heapPos = Arrays.copyOf(heapPos, heapSize * 2);
+            }
+            heapGrid[heapSize] = grid;
+            heapCell[heapSize] = cell;
+            heapPos[heapSize] = 0;
+            heapSize++;
+        }
+
+        private int head(int i) {
+            return cells[heapGrid[i]][heapCell[i]][heapPos[i]];
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= heapSize) return;
+                int best = left;
+                int right = left + 1;
+                if (right < heapSize && ranksBefore(head(right), head(left))) {
+                    best = right;
+                }
+                if (!ranksBefore(head(best), head(i))) return;
+                swap(i, best);
+                i = best;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int g = heapGrid[a]; heapGrid[a] = heapGrid[b]; heapGrid[b] = g;
+            int c = heapCell[a]; heapCell[a] = heapCell[b]; heapCell[b] = c;
+            int p = heapPos[a]; heapPos[a] = heapPos[b]; heapPos[b] = p;
+        }
+    }
+}
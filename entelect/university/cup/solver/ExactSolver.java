@@ -0,0 +1,384 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provably optimal solver for zoos with few enclosures, by dynamic programming over
+ * subsets of enclosures (Held-Karp). For every set of enclosures and the one fed last it
+ * finds the shortest run from the depot feeding exactly that set, flying between two
+ * enclosures of different diets via the best storage of the second one's diet. States
+ * that can no longer get home on the battery are pruned. The cheapest run per set then
+ * gives the best choice of enclosures: directly for a single run, or by splitting the set
+ * over the allowed runs (fewest runs, then shortest) when there are battery swaps.
+ * Optimal under the leg cost model of the {@link LegCostTable}: highest total importance
+ * first, shortest total distance among those.
+ * The tables grow with 2^n, so {@link #canSolve} decides up front whether a zoo fits the
+ * memory budget; larger zoos are left to the heuristic solvers.
+ * With a time limit the sets are worked through in increasing order until the deadline;
+ * every set below the one reached is then final, so the best of them is still a valid
+ * solution, only no longer a proven optimum ({@link #isOptimal()}).
+ */
+public class ExactSolver {
+
+    private static final int MAX_ENCLOSURES = 22; // n^2 * 2^n transitions beyond this take too long
+    private static final int MAX_SPLIT_ENCLOSURES = 16; // Splitting over runs walks all 3^n subset pairs
+    private static final int RUN_SETS_PER_CHECK = 4096; // Sets between deadline checks, a few ms at most
+    private static final int SPLIT_SETS_PER_CHECK = 64;
+
+    private final LegCostTable table;
+    private final int n;
+    private final int capacity;
+    private final int maxRuns;
+    private final int[] ids; // Enclosure location ids
+    private final double[] importance;
+
+    // Cheapest ways between stops, arrival costs included; -1 via means no pickup needed
+    private final double[] start; // Depot takeoff -> storage -> enclosure
+    private final int[] startVia;
+    private final double[] between; // [from * n + to]
+    private final int[] betweenVia;
+    private final double[] end; // Enclosure -> depot landing
+
+    private double[] cost; // [set * n + last]: shortest open run feeding exactly the set, ending at last
+    private double[] runCost; // [set]: shortest closed run feeding exactly the set
+
+    private long timeLimitMillis;
+    private long deadlineNanos = Long.MAX_VALUE;
+    private boolean optimal;
+
+    public ExactSolver(LegCostTable table) {
+        this.table = table;
+        Zoo zoo = table.getZoo();
+        this.n = table.getLocationCount() - table.getHubCount();
+        if (n > MAX_ENCLOSURES) {
+            throw new IllegalArgumentException("Too many enclosures for the exact solver: " + n);
+        }
+        this.capacity = zoo.getBatteryCapacity();
+        this.maxRuns = zoo.getBatterySwaps() + 1;
+        this.ids = new int[n];
+        this.importance = new double[n];
+        for (int k = 0; k < n; k++) {
+            ids[k] = table.getHubCount() + k;
+            importance[k] = table.importance(ids[k]);
+        }
+
+        this.start = new double[n];
+        this.startVia = new int[n];
+        this.between = new double[n * n];
+        this.betweenVia = new int[n * n];
+        this.end = new double[n];
+        for (int to = 0; to < n; to++) {
+            startVia[to] = bestPickup(LegCostTable.DEPOT_ID, ids[to]);
+            start[to] = startVia[to] < 0 ? Double.POSITIVE_INFINITY
+                    : table.depotVerticalCost() + leg(LegCostTable.DEPOT_ID, startVia[to]) + leg(startVia[to], ids[to]);
+            end[to] = leg(ids[to], LegCostTable.DEPOT_ID);
+            for (int from = 0; from < n; from++) {
+                if (from == to) continue;
+                int slot = from * n + to;
+                if (diet(ids[from]) == diet(ids[to])) {
+                    between[slot] = leg(ids[from], ids[to]);
+                    betweenVia[slot] = -1;
+                } else {
+                    int via = bestPickup(ids[from], ids[to]);
+                    betweenVia[slot] = via;
+                    between[slot] = via < 0 ? Double.POSITIVE_INFINITY : leg(ids[from], via) + leg(via, ids[to]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param timeLimitMillis Wall-clock budget per {@link #solve} call, or 0 for none.
+     */
+    public void setTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * @return Whether the last solve finished before its deadline, so its solution is optimal.
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * @return The default memory budget: a quarter of the maximum heap.
+     */
+    public static long defaultMemoryBudget() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * @return The bytes the solver's tables need for a zoo of this size.
+     */
+    public static long requiredMemory(int enclosures) {
+        long sets = 1L << enclosures;
+        return sets * enclosures * Double.BYTES // Open run costs
+                + sets * Double.BYTES // Closed run costs
+                + sets * (Double.BYTES + 2 * Integer.BYTES); // Split over runs: distance, run count, first run
+    }
+
+    /**
+     * Decides between exact and heuristic solving.
+     *
+     * @param zoo               The zoo to solve.
+     * @param memoryBudgetBytes The most memory the tables may take.
+     * @return true if the zoo is small enough to solve exactly within the budget.
+     */
+    public static boolean canSolve(Zoo zoo, long memoryBudgetBytes) {
+        int n = zoo.getColumns().getEnclosureCount();
+        if (n > MAX_ENCLOSURES) return false;
+        if (zoo.getBatterySwaps() > 0 && n > MAX_SPLIT_ENCLOSURES) return false;
+        return requiredMemory(n) <= memoryBudgetBytes;
+    }
+
+    /**
+     * Generates the optimal paths.
+     *
+     * @return The runs as point paths, depot to depot.
+     */
+    public List<List<Point>> generatePaths() {
+        Solution solution = solve();
+        Console.println("Exact solver fed " + solution.getFed().count() + " of " + n
+                + " enclosures in " + solution.getRuns().size() + " runs (" + (optimal ? "optimal" : "time limit reached, best")
+                + " score " + String.format("%.2f", solution.getScore()) + ")");
+        return solution.toPaths();
+    }
+
+    /**
+     * @return An optimal solution, or the best one found by the deadline.
+     */
+    public Solution solve() {
+        deadlineNanos = timeLimitMillis > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis) : Long.MAX_VALUE;
+        optimal = true;
+        fillRunCosts();
+        int best = maxRuns == 1 ? bestSingleRun() : bestSplit();
+
+        Solution solution = new Solution(table);
+        if (maxRuns == 1) {
+            addRun(solution, best);
+        } else {
+            addSplit(solution, best);
+        }
+        cost = null;
+        runCost = null;
+        return solution;
+    }
+
+    // --- Shortest run per set of enclosures ---
+
+    private void fillRunCosts() {
+        int sets = 1 << n;
+        cost = new double[sets * n];
+        runCost = new double[sets];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(runCost, Double.POSITIVE_INFINITY);
+        runCost[0] = 0;
+
+        double nearestHome = Double.POSITIVE_INFINITY;
+        for (double e : end) {
+            nearestHome = Math.min(nearestHome, e);
+        }
+        // A run still has to get home, so anything past this can never close
+        double limit = capacity - nearestHome;
+
+        for (int set = 1; set < sets; set++) {
+            if (set % RUN_SETS_PER_CHECK == 0 && timeUp()) {
+                break; // The sets from here on stay unreachable
+            }
+            int row = set * n;
+            if ((set & (set - 1)) == 0) {
+                int k = Integer.numberOfTrailingZeros(set);
+                if (start[k] <= limit) cost[row + k] = start[k];
+            } else {
+                // Pulling from the smaller sets reads each of their rows in one contiguous sweep
+                for (int bits = set; bits != 0; bits &= bits - 1) {
+                    int last = Integer.numberOfTrailingZeros(bits);
+                    int previousRow = (set ^ (1 << last)) * n;
+                    double best = Double.POSITIVE_INFINITY;
+                    for (int others = set ^ (1 << last); others != 0; others &= others - 1) {
+                        int previous = Integer.numberOfTrailingZeros(others);
+                        double c = cost[previousRow + previous] + between[previous * n + last];
+                        if (c < best) best = c;
+                    }
+                    if (best <= limit) cost[row + last] = best;
+                }
+            }
+            for (int bits = set; bits != 0; bits &= bits - 1) {
+                int last = Integer.numberOfTrailingZeros(bits);
+                double closed = cost[row + last] + end[last];
+                if (closed <= capacity && closed < runCost[set]) runCost[set] = closed;
+            }
+        }
+    }
+
+    private int bestSingleRun() {
+        int best = 0;
+        double bestImportance = 0;
+        for (int set = 1; set < runCost.length; set++) {
+            if (runCost[set] == Double.POSITIVE_INFINITY) continue;
+            double value = importanceOf(set);
+            if (value > bestImportance || (value == bestImportance && runCost[set] < runCost[best])) {
+                best = set;
+                bestImportance = value;
+            }
+        }
+        return best;
+    }
+
+    // --- Splitting sets over the allowed runs ---
+
+    private double[] splitDistance; // [set]: shortest total distance with the fewest runs
+    private int[] splitRuns; // [set]: fewest runs that can feed exactly the set
+    private int[] splitFirst; // [set]: the run taking the set's lowest enclosure in that split
+
+    private int bestSplit() {
+        int sets = 1 << n;
+        splitDistance = new double[sets];
+        splitRuns = new int[sets];
+        splitFirst = new int[sets];
+        int splitSets = sets;
+        for (int set = 1; set < sets; set++) {
+            if (set % SPLIT_SETS_PER_CHECK == 0 && timeUp()) {
+                splitSets = set; // Only the sets split so far can be chosen
+                break;
+            }
+            splitRuns[set] = Integer.MAX_VALUE;
+            splitDistance[set] = Double.POSITIVE_INFINITY;
+            int lowest = set & -set;
+            int rest = set ^ lowest;
+            // Every sub-run containing the lowest enclosure, so each split is counted once
+            for (int others = rest; ; others = (others - 1) & rest) {
+                int run = others | lowest;
+                int remainder = set ^ run;
+                if (runCost[run] != Double.POSITIVE_INFINITY && splitRuns[remainder] != Integer.MAX_VALUE) {
+                    int runs = splitRuns[remainder] + 1;
+                    double distance = splitDistance[remainder] + runCost[run];
+                    if (runs < splitRuns[set] || (runs == splitRuns[set] && distance < splitDistance[set])) {
+                        splitRuns[set] = runs;
+                        splitDistance[set] = distance;
+                        splitFirst[set] = run;
+                    }
+                }
+                if (others == 0) break;
+            }
+        }
+
+        int best = 0;
+        double bestImportance = 0;
+        for (int set = 1; set < splitSets; set++) {
+            if (splitRuns[set] > maxRuns) continue;
+            double value = importanceOf(set);
+            if (value > bestImportance || (value == bestImportance && splitDistance[set] < splitDistance[best])) {
+                best = set;
+                bestImportance = value;
+            }
+        }
+        return best;
+    }
+
+    private void addSplit(Solution solution, int set) {
+        while (set != 0) {
+            int run = splitFirst[set];
+            addRun(solution, run);
+            set ^= run;
+        }
+        splitDistance = null;
+        splitRuns = null;
+        splitFirst = null;
+    }
+
+    // --- Rebuilding a run from the cost table ---
+
+    private void addRun(Solution solution, int set) {
+        if (set == 0) return;
+        int last = -1;
+        for (int k = 0; k < n; k++) {
+            if ((set & (1 << k)) != 0 && cost[set * n + k] + end[k] == runCost[set]) {
+                last = k;
+                break;
+            }
+        }
+
+        // Walk back to the first enclosure, then lay out the stops front to back
+        int[] order = new int[Integer.bitCount(set)];
+        int remaining = set;
+        for (int position = order.length - 1; position >= 0; position--) {
+            order[position] = last;
+            int previousSet = remaining ^ (1 << last);
+            if (previousSet == 0) break;
+            double c = cost[remaining * n + last];
+            int previous = -1;
+            for (int k = 0; k < n; k++) {
+                if ((previousSet & (1 << k)) != 0 && cost[previousSet * n + k] + between[k * n + last] == c) {
+                    previous = k;
+                    break;
+                }
+            }
+            remaining = previousSet;
+            last = previous;
+        }
+
+        Metrics.RUNS_BUILT.increment();
+        RunPlan run = new RunPlan();
+        run.insert(run.size(), startVia[order[0]]);
+        run.insert(run.size(), ids[order[0]]);
+        for (int i = 1; i < order.length; i++) {
+            int via = betweenVia[order[i - 1] * n + order[i]];
+            if (via >= 0) run.insert(run.size(), via);
+            run.insert(run.size(), ids[order[i]]);
+        }
+        run.recomputeDistance(table);
+        solution.getRuns().add(run);
+        for (int k : order) {
+            solution.markFed(ids[k]);
+        }
+    }
+
+    // --- Helpers ---
+
+    private boolean timeUp() {
+        if (System.nanoTime() < deadlineNanos) return false;
+        optimal = false;
+        return true;
+    }
+
+    private double importanceOf(int set) {
+        double total = 0;
+        for (int bits = set; bits != 0; bits &= bits - 1) {
+            total += importance[Integer.numberOfTrailingZeros(bits)];
+        }
+        return total;
+    }
+
+    private double leg(int from, int to) {
+        return table.flightDistance(from, to) + table.arrivalCost(to);
+    }
+
+    private char diet(int id) {
+        return table.diet(id);
+    }
+
+    // The storage of the destination's diet that makes from -> storage -> to shortest, or -1 if none
+    private int bestPickup(int from, int to) {
+        char food = diet(to);
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int s = 1; s < table.getHubCount(); s++) {
+            if (table.diet(s) != food) continue;
+            double c = leg(from, s) + leg(s, to);
+            if (c < bestCost) {
+                bestCost = c;
+                best = s;
+            }
+        }
+        return best;
+    }
+}
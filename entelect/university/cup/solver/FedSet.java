@@ -0,0 +1,78 @@
+package entelect.university.cup.solver;
+
+import java.util.Arrays;
+
+/**
+ * Per-solver record of which enclosures have been fed, as a bitset indexed by
+ * enclosure id (the index in the zoo's enclosure list). Keeping this out of the
+ * shared model lets any number of solvers work on one parsed {@link entelect.university.cup.models.Zoo}
+ * at the same time without copying or locking. Not thread-safe itself: one per solver.
+ */
+public class FedSet {
+
+    private final long[] bits;
+    private final int capacity;
+    private int count;
+
+    public FedSet(int enclosureCount) {
+        this.capacity = enclosureCount;
+        this.bits = new long[(enclosureCount + 63) >>> 6];
+    }
+
+    private FedSet(FedSet other) {
+        this.capacity = other.capacity;
+        this.bits = other.bits.clone();
+        this.count = other.count;
+    }
+
+    public boolean isFed(int enclosureId) {
+        return (bits[enclosureId >>> 6] & (1L << (enclosureId & 63))) != 0;
+    }
+
+    /**
+     * @return true if the enclosure was not fed before.
+     */
+    public boolean markFed(int enclosureId) {
+        long mask = 1L << (enclosureId & 63);
+        int word = enclosureId >>> 6;
+        if ((bits[word] & mask) != 0) return false;
+        bits[word] |= mask;
+        count++;
+        return true;
+    }
+
+    /**
+     * @return true if the enclosure was fed before.
+     */
+    public boolean unmarkFed(int enclosureId) {
+        long mask = 1L << (enclosureId & 63);
+        int word = enclosureId >>> 6;
+        if ((bits[word] & mask) == 0) return false;
+        bits[word] &= ~mask;
+        count--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(bits, 0L);
+        count = 0;
+    }
+
+    /**
+     * @return The number of fed enclosures.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return The number of enclosures this set covers.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public FedSet copy() {
+        return new FedSet(this);
+    }
+}
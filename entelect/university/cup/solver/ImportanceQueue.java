@@ -0,0 +1,112 @@
+package entelect.university.cup.solver;
+
+/**
+ * A set of enclosures that hands them out most important first, for the phases that
+ * keep going back to "the most important enclosure not fed yet". The order is fixed
+ * ({@link SearchContext#byImportance()}), so membership is one bit per importance rank:
+ * adding and removing (also when a rolled back edit puts an enclosure back) are O(1), and
+ * a summary word per 64 words lets iteration jump over long stretches of absent ranks.
+ * Iterating copies nothing and the element just handed out may be removed on the way.
+ * Ids are enclosure location ids. Not thread-safe: one per working solution.
+ */
+public class ImportanceQueue {
+
+    private final SearchContext context;
+    private final int[] byImportance;
+    private final long[] words; // Bit per rank
+    private final long[] summary; // Bit per non-empty word
+    private int size;
+
+    /**
+     * Creates an empty queue over the enclosures of a zoo.
+     */
+    public ImportanceQueue(SearchContext context) {
+        this.context = context;
+        this.byImportance = context.byImportance();
+        this.words = new long[(byImportance.length + 63) >>> 6];
+        this.summary = new long[(words.length + 63) >>> 6];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int enclosureId) {
+        int rank = context.importanceRank(enclosureId);
+        return (words[rank >>> 6] & (1L << rank)) != 0;
+    }
+
+    /**
+     * @return true if the enclosure was not in the queue before.
+     */
+    public boolean add(int enclosureId) {
+        int rank = context.importanceRank(enclosureId);
+        int word = rank >>> 6;
+        long mask = 1L << rank;
+        if ((words[word] & mask) != 0) return false;
+        words[word] |= mask;
+        summary[word >>> 6] |= 1L << word;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return true if the enclosure was in the queue before.
+     */
+    public boolean remove(int enclosureId) {
+        int rank = context.importanceRank(enclosureId);
+        int word = rank >>> 6;
+        long mask = 1L << rank;
+        if ((words[word] & mask) == 0) return false;
+        words[word] &= ~mask;
+        if (words[word] == 0) {
+            summary[word >>> 6] &= ~(1L << word);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * @return The most important enclosure in the queue, or -1 if it is empty.
+     */
+    public int first() {
+        return fromRank(0);
+    }
+
+    /**
+     * @param enclosureId An enclosure, in the queue or not (e.g. just removed from it).
+     * @return The most important enclosure in the queue that ranks after the given one, or -1 if there is none.
+     */
+    public int next(int enclosureId) {
+        return fromRank(context.importanceRank(enclosureId) + 1);
+    }
+
+    // The id at the first rank in the queue at or after the given one
+    private int fromRank(int rank) {
+        if (rank >= byImportance.length) return -1;
+        int word = rank >>> 6;
+        long bits = words[word] & (-1L << rank);
+        if (bits == 0) {
+            word = nextWord(word + 1);
+            if (word < 0) return -1;
+            bits = words[word];
+        }
+        return byImportance[(word << 6) + Long.numberOfTrailingZeros(bits)];
+    }
+
+    // The first non-empty word at or after the given one, or -1
+    private int nextWord(int word) {
+        if (word >= words.length) return -1;
+        int group = word >>> 6;
+        long bits = summary[group] & (-1L << word);
+        while (bits == 0) {
+            if (++group == summary.length) return -1;
+            bits = summary[group];
+        }
+        return (group << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
@@ -0,0 +1,175 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.eval.Evaluation;
+import entelect.university.cup.eval.SolutionEvaluator;
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a solution up to date while its zoo changes by small deltas ({@link ZooDelta}),
+ * instead of solving every version from scratch. For each change:
+ * <ul>
+ *     <li>The leg costs and search lookups are derived from the previous ones
+ *     ({@link LegCostTable#derive}, {@link SearchContext#derive}), and the runs carry over
+ *     as they are, as every location keeps its id.</li>
+ *     <li>Runs whose distance changed (a leg now crosses or detours around a new dead zone)
+ *     are the only ones marked for repair. Those over the battery drop the enclosures that
+ *     cost the most distance per importance until they fit again.</li>
+ *     <li>A {@link LocalSearch} pass around the marked runs then inserts the unfed enclosures
+ *     (new ones, ones with a higher importance, ones just dropped) wherever they fit, most
+ *     important first, and tidies up the runs it touched.</li>
+ * </ul>
+ * The other runs are left alone, so a change usually costs a fraction of a full solve. The
+ * repaired runs are checked with the {@link SolutionEvaluator}, and should it find a
+ * violation the changed zoo is planned from scratch instead. A change is applied within its
+ * time limit ({@value #DEFAULT_TIME_LIMIT_MILLIS} ms unless set): the local search gets what
+ * the derivation and trimming leave, less the time the last check took. Only planning from
+ * scratch is not bounded. Not thread-safe: one per zoo being followed.
+ */
+public class IncrementalSolver {
+
+    public static final long DEFAULT_TIME_LIMIT_MILLIS = 1000;
+    private static final double EPSILON = 1e-9;
+
+    private LegCostTable table;
+    private SearchContext context;
+    private Solution solution;
+    private long timeLimitMillis = DEFAULT_TIME_LIMIT_MILLIS;
+    private long checkNanos; // How long the evaluator took on the last change
+
+    /**
+     * @param context  The lookups of the current zoo.
+     * @param solution The current solution; it is copied.
+     */
+    public IncrementalSolver(SearchContext context, Solution solution) {
+        this.context = context;
+        this.table = context.getTable();
+        this.solution = solution.copy();
+    }
+
+    /**
+     * @param zoo   The current zoo.
+     * @param paths The current solution as point paths (e.g. as read back from an output file).
+     */
+    public IncrementalSolver(Zoo zoo, List<List<Point>> paths) {
+        this.table = LegCostTable.build(zoo);
+        this.context = new SearchContext(table);
+        this.solution = Solution.fromPaths(table, paths);
+    }
+
+    /**
+     * @param timeLimitMillis Wall-clock budget of each change, or 0 for none;
+     *                        {@value #DEFAULT_TIME_LIMIT_MILLIS} ms by default.
+     */
+    public void setTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    public Zoo getZoo() {
+        return table.getZoo();
+    }
+
+    public LegCostTable getTable() {
+        return table;
+    }
+
+    /**
+     * @return A copy of the current solution.
+     */
+    public Solution getSolution() {
+        return solution.copy();
+    }
+
+    /**
+     * Changes the zoo and repairs the solution for it. The changed zoo and its solution
+     * become the current ones.
+     *
+     * @param delta The change.
+     * @return A copy of the repaired solution, for the changed zoo ({@link #getZoo()}).
+     */
+    public Solution apply(ZooDelta delta) {
+        long deadline = timeLimitMillis > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis) : Long.MAX_VALUE;
+        long phaseStart = Metrics.PRECOMPUTE.start();
+        LegCostTable changedTable = table.derive(delta.applyTo(table.getZoo()));
+        SearchContext changedContext = context.derive(changedTable);
+        Metrics.PRECOMPUTE.stop(phaseStart);
+
+        phaseStart = Metrics.IMPROVE.start();
+        Solution carried = solution.rebase(changedTable);
+        double scoreBefore = carried.getScore();
+        List<RunPlan> runs = carried.getRuns();
+        double[] distances = new double[runs.size()];
+        for (int r = 0; r < distances.length; r++) {
+            distances[r] = runs.get(r).getDistance();
+        }
+        WorkingSolution state = new WorkingSolution(changedContext, carried); // Recomputes every run's distance
+        int affected = 0;
+        for (int r = 0; r < distances.length; r++) {
+            if (Math.abs(runs.get(r).getDistance() - distances[r]) <= EPSILON) {
+                state.markSettled(r);
+            } else {
+                affected++;
+                trim(state, changedContext, r);
+            }
+        }
+
+        long remaining = deadline - System.nanoTime() - checkNanos;
+        if (remaining > 0) { // Otherwise the unfed enclosures wait for the next change
+            LocalSearch localSearch = new LocalSearch(changedContext);
+            localSearch.setTimeLimit(timeLimitMillis > 0 ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)) : 0);
+            localSearch.improveChanged(state);
+        }
+        Metrics.IMPROVE.stop(phaseStart);
+
+        Solution repaired = state.getSolution();
+        repaired.removeEmptyRuns();
+        long checkStart = System.nanoTime();
+        Evaluation evaluation = new SolutionEvaluator(changedTable.getZoo()).evaluate(repaired.toPaths());
+        checkNanos = System.nanoTime() - checkStart;
+        if (!evaluation.isValid()) {
+            Metrics.INCREMENTAL_FALLBACKS.increment();
+            Console.println("Repaired solution has " + evaluation.getViolations().size()
+                    + " violation(s) (first: " + evaluation.getViolations().get(0) + "); planning the changed zoo from scratch");
+            phaseStart = Metrics.PRECOMPUTE.start();
+            changedTable = LegCostTable.build(changedTable.getZoo());
+            changedContext = new SearchContext(changedTable);
+            Metrics.PRECOMPUTE.stop(phaseStart);
+            phaseStart = Metrics.CONSTRUCT.start();
+            repaired = Solution.fromPaths(changedTable, new ClusterPlanner(changedTable).generatePaths());
+            Metrics.CONSTRUCT.stop(phaseStart);
+        }
+        Console.println("Applied change: " + affected + " run(s) affected; score "
+                + String.format("%.2f", scoreBefore) + " -> " + String.format("%.2f", repaired.getScore()));
+        table = changedTable;
+        context = changedContext;
+        solution = repaired;
+        return repaired.copy();
+    }
+
+    // Drops enclosures from a run over the battery, least importance per distance saved first, until it fits
+    private static void trim(WorkingSolution state, SearchContext context, int r) {
+        RunPlan run = state.getRuns().get(r);
+        while (run.getDistance() > context.getCapacity()) {
+            int worst = -1;
+            double worstValue = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < run.size(); i++) {
+                int id = run.at(i);
+                if (context.isStorage(id)) continue;
+                double saved = -state.removalDelta(run, i);
+                if (Double.isNaN(saved)) saved = Double.POSITIVE_INFINITY; // Next to a leg that cannot be flown
+                double value = saved > 0 ? context.importanceOf(id) / saved : Double.POSITIVE_INFINITY;
+                if (worst == -1 || value < worstValue) {
+                    worst = id;
+                    worstValue = value;
+                }
+            }
+            if (worst == -1) break;
+            state.unfeed(worst);
+        }
+    }
+}
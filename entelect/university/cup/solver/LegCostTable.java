@@ -0,0 +1,431 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.models.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed leg costs for a zoo, built once and shared by the solvers.
+ * Every location gets a dense id: 0 is the drone depot, then the food storages,
+ * then the enclosures (in zoo list order). The "hubs" (depot and storages) are few,
+ * so their horizontal distances and dead-zone-blocked flags against every location
+ * are stored in primitive arrays. Enclosure-to-enclosure legs are too many to store
+ * and are computed on demand. Legs that cross a dead zone are flown around it: their detours are routed on
+ * first use and cached per location pair.
+ */
+public class LegCostTable {
+
+    public static final int DEPOT_ID = 0;
+
+    private final Zoo zoo;
+    private final DeadZoneIndex deadZones;
+    private final DetourRouter router;
+    private final ConcurrentHashMap<Long, DetourRouter.Detour> detours; // Keyed by lower id * locationCount + higher id
+    private final int storageCount;
+    private final int hubCount; // Depot + storages
+    private final int locationCount; // Hubs + enclosures
+    private final int[] x;
+    private final int[] y;
+    private final int[] z;
+    private final char[] diet; // ' ' for the depot
+    private final double[] importance; // By enclosure index (the zoo's column)
+    private final Point[] points; // Built once, as paths and detours ask for them in their inner loops
+    private final double[] arrivalCost; // Vertical cost of arriving at each location
+    private final double depotVerticalCost;
+
+    private final double[] hubDistance; // [hub * locationCount + location], horizontal only
+    private final long[] hubBlocked; // One bit per (hub, location), rows of blockedWords longs
+    private final int blockedWords;
+    private volatile PickupTable pickups; // Built on first use
+
+    private LegCostTable(Zoo zoo) {
+        this.zoo = zoo;
+        this.deadZones = new DeadZoneIndex(zoo);
+        this.router = new DetourRouter(zoo, deadZones);
+        this.detours = new ConcurrentHashMap<>();
+        ZooColumns columns = zoo.getColumns();
+
+        this.storageCount = columns.getStorageCount();
+        this.hubCount = 1 + storageCount;
+        this.locationCount = hubCount + columns.getEnclosureCount();
+        this.x = new int[locationCount];
+        this.y = new int[locationCount];
+        this.z = new int[locationCount];
+        this.diet = new char[locationCount];
+        this.importance = columns.getImportance();
+        this.arrivalCost = new double[locationCount];
+        this.depotVerticalCost = DroneMathUtils.FLIGHT_ALTITUDE - columns.getDepotZ();
+
+        x[DEPOT_ID] = columns.getDepotX();
+        y[DEPOT_ID] = columns.getDepotY();
+        z[DEPOT_ID] = columns.getDepotZ();
+        diet[DEPOT_ID] = ' ';
+        for (int i = 0; i < storageCount; i++) {
+            x[1 + i] = columns.getStorageX()[i];
+            y[1 + i] = columns.getStorageY()[i];
+            z[1 + i] = columns.getStorageZ()[i];
+            diet[1 + i] = (char) columns.getStorageDiet()[i];
+        }
+        for (int id = hubCount; id < locationCount; id++) {
+            locateEnclosure(columns, id);
+        }
+        this.points = new Point[locationCount];
+        for (int id = 0; id < locationCount; id++) {
+            points[id] = new Point(x[id], y[id], z[id]);
+            arrivalCost[id] = arrival(id);
+        }
+
+        this.hubDistance = new double[hubCount * locationCount];
+        this.blockedWords = (locationCount + 63) >>> 6;
+        this.hubBlocked = new long[hubCount * blockedWords];
+    }
+
+    // The table of a changed zoo, see derive()
+    private LegCostTable(LegCostTable previous, Zoo zoo) {
+        this.zoo = zoo;
+        ZooColumns columns = zoo.getColumns();
+        int oldZones = previous.zoo.getColumns().getDeadZoneCount();
+        boolean newZones = columns.getDeadZoneCount() > oldZones;
+        this.deadZones = newZones ? new DeadZoneIndex(zoo) : previous.deadZones;
+
+        this.storageCount = previous.storageCount;
+        this.hubCount = previous.hubCount;
+        this.locationCount = hubCount + columns.getEnclosureCount();
+        int oldCount = previous.locationCount;
+        // A new enclosure on a corner would be landed at by the detours through it; a fresh router moves the corner
+        boolean cornerTaken = false;
+        for (int i = oldCount - hubCount; i < columns.getEnclosureCount() && !cornerTaken; i++) {
+            cornerTaken = previous.router.hasCornerAt(columns.getEnclosureX()[i], columns.getEnclosureY()[i]);
+        }
+        this.router = newZones || cornerTaken ? new DetourRouter(zoo, deadZones) : previous.router;
+        this.x = Arrays.copyOf(previous.x, locationCount);
+        this.y = Arrays.copyOf(previous.y, locationCount);
+        this.z = Arrays.copyOf(previous.z, locationCount);
+        this.diet = Arrays.copyOf(previous.diet, locationCount);
+        this.importance = columns.getImportance();
+        this.points = Arrays.copyOf(previous.points, locationCount);
+        this.arrivalCost = Arrays.copyOf(previous.arrivalCost, locationCount);
+        this.depotVerticalCost = previous.depotVerticalCost;
+        for (int id = oldCount; id < locationCount; id++) {
+            locateEnclosure(columns, id);
+            points[id] = new Point(x[id], y[id], z[id]);
+            arrivalCost[id] = arrival(id);
+        }
+
+        // Hub rows: the old columns are copied, the new locations filled in
+        this.hubDistance = new double[hubCount * locationCount];
+        this.blockedWords = (locationCount + 63) >>> 6;
+        this.hubBlocked = new long[hubCount * blockedWords];
+        for (int hub = 0; hub < hubCount; hub++) {
+            System.arraycopy(previous.hubDistance, hub * oldCount, hubDistance, hub * locationCount, oldCount);
+            System.arraycopy(previous.hubBlocked, hub * previous.blockedWords, hubBlocked, hub * blockedWords, previous.blockedWords);
+            for (int to = oldCount; to < locationCount; to++) {
+                double dx = x[hub] - x[to];
+                double dy = y[hub] - y[to];
+                hubDistance[hub * locationCount + to] = Math.sqrt(dx * dx + dy * dy);
+            }
+            for (int word = oldCount >>> 6; word < blockedWords; word++) {
+                int first = Math.max(word << 6, oldCount);
+                int last = Math.min((word + 1) << 6, locationCount);
+                hubBlocked[hub * blockedWords + word] |= deadZones.blockedMask(x[hub], y[hub], x, y, first, last) << (first & 63);
+            }
+            if (newZones) {
+                // The old legs only need testing against the new zones
+                for (int to = 0; to < oldCount; to++) {
+                    if (!isHubBlocked(hub, to) && crossesZones(columns, oldZones, x[hub], y[hub], x[to], y[to])) {
+                        hubBlocked[hub * blockedWords + (to >>> 6)] |= 1L << (to & 63);
+                    }
+                }
+            }
+        }
+
+        // Detours are kept unless they fly through a new zone or over a new enclosure; one that still avoids every
+        // zone is still the one found before, as new zones only take routes away (a fresh routing could at most
+        // pick a new zone's corners)
+        this.detours = new ConcurrentHashMap<>();
+        for (Map.Entry<Long, DetourRouter.Detour> entry : previous.detours.entrySet()) {
+            int low = (int) (entry.getKey() / oldCount);
+            int high = (int) (entry.getKey() % oldCount);
+            if ((!newZones || !crossesZones(columns, oldZones, entry.getValue(), low, high))
+                    && !landsAtNew(entry.getValue(), oldCount)) {
+                detours.put((long) low * locationCount + high, entry.getValue());
+            }
+        }
+    }
+
+    // Whether a waypoint of the detour is on a location from firstNew on, where the drone would count as landing
+    private boolean landsAtNew(DetourRouter.Detour detour, int firstNew) {
+        if (firstNew == locationCount) return false;
+        for (Point waypoint : detour.getWaypoints()) {
+            for (int id = firstNew; id < locationCount; id++) {
+                if (waypoint.getX() == x[id] && waypoint.getY() == y[id]) return true;
+            }
+        }
+        return false;
+    }
+
+    private void locateEnclosure(ZooColumns columns, int id) {
+        int i = id - hubCount;
+        x[id] = columns.getEnclosureX()[i];
+        y[id] = columns.getEnclosureY()[i];
+        z[id] = columns.getEnclosureZ()[i];
+        diet[id] = (char) columns.getEnclosureDiet()[i];
+    }
+
+    // Landing and taking off again at a stop; the depot itself is only landed at once
+    private double arrival(int id) {
+        boolean atDepot = x[id] == x[DEPOT_ID] && y[id] == y[DEPOT_ID] && z[id] == z[DEPOT_ID];
+        return id == DEPOT_ID ? depotVerticalCost : atDepot ? 0.0 : (DroneMathUtils.FLIGHT_ALTITUDE - z[id]) * 2.0;
+    }
+
+    private static boolean crossesZones(ZooColumns columns, int firstZone, double x1, double y1, double x2, double y2) {
+        int[] zoneX = columns.getDeadZoneX(), zoneY = columns.getDeadZoneY(), zoneRadius = columns.getDeadZoneRadius();
+        for (int k = firstZone; k < zoneX.length; k++) {
+            if (DeadZone.segmentIntersectsCircle(x1, y1, x2, y2, zoneX[k], zoneY[k], zoneRadius[k])) return true;
+        }
+        return false;
+    }
+
+    // Whether a detour from one location to another (its waypoints in that order) crosses a zone from firstZone on
+    private boolean crossesZones(ZooColumns columns, int firstZone, DetourRouter.Detour detour, int from, int to) {
+        if (!detour.isReachable()) return false; // Unreachable stays unreachable
+        double px = x[from], py = y[from];
+        for (Point waypoint : detour.getWaypoints()) {
+            if (crossesZones(columns, firstZone, px, py, waypoint.getX(), waypoint.getY())) return true;
+            px = waypoint.getX();
+            py = waypoint.getY();
+        }
+        return crossesZones(columns, firstZone, px, py, x[to], y[to]);
+    }
+
+    /**
+     * Builds the table for a zoo. Columns are filled in 64-location chunks in parallel,
+     * so each chunk owns whole words of the blocked bitset and no synchronisation is needed.
+     *
+     * @param zoo The zoo to precompute.
+     * @return The populated table.
+     */
+    public static LegCostTable build(Zoo zoo) {
+        LegCostTable table = new LegCostTable(zoo);
+        IntStream.range(0, table.blockedWords).parallel().forEach(table::fillWord);
+        return table;
+    }
+
+    /**
+     * Builds the table of a changed version of this zoo, as made by {@link ZooDelta#applyTo},
+     * from this one: only the legs of added enclosures and the legs and detours that could
+     * cross an added dead zone, or fly over an added enclosure, are worked out again. Every
+     * location keeps its id. This table is left as it was.
+     *
+     * @param changed The changed zoo: the same map, depot, battery and storages, the same
+     *                enclosures (importances may differ) and dead zones, each followed by any new ones.
+     * @return The table of the changed zoo.
+     * @throws IllegalArgumentException If the zoo is not a change of this one.
+     */
+    public LegCostTable derive(Zoo changed) {
+        ZooColumns a = zoo.getColumns(), b = changed.getColumns();
+        int enclosures = a.getEnclosureCount(), zones = a.getDeadZoneCount();
+        boolean same = a.getDimensionX() == b.getDimensionX() && a.getDimensionY() == b.getDimensionY()
+                && a.getDimensionZ() == b.getDimensionZ() && a.getDepotX() == b.getDepotX()
+                && a.getDepotY() == b.getDepotY() && a.getDepotZ() == b.getDepotZ()
+                && a.getBatteryCapacity() == b.getBatteryCapacity() && a.getBatterySwaps() == b.getBatterySwaps()
+                && Arrays.equals(a.getStorageX(), b.getStorageX()) && Arrays.equals(a.getStorageY(), b.getStorageY())
+                && Arrays.equals(a.getStorageZ(), b.getStorageZ()) && Arrays.equals(a.getStorageDiet(), b.getStorageDiet())
+                && b.getEnclosureCount() >= enclosures && b.getDeadZoneCount() >= zones
+                && Arrays.equals(a.getEnclosureX(), 0, enclosures, b.getEnclosureX(), 0, enclosures)
+                && Arrays.equals(a.getEnclosureY(), 0, enclosures, b.getEnclosureY(), 0, enclosures)
+                && Arrays.equals(a.getEnclosureZ(), 0, enclosures, b.getEnclosureZ(), 0, enclosures)
+                && Arrays.equals(a.getEnclosureDiet(), 0, enclosures, b.getEnclosureDiet(), 0, enclosures)
+                && Arrays.equals(a.getDeadZoneX(), 0, zones, b.getDeadZoneX(), 0, zones)
+                && Arrays.equals(a.getDeadZoneY(), 0, zones, b.getDeadZoneY(), 0, zones)
+                && Arrays.equals(a.getDeadZoneRadius(), 0, zones, b.getDeadZoneRadius(), 0, zones);
+        if (!same) {
+            throw new IllegalArgumentException("The zoo is not a change of the table's zoo");
+        }
+        return new LegCostTable(this, changed);
+    }
+
+    private void fillWord(int word) {
+        int first = word << 6;
+        int last = Math.min(first + 64, locationCount);
+        for (int hub = 0; hub < hubCount; hub++) {
+            int row = hub * locationCount;
+            for (int to = first; to < last; to++) {
+                double dx = x[hub] - x[to];
+                double dy = y[hub] - y[to];
+                hubDistance[row + to] = Math.sqrt(dx * dx + dy * dy);
+            }
+            hubBlocked[hub * blockedWords + word] = deadZones.blockedMask(x[hub], y[hub], x, y, first, last);
+        }
+    }
+
+    public Zoo getZoo() {
+        return zoo;
+    }
+
+    /**
+     * @return The best pickup storages per enclosure, built on the first call.
+     */
+    public PickupTable getPickups() {
+        PickupTable result = pickups;
+        if (result == null) {
+            synchronized (this) {
+                result = pickups;
+                if (result == null) {
+                    result = new PickupTable(this);
+                    pickups = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public DeadZoneIndex getDeadZones() {
+        return deadZones;
+    }
+
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    public int getHubCount() {
+        return hubCount;
+    }
+
+    public int storageId(FoodStorage storage) {
+        return 1 + storage.getId();
+    }
+
+    public int enclosureId(Enclosure enclosure) {
+        return hubCount + enclosure.getId();
+    }
+
+    public boolean isStorage(int id) {
+        return id > DEPOT_ID && id < hubCount;
+    }
+
+    public boolean isEnclosure(int id) {
+        return id >= hubCount;
+    }
+
+    public FoodStorage storage(int id) {
+        return zoo.getFoodStorages().get(id - 1);
+    }
+
+    public Enclosure enclosure(int id) {
+        return zoo.getEnclosures().get(id - hubCount);
+    }
+
+    /**
+     * @return The point of a location; the same instance on every call.
+     */
+    public Point point(int id) {
+        return points[id];
+    }
+
+    /**
+     * @return The diet type of a storage or enclosure, which is also the food carried after leaving it (' ' for the depot).
+     */
+    public char diet(int id) {
+        return diet[id];
+    }
+
+    public double importance(int enclosureId) {
+        return importance[enclosureId - hubCount];
+    }
+
+    public int x(int id) {
+        return x[id];
+    }
+
+    public int y(int id) {
+        return y[id];
+    }
+
+    /**
+     * @return The vertical cost of taking off from the depot at the start of a run.
+     */
+    public double depotVerticalCost() {
+        return depotVerticalCost;
+    }
+
+    /**
+     * @return The vertical cost of arriving at a location: landing and taking off again
+     *         at a stop, or only the final landing at the depot.
+     */
+    public double arrivalCost(int id) {
+        return arrivalCost[id];
+    }
+
+    /**
+     * @return The horizontal flight distance between two locations.
+     */
+    public double horizontal(int from, int to) {
+        if (from < hubCount) {
+            return hubDistance[from * locationCount + to];
+        }
+        if (to < hubCount) {
+            return hubDistance[to * locationCount + from];
+        }
+        double dx = x[from] - x[to];
+        double dy = y[from] - y[to];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @return true if the horizontal leg between two locations crosses a dead zone.
+     */
+    public boolean isBlocked(int from, int to) {
+        if (from < hubCount) {
+            return isHubBlocked(from, to);
+        }
+        if (to < hubCount) {
+            return isHubBlocked(to, from);
+        }
+        return deadZones.intersectsAny(x[from], y[from], x[to], y[to]); // Too frequent to count
+    }
+
+    /**
+     * The horizontal distance actually flown between two locations: the straight leg when it is
+     * clear, otherwise the length of the shortest detour around the dead zones.
+     *
+     * @return The flight distance, or positive infinity if no detour fits in the battery.
+     */
+    public double flightDistance(int from, int to) {
+        if (!isBlocked(from, to)) {
+            return horizontal(from, to);
+        }
+        return detour(from, to).getLength();
+    }
+
+    /**
+     * Appends the waypoints needed to fly from one location to another, if any, to a path.
+     * Both endpoints are left for the caller to add.
+     */
+    public void appendWaypoints(List<Point> path, int from, int to) {
+        if (isBlocked(from, to)) {
+            detour(from, to).appendWaypoints(path, from > to);
+        }
+    }
+
+    // Detours are routed once per unordered pair and reversed when flown the other way
+    private DetourRouter.Detour detour(int from, int to) {
+        int low = Math.min(from, to);
+        int high = Math.max(from, to);
+        long key = (long) low * locationCount + high;
+        DetourRouter.Detour detour = detours.get(key);
+        if (detour == null) {
+            detour = router.route(point(low), point(high), zoo.getBatteryCapacity());
+            detours.putIfAbsent(key, detour);
+        }
+        return detour;
+    }
+
+    private boolean isHubBlocked(int hub, int to) {
+        return (hubBlocked[hub * blockedWords + (to >>> 6)] & (1L << (to & 63))) != 0;
+    }
+}
@@ -0,0 +1,327 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.models.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Improvement phase for a finished set of drone runs.
+ * Shortens runs with intra-run moves (storage swap, 2-opt inside a food block, or-opt of
+ * short enclosure chains) and inter-run moves (relocate an enclosure into another run,
+ * exchange two enclosures of the same diet between runs), then spends the freed battery
+ * on inserting unfed enclosures, most important first. Every move is priced with an
+ * incremental delta from the {@link LegCostTable} and only applied if the battery holds,
+ * every enclosure still follows a storage of its diet, and every leg can be flown
+ * (dead zones are detoured by the table). Inter-run moves only look at the nearest
+ * enclosures of each enclosure, so a pass stays close to linear in the number of stops.
+ * Stops at a local optimum, after a number of passes, or when the time limit runs out.
+ * A {@link SolutionListener}, if set, gets a copy of the solution after every improving pass.
+ */
+public class LocalSearch {
+
+    private static final double EPSILON = 1e-9;
+    private static final int MAX_CHAIN = 3;
+
+    private final SearchContext context;
+    private final LegCostTable table;
+    private final int capacity;
+
+    private long timeLimitMillis;
+    private int maxPasses = Integer.MAX_VALUE;
+    private long deadlineNanos;
+    private SolutionListener listener;
+
+    // Working state of the solution being improved
+    private WorkingSolution state;
+    private List<RunPlan> runs;
+
+    public LocalSearch(LegCostTable table) {
+        this(new SearchContext(table));
+    }
+
+    public LocalSearch(SearchContext context) {
+        this.context = context;
+        this.table = context.getTable();
+        this.capacity = context.getCapacity();
+    }
+
+    /**
+     * @param timeLimitMillis Wall-clock budget per {@link #improve} call, or 0 for none.
+     */
+    public void setTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * @param maxPasses The maximum number of full passes over all move types.
+     */
+    public void setMaxPasses(int maxPasses) {
+        this.maxPasses = maxPasses;
+    }
+
+    /**
+     * @param listener Told about the solution after each improving pass; null for none.
+     */
+    public void setListener(SolutionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Improves point paths as produced by {@link PathFinder#generatePaths()}.
+     *
+     * @param paths The runs to improve.
+     * @return The improved runs.
+     */
+    public List<List<Point>> improve(List<List<Point>> paths) {
+        return improve(Solution.fromPaths(table, paths)).toPaths();
+    }
+
+    /**
+     * Improves a solution. The given solution is left untouched.
+     *
+     * @param start The solution to start from.
+     * @return The improved copy.
+     */
+    public Solution improve(Solution start) {
+        improve(new WorkingSolution(context, start.copy()), false);
+        Solution result = state.getSolution();
+        result.removeEmptyRuns();
+        state = null;
+        runs = null;
+        return result;
+    }
+
+    /**
+     * Improves a working solution in place, starting from the runs it has marked changed:
+     * the intra-run moves and the relocations and exchanges only look at the enclosures of
+     * runs changed since the last pass, while unfed enclosures may still go anywhere. For
+     * repairing a solution around a small change; settled runs cost nothing.
+     *
+     * @param working The solution to improve, with the runs to look at marked changed.
+     */
+    public void improveChanged(WorkingSolution working) {
+        improve(working, true);
+        state = null;
+        runs = null;
+    }
+
+    private void improve(WorkingSolution working, boolean changedOnly) {
+        deadlineNanos = timeLimitMillis > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis) : Long.MAX_VALUE;
+        state = working;
+        runs = state.getRuns();
+
+        for (int pass = 0; pass < maxPasses && !timeUp(); pass++) {
+            boolean improved = false;
+            boolean[] changed = changedOnly ? new boolean[runs.size()] : null;
+            for (int r = 0; r < runs.size() && !timeUp(); r++) {
+                if (state.isChanged(r)) {
+                    if (changed != null) changed[r] = true;
+                    improved |= optimiseRun(r);
+                }
+            }
+            improved |= relocateAndExchange(changed);
+            improved |= insertUnfed();
+            if (!improved) break;
+            if (listener != null) listener.improved(state.getSolution().copy());
+        }
+    }
+
+    private boolean timeUp() {
+        return System.nanoTime() >= deadlineNanos;
+    }
+
+    // --- Intra-run moves: storage swap, 2-opt within a block, or-opt ---
+
+    private boolean optimiseRun(int r) {
+        RunPlan run = runs.get(r);
+        boolean improvedAny = false;
+        boolean improved = true;
+        while (improved && !timeUp()) {
+            improved = swapStorages(run) || twoOpt(run) || orOpt(run);
+            if (improved) {
+                run.recomputeDistance(table);
+                state.reindex(r);
+                improvedAny = true;
+            }
+        }
+        state.markSettled(r);
+        return improvedAny;
+    }
+
+    private boolean swapStorages(RunPlan run) {
+        for (int i = 0; i < run.size(); i++) {
+            int s = run.at(i);
+            if (!context.isStorage(s)) continue;
+            int p = run.at(i - 1), n = run.at(i + 1);
+            double current = context.leg(p, s) + context.leg(s, n);
+            int best = -1;
+            double bestDelta = -EPSILON;
+            for (int alternative : context.storagesOf(context.dietOf(s))) {
+                if (alternative == s) continue;
+                double delta = context.leg(p, alternative) + context.leg(alternative, n) - current;
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    best = alternative;
+                }
+            }
+            if (best != -1) {
+                run.set(i, best);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Reversing a stretch of one food block keeps the same stops, so only the two outer flights change
+    private boolean twoOpt(RunPlan run) {
+        for (int a = 0; a < run.size(); a++) {
+            if (context.isStorage(run.at(a))) continue;
+            for (int b = a + 1; b < run.size() && !context.isStorage(run.at(b)); b++) {
+                int p = run.at(a - 1), n = run.at(b + 1);
+                double current = context.flight(p, run.at(a)) + context.flight(run.at(b), n);
+                // Flights are never shorter than the straight legs, so most reversals are ruled out unrouted
+                if (table.horizontal(p, run.at(b)) + table.horizontal(run.at(a), n) - current >= -EPSILON) continue;
+                double delta = context.flight(p, run.at(b)) + context.flight(run.at(a), n) - current;
+                if (delta < -EPSILON) {
+                    run.reverse(a, b);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Moves a chain of up to MAX_CHAIN enclosures of one block elsewhere in the run, possibly reversed
+    private boolean orOpt(RunPlan run) {
+        int size = run.size();
+        for (int i = 0; i < size; i++) {
+            if (context.isStorage(run.at(i))) continue;
+            for (int j = i; j < size && j < i + MAX_CHAIN && !context.isStorage(run.at(j)); j++) {
+                int prev = run.at(i - 1), next = run.at(j + 1);
+                // Taking the whole block would leave its storage with nothing to feed
+                if (context.isStorage(prev) && (next == LegCostTable.DEPOT_ID || context.isStorage(next))) continue;
+                int first = run.at(i), last = run.at(j);
+                char diet = context.dietOf(first);
+                double removal = context.flight(prev, next) - context.flight(prev, first) - context.flight(last, next);
+
+                for (int q = 0; q <= size; q++) {
+                    if (q >= i && q <= j + 1) continue;
+                    int u = run.at(q - 1), v = run.at(q);
+                    if (context.dietOf(u) != diet) continue;
+                    double lowerBound = Math.min(table.horizontal(u, first) + table.horizontal(last, v),
+                            table.horizontal(u, last) + table.horizontal(first, v)) - context.flight(u, v);
+                    if (removal + lowerBound >= -EPSILON) continue;
+                    double forward = context.flight(u, first) + context.flight(last, v) - context.flight(u, v);
+                    double backward = context.flight(u, last) + context.flight(first, v) - context.flight(u, v);
+                    boolean reversed = backward < forward;
+                    if (removal + Math.min(forward, backward) < -EPSILON) {
+                        int length = j - i + 1;
+                        int[] chain = new int[length];
+                        for (int k = 0; k < length; k++) {
+                            chain[k] = run.remove(i);
+                        }
+                        int target = q > j ? q - length : q;
+                        for (int k = 0; k < length; k++) {
+                            run.insert(target + k, reversed ? chain[length - 1 - k] : chain[k]);
+                        }
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // --- Inter-run moves: relocate and exchange between nearby enclosures ---
+
+    // Only the enclosures of the runs flagged in changed, if given
+    private boolean relocateAndExchange(boolean[] changed) {
+        boolean improved = false;
+        int end = context.getHubCount() + context.getEnclosureCount();
+        for (int x = context.getHubCount(); x < end && !timeUp(); x++) {
+            if (!state.isFed(x)) continue;
+            int r = state.runOf(x);
+            if (changed != null && r < changed.length && !changed[r]) continue;
+            improved |= relocate(x) || exchange(x);
+        }
+        return improved;
+    }
+
+    private boolean relocate(int x) {
+        int from = state.runOf(x);
+        RunPlan source = runs.get(from);
+        int i = state.positionOf(x);
+        double removal = state.removalDelta(source, i);
+
+        WorkingSolution.Insertion best = null;
+        for (int y : context.neighboursOf(x)) {
+            int r = state.runOf(y);
+            if (r < 0 || r == from) continue;
+            int k = state.positionOf(y);
+            best = WorkingSolution.better(best, state.bestInsertionAt(r, k, x));
+            best = WorkingSolution.better(best, state.bestInsertionAt(r, k + 1, x));
+        }
+        if (best == null || removal + best.getDelta() >= -EPSILON) {
+            return false;
+        }
+        state.removeEnclosure(from, i);
+        state.apply(best, x);
+        return true;
+    }
+
+    private boolean exchange(int x) {
+        int ra = state.runOf(x);
+        RunPlan a = runs.get(ra);
+        int i = state.positionOf(x);
+        int pa = a.at(i - 1), na = a.at(i + 1);
+        for (int y : context.neighboursOf(x)) {
+            int rb = state.runOf(y);
+            if (rb < 0 || rb == ra || context.dietOf(y) != context.dietOf(x)) continue;
+            RunPlan b = runs.get(rb);
+            int k = state.positionOf(y);
+            int pb = b.at(k - 1), nb = b.at(k + 1);
+            double deltaA = context.leg(pa, y) + context.leg(y, na) - context.leg(pa, x) - context.leg(x, na);
+            double deltaB = context.leg(pb, x) + context.leg(x, nb) - context.leg(pb, y) - context.leg(y, nb);
+            if (deltaA + deltaB < -EPSILON
+                    && a.getDistance() + deltaA <= capacity && b.getDistance() + deltaB <= capacity) {
+                a.set(i, y);
+                b.set(k, x);
+                a.recomputeDistance(table);
+                b.recomputeDistance(table);
+                state.reindex(ra);
+                state.reindex(rb);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // --- Insertion of unfed enclosures ---
+
+    private boolean insertUnfed() {
+        boolean improved = false;
+        ImportanceQueue unfed = state.getUnfed();
+        double slack = largestSlack();
+        for (int e = unfed.first(); e != -1 && !timeUp(); e = unfed.next(e)) {
+            // Every insertion lands at the enclosure, so once no run has that much battery left only a new run could take it
+            if (table.arrivalCost(e) > slack && runs.size() >= context.getMaxRuns()) continue;
+            WorkingSolution.Insertion best = state.bestInsertion(e);
+            if (best != null) {
+                state.apply(best, e);
+                slack = largestSlack();
+                improved = true;
+            }
+        }
+        return improved;
+    }
+
+    private double largestSlack() {
+        double slack = 0;
+        for (RunPlan run : runs) {
+            slack = Math.max(slack, capacity - run.getDistance());
+        }
+        return slack;
+    }
+}
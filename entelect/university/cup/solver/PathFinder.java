@@ -1,5 +1,7 @@
 package entelect.university.cup.solver;
 
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.metrics.Metrics;
 import entelect.university.cup.models.*;
 
 import java.util.*;
@@ -12,13 +14,66 @@ import java.util.stream.Collectors;
 public class PathFinder {
 
     private final Zoo zoo;
+    private final LegCostTable legCosts;
+    private final ConstructionStrategy strategy;
+    private final Random random;
+    private final double nearestStartRadius; // First search radius for NEAREST_NEIGHBOUR
+    private long deadlineNanos = Long.MAX_VALUE;
     private List<List<Point>> allRuns;
-    private Set<Enclosure> fedEnclosuresGlobal; // Track across all runs
+    private FedSet fedEnclosures; // Track across all runs, per solver
+    private double totalImportance;
 
     public PathFinder(Zoo zoo) {
+        this(zoo, LegCostTable.build(zoo));
+    }
+
+    public PathFinder(Zoo zoo, LegCostTable legCosts) {
+        this(zoo, legCosts, ConstructionStrategy.IMPORTANCE, 0L);
+    }
+
+    /**
+     * @param zoo      The zoo to solve. It is only read, so it can be shared with other solvers.
+     * @param legCosts The precomputed leg costs (may be shared with other solvers of the same zoo).
+     * @param strategy How to pick the next enclosure of a run.
+     * @param seed     The random seed, only used by {@link ConstructionStrategy#RANDOMIZED}.
+     */
+    public PathFinder(Zoo zoo, LegCostTable legCosts, ConstructionStrategy strategy, long seed) {
         this.zoo = zoo;
+        this.legCosts = legCosts;
+        this.strategy = strategy;
+        this.random = new Random(seed);
+        Point dimensions = zoo.getDimensions();
+        double spacing = Math.sqrt((double) dimensions.getX() * dimensions.getY() / Math.max(1, zoo.getEnclosures().size()));
+        this.nearestStartRadius = Math.max(1.0, 2 * spacing);
         this.allRuns = new ArrayList<>();
-        this.fedEnclosuresGlobal = new HashSet<>();
+        this.fedEnclosures = new FedSet(zoo.getEnclosures().size());
+    }
+
+    /**
+     * Stops adding runs once the deadline passes; the runs built so far are still returned.
+     *
+     * @param deadlineNanos A {@link System#nanoTime()} value.
+     */
+    public void setDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public ConstructionStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return The total importance of the enclosures fed by the last {@link #generatePaths()} call.
+     */
+    public double getScore() {
+        return totalImportance;
+    }
+
+    /**
+     * @return The enclosures fed by the last {@link #generatePaths()} call.
+     */
+    public FedSet getFedEnclosures() {
+        return fedEnclosures;
     }
 
     /**
@@ -28,12 +83,9 @@ public class PathFinder {
      */
     public List<List<Point>> generatePaths() {
         // Reset state if called multiple times
-        allRuns.clear();
-        fedEnclosuresGlobal.clear();
-        // Reset fed status for all enclosures in the zoo model
-        for (Enclosure enc : zoo.getEnclosures()) {
-            enc.setFed(false);
-        }
+        allRuns = new ArrayList<>();
+        fedEnclosures = new FedSet(zoo.getEnclosures().size());
+        totalImportance = 0;
 
         int runsRemaining = zoo.getBatterySwaps() + 1; // Initial run + swaps
 
@@ -43,201 +95,141 @@ public class PathFinder {
         Map<Character, List<Enclosure>> enclosuresByDiet = zoo.getEnclosures().stream()
                 .collect(Collectors.groupingBy(Enclosure::getDietType));
 
-        // Sort food storages by diet for easy lookup
-        Map<Character, List<FoodStorage>> storagesByDiet = zoo.getFoodStorages().stream()
-                .collect(Collectors.groupingBy(FoodStorage::getDietType));
+        // Best pickup storage per target enclosure, from wherever the drone is
+        PickupTable pickups = legCosts.getPickups();
 
-        // Priority queue for enclosures (highest importance first)
-        PriorityQueue<Enclosure> enclosureQueue = new PriorityQueue<>(
-                Comparator.<Enclosure, Double>comparing(Enclosure::getImportance).reversed()
-        );
-        enclosureQueue.addAll(zoo.getEnclosures());
+        // Spatial index of the unfed enclosures (highest importance first within a radius)
+        EnclosureIndex unfedEnclosures = new EnclosureIndex(legCosts);
 
 
-        while (runsRemaining > 0 && !enclosureQueue.isEmpty()) {
+        while (runsRemaining > 0 && !unfedEnclosures.isEmpty() && System.nanoTime() < deadlineNanos) {
              // Try to build a run
-             List<Point> currentRunPath = buildSingleGreedyRun(enclosureQueue, storagesByDiet);
+             List<Point> currentRunPath = buildSingleGreedyRun(unfedEnclosures, pickups);
 
              if (currentRunPath != null && currentRunPath.size() > 2) { // A valid run must visit at least one location
                  allRuns.add(currentRunPath);
+                 Metrics.RUNS_BUILT.increment();
                  runsRemaining--;
              } else {
                  // Cannot build any more valid runs with remaining enclosures
                  break;
              }
-             // Remove fed enclosures from the queue for the next iteration
-             enclosureQueue.removeIf(Enclosure::isFed);
         }
         // --- !!! END OF ALGORITHM PLACEHOLDER !!! ---
 
 
-        System.out.println("Generated " + allRuns.size() + " runs.");
+        Console.println("Generated " + allRuns.size() + " runs.");
         return allRuns;
     }
 
     /**
      * Placeholder for building a single drone run using a greedy approach.
-     * Tries to feed the highest importance, unfed animal it can reach.
-     * THIS IS A VERY BASIC EXAMPLE AND LIKELY INEFFICIENT/SUBOPTIMAL.
+     * Tries to feed the unfed animal the {@link ConstructionStrategy} prefers among those it can reach.
+     * Candidates are priced incrementally through a {@link RunState}, so no path is rebuilt per candidate,
+     * and only enclosures within the remaining battery reach are considered.
      */
-    private List<Point> buildSingleGreedyRun(PriorityQueue<Enclosure> availableEnclosures,
-                                             Map<Character, List<FoodStorage>> storagesByDiet) {
-
-        List<Point> path = new ArrayList<>();
-        path.add(zoo.getDroneDepot()); // Start at depot
+    private List<Point> buildSingleGreedyRun(EnclosureIndex availableEnclosures,
+                                             PickupTable pickups) {
 
-        double currentBatteryUsed = 0.0;
-        Point currentLocation = zoo.getDroneDepot();
-        char currentFood = ' '; // No food initially
-        FoodStorage lastFoodStorageVisited = null;
-        List<Enclosure> fedInThisRun = new ArrayList<>();
+        RunState run = new RunState(legCosts);
+        int limit = strategy.getCandidateLimit();
+        int[] pickTargets = new int[strategy == ConstructionStrategy.RANDOMIZED ? limit : 0];
+        int[] pickStorages = new int[pickTargets.length];
+        long evaluated = 0; // Candidates looked at, added to the metrics once per run
+        long priced = 0; // Of those, the ones priced with their detours
 
         boolean canAddMore = true;
         while (canAddMore) {
-            Enclosure bestTargetEnclosure = null;
-            FoodStorage requiredFoodStorage = null;
-            double costToFeedBestTarget = Double.POSITIVE_INFINITY;
-
-            // Find the best *possible* next enclosure to feed (highest importance, unfed)
-            List<Enclosure> candidates = new ArrayList<>(availableEnclosures);
-            candidates.sort(Comparator.<Enclosure, Double>comparing(Enclosure::getImportance).reversed());
-
-            for (Enclosure targetEnc : candidates) {
-                 if (targetEnc.isFed()) continue; // Already fed globally
-
-                 char neededDiet = targetEnc.getDietType();
-                 FoodStorage storageToUse = null;
-                 List<Point> potentialPathSegment = new ArrayList<>();
-                 double segmentCost = 0;
-
-                 // Do we need to get food?
-                 if (currentFood != neededDiet) {
-                      // Find the *closest* food storage for the needed diet
-                      storageToUse = findClosestStorage(currentLocation, storagesByDiet.get(neededDiet));
-                      if (storageToUse == null) continue; // No storage for this diet
-
-                      potentialPathSegment.add(storageToUse.getLocation()); // Fly to storage
-                 }
-                 potentialPathSegment.add(targetEnc.getFeedingPoint()); // Fly to enclosure
-
-                 // Calculate cost of this segment (current -> [storage?] -> enclosure -> depot)
-                 List<Point> tempFullPath = new ArrayList<>(path);
-                 tempFullPath.addAll(potentialPathSegment);
-                 tempFullPath.add(zoo.getDroneDepot()); // Add final return leg for cost check
-
-                 // Check if *this segment* plus return is valid (approximate check)
-                 List<Point> segmentCheckPath = new ArrayList<>();
-                 segmentCheckPath.add(currentLocation);
-                 segmentCheckPath.addAll(potentialPathSegment);
-                 segmentCheckPath.add(zoo.getDroneDepot());
-
-                 if (DroneMathUtils.isPathValid(tempFullPath, zoo)) { // Check full path validity
-                     double potentialTotalDistance = DroneMathUtils.calculateTotalRunDistance(tempFullPath, zoo);
-                     if (potentialTotalDistance <= zoo.getBatteryCapacity()) {
-                         // This enclosure is reachable within constraints *from current state*
-                         // In a purely greedy approach, we might just take the highest importance one.
-                         // Let's calculate the cost *added* by visiting this enclosure
-                         double addedDistance = calculateAddedDistance(path, potentialPathSegment, zoo);
-
-                         // Simple greedy: choose highest importance reachable enclosure
-                         bestTargetEnclosure = targetEnc;
-                         requiredFoodStorage = storageToUse; // Might be null if food already held
-                         break; // Found the best one according to priority queue order
+            int bestTargetEnclosure = -1;
+            int requiredFoodStorage = RunState.NO_STORAGE;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            int feasible = 0;
+
+            // Find the best *possible* next enclosure to feed (highest importance, unfed, within reach)
+            double reach = run.getRemainingReach();
+            int current = run.getCurrentLocation();
+            double baseDistance = run.getTotalDistance();
+            // Nearest-neighbour searches outwards and only widens the circle if nothing fits
+            double radius = strategy == ConstructionStrategy.NEAREST_NEIGHBOUR ? Math.min(reach, nearestStartRadius) : reach;
+
+            while (true) {
+                EnclosureIndex.Cursor candidates = availableEnclosures.query(current, radius, EnclosureIndex.ANY_DIET);
+                for (int targetId = candidates.next(); targetId != -1 && feasible < limit; targetId = candidates.next()) {
+                     // Going out to the enclosure and back home must fit, whatever storage is used on the way
+                     if (legCosts.horizontal(current, targetId) + legCosts.horizontal(targetId, LegCostTable.DEPOT_ID) > reach) {
+                         continue;
                      }
-                 }
-            } // End finding best target
 
-            // If we found a target we can feed
-            if (bestTargetEnclosure != null) {
-                // Add storage to path if needed
-                if (requiredFoodStorage != null) {
-                    path.add(requiredFoodStorage.getLocation());
-                    currentLocation = requiredFoodStorage.getLocation();
-                    currentFood = requiredFoodStorage.getDietType(); // Picked up food
-                    lastFoodStorageVisited = requiredFoodStorage;
-                }
-                // Add enclosure to path
-                path.add(bestTargetEnclosure.getFeedingPoint());
-                currentLocation = bestTargetEnclosure.getFeedingPoint();
-                fedInThisRun.add(bestTargetEnclosure);
-                bestTargetEnclosure.setFed(true); // Mark as fed globally
-                availableEnclosures.remove(bestTargetEnclosure); // Remove from candidates for this run
-
-                // Check if we can still return to depot after adding this
-                 List<Point> finalPathCheck = new ArrayList<>(path);
-                 finalPathCheck.add(zoo.getDroneDepot());
-                 if (!DroneMathUtils.isPathValid(finalPathCheck, zoo) || DroneMathUtils.calculateTotalRunDistance(finalPathCheck, zoo) > zoo.getBatteryCapacity()) {
-                     // Cannot complete the run, revert last step
-                     path.remove(path.size()-1); // Remove enclosure
-                     if (requiredFoodStorage != null) {
-                         path.remove(path.size()-1); // Remove storage
-                         // Revert food status? More complex state needed...
+                     evaluated++;
+                     Enclosure target = legCosts.enclosure(targetId);
+                     char neededDiet = target.getDietType();
+                     int storageToUse = RunState.NO_STORAGE;
+
+                     // Do we need to get food?
+                     if (run.getCurrentFood() != neededDiet) {
+                          // The storage on the shortest way to this enclosure, not merely the closest one
+                          storageToUse = pickups.bestPickup(current, targetId);
+                          if (storageToUse == RunState.NO_STORAGE) continue; // No storage for this diet
                      }
-                     bestTargetEnclosure.setFed(false); // Unmark
-                     availableEnclosures.add(bestTargetEnclosure); // Add back
-                     fedInThisRun.remove(bestTargetEnclosure);
-                     canAddMore = false; // Stop adding to this run
-                 }
-                 // Else: Successfully added, continue trying to add more
 
+                     // Price current -> [storage?] -> enclosure -> depot, detouring around dead zones on the new legs
+                     priced++;
+                     double cost = run.costToExtend(storageToUse, targetId);
+                     if (cost > zoo.getBatteryCapacity()) continue;
+
+                     if (strategy == ConstructionStrategy.RANDOMIZED) {
+                         pickTargets[feasible] = targetId;
+                         pickStorages[feasible] = storageToUse;
+                     } else {
+                         double value = candidateValue(target.getImportance(), cost - baseDistance);
+                         if (value > bestValue) {
+                             bestValue = value;
+                             bestTargetEnclosure = targetId;
+                             requiredFoodStorage = storageToUse; // Might be NO_STORAGE if food already held
+                         }
+                     }
+                     feasible++;
+                }
+                if (feasible > 0 || radius >= reach) break;
+                radius = Math.min(reach, radius * 2);
+            } // End finding best target
+
+            if (strategy == ConstructionStrategy.RANDOMIZED && feasible > 0) {
+                int pick = random.nextInt(feasible);
+                bestTargetEnclosure = pickTargets[pick];
+                requiredFoodStorage = pickStorages[pick];
+            }
+
+            // If we found a target we can feed
+            if (bestTargetEnclosure != -1) {
+                run.extend(requiredFoodStorage, bestTargetEnclosure);
+                Enclosure fed = legCosts.enclosure(bestTargetEnclosure);
+                fedEnclosures.markFed(fed.getId()); // Mark as fed for later runs
+                totalImportance += fed.getImportance();
+                availableEnclosures.remove(bestTargetEnclosure); // Remove from candidates for later runs
             } else {
                 canAddMore = false; // No suitable enclosure found
             }
         } // End while canAddMore
 
-        // Finalize run path by adding return to depot
-        if (path.size() > 1) { // If we visited at least one place
-             path.add(zoo.getDroneDepot());
-
-             // Final validation check (redundant if logic above is correct, but safe)
-             if (!DroneMathUtils.isPathValid(path, zoo) || DroneMathUtils.calculateTotalRunDistance(path, zoo) > zoo.getBatteryCapacity()) {
-                  // This run configuration became invalid, potentially need backtracking
-                  System.err.println("Warning: Greedy run became invalid at the end.");
-                  // For this simple greedy, we might return null or an empty path
-                   // Revert fed status for this run
-                  for (Enclosure reverted : fedInThisRun) {
-                      reverted.setFed(false);
-                      availableEnclosures.add(reverted); // Add back to main queue
-                  }
-                  return null;
-             }
-        } else {
+        Metrics.CANDIDATES_EVALUATED.add(evaluated);
+        Metrics.COST_EVALUATIONS.add(priced);
+        if (run.isEmpty()) {
             return null; // No valid stops could be made
         }
-
-
-        return path;
+        // Finalize run path by adding return to depot
+        return run.close();
     }
 
-    // Helper to find the closest food storage of a specific type
-    private FoodStorage findClosestStorage(Point currentLocation, List<FoodStorage> storages) {
-        if (storages == null || storages.isEmpty()) {
-            return null;
+    // How attractive a feasible candidate is under the current strategy (higher is better)
+    private double candidateValue(double importance, double addedDistance) {
+        switch (strategy) {
+            case IMPORTANCE_PER_METRE:
+                return importance / Math.max(addedDistance, 1e-9);
+            case NEAREST_NEIGHBOUR:
+                return -addedDistance;
+            default:
+                return importance; // Candidates arrive best importance first, so the first one wins
         }
-        FoodStorage closest = null;
-        double minDistance = Double.POSITIVE_INFINITY;
-        for (FoodStorage storage : storages) {
-            double dist = currentLocation.distance2D(storage.getLocation());
-            if (dist < minDistance) {
-                minDistance = dist;
-                closest = storage;
-            }
-        }
-        return closest;
     }
-
-     // Helper to estimate added distance (simplistic)
-     private double calculateAddedDistance(List<Point> basePath, List<Point> segmentToAdd, Zoo zoo) {
-         List<Point> pathWithSegment = new ArrayList<>(basePath);
-         pathWithSegment.addAll(segmentToAdd);
-         pathWithSegment.add(zoo.getDroneDepot());
-
-         List<Point> pathWithoutSegment = new ArrayList<>(basePath);
-         pathWithoutSegment.add(zoo.getDroneDepot());
-
-         double distWith = DroneMathUtils.calculateTotalRunDistance(pathWithSegment, zoo);
-         double distWithout = DroneMathUtils.calculateTotalRunDistance(pathWithoutSegment, zoo);
-
-         return distWith - distWithout;
-     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package entelect.university.cup.solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The best storage to pick food up from on the way to an enclosure: the storage of the
+ * enclosure's diet that minimises {@code from -> storage -> enclosure} (horizontal legs
+ * plus the landing at the storage), which is often not the storage nearest to the drone.
+ * <ul>
+ *     <li>Every enclosure keeps its diet's storages in a flat index array, sorted by
+ *     {@code arrival(storage) + storage -> enclosure}, cut off after {@link #NEAREST} entries.
+ *     A query walks that list and stops as soon as that key alone reaches the best total
+ *     found, since the leg from the drone can only add to it. Queries from an enclosure
+ *     therefore look at a few storages, however many the diet has.</li>
+ *     <li>From the depot and the storages the answer is stored per enclosure, so those
+ *     queries are a single array read (from the depot only, if a row per storage would
+ *     take more than {@link #MAX_HUB_ENTRIES} entries).</li>
+ * </ul>
+ * Straight legs are used throughout (dead zones are ignored); the caller prices the chosen
+ * pickup with its detours as usual. Built once per {@link LegCostTable}; safe to share.
+ */
+public class PickupTable {
+
+    private static final int NEAREST = 8;
+    private static final int MAX_HUB_ENTRIES = 1 << 22;
+
+    private final LegCostTable table;
+    private final int hubCount;
+    private final int enclosureCount;
+    private final Map<Character, int[]> storagesByDiet;
+    private final int[] nearest; // [enclosure * NEAREST + k]: storage ids by arrival + leg to the enclosure
+    private final byte[] nearestCount;
+    private final boolean[] truncated; // More storages of its diet than NEAREST
+    private final int hubRows; // Hubs with a stored row: all of them, or only the depot
+    private final int[] fromHub; // [hub * enclosureCount + enclosure]: the best storage, or NO_STORAGE
+
+    PickupTable(LegCostTable table) {
+        this.table = table;
+        this.hubCount = table.getHubCount();
+        this.enclosureCount = table.getLocationCount() - hubCount;
+
+        Map<Character, List<Integer>> storages = new HashMap<>();
+        for (int s = 1; s < hubCount; s++) {
+            storages.computeIfAbsent(table.diet(s), d -> new ArrayList<>()).add(s);
+        }
+        this.storagesByDiet = new HashMap<>();
+        for (Map.Entry<Character, List<Integer>> entry : storages.entrySet()) {
+            storagesByDiet.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        this.nearest = new int[enclosureCount * NEAREST];
+        this.nearestCount = new byte[enclosureCount];
+        this.truncated = new boolean[enclosureCount];
+        double[] keys = new double[NEAREST];
+        for (int i = 0; i < enclosureCount; i++) {
+            int e = hubCount + i;
+            int[] candidates = storagesByDiet.get(table.diet(e));
+            if (candidates == null) continue;
+            // Insertion into a short sorted prefix: only the NEAREST best keys are kept
+            int count = 0;
+            for (int s : candidates) {
+                double key = key(s, e);
+                if (count == NEAREST && key >= keys[NEAREST - 1]) continue;
+                int k = Math.min(count, NEAREST - 1);
+                while (k > 0 && keys[k - 1] > key) {
+                    keys[k] = keys[k - 1];
+                    nearest[i * NEAREST + k] = nearest[i * NEAREST + k - 1];
+                    k--;
+                }
+                keys[k] = key;
+                nearest[i * NEAREST + k] = s;
+                if (count < NEAREST) count++;
+            }
+            nearestCount[i] = (byte) count;
+            truncated[i] = candidates.length > NEAREST;
+        }
+
+        this.hubRows = (long) hubCount * enclosureCount <= MAX_HUB_ENTRIES ? hubCount : 1;
+        this.fromHub = new int[hubRows * enclosureCount];
+        for (int hub = 0; hub < hubRows; hub++) {
+            for (int i = 0; i < enclosureCount; i++) {
+                fromHub[hub * enclosureCount + i] = search(hub, hubCount + i);
+            }
+        }
+    }
+
+    /**
+     * @param from      The location the drone picks food up from (any location id).
+     * @param enclosure The location id of the enclosure the food is for.
+     * @return The storage minimising the way from {@code from} to the enclosure, or
+     *         {@link RunState#NO_STORAGE} if no storage has the enclosure's food.
+     */
+    public int bestPickup(int from, int enclosure) {
+        if (from < hubRows) {
+            return fromHub[from * enclosureCount + enclosure - hubCount];
+        }
+        return search(from, enclosure);
+    }
+
+    /**
+     * @return The length of {@code from -> storage -> enclosure} as the table prices it
+     *         (straight legs and the landing at the storage).
+     */
+    public double pickupCost(int from, int storage, int enclosure) {
+        return table.horizontal(from, storage) + key(storage, enclosure);
+    }
+
+    private int search(int from, int enclosure) {
+        int i = enclosure - hubCount;
+        int best = RunState.NO_STORAGE;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < nearestCount[i]; k++) {
+            int s = nearest[i * NEAREST + k];
+            double key = key(s, enclosure);
+            if (key >= bestCost) return best; // The rest are no closer to the enclosure, and the leg to them is not negative
+            double cost = table.horizontal(from, s) + key;
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = s;
+            }
+        }
+        if (truncated[i]) {
+            // Every kept storage was worth trying: the drone is far from all of them, so look at the rest too
+            for (int s : storagesByDiet.get(table.diet(enclosure))) {
+                double cost = table.horizontal(from, s) + key(s, enclosure);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = s;
+                }
+            }
+        }
+        return best;
+    }
+
+    private double key(int storage, int enclosure) {
+        return table.arrivalCost(storage) + table.horizontal(storage, enclosure);
+    }
+}
@@ -0,0 +1,137 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.models.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a portfolio of independent greedy constructions concurrently and keeps the
+ * best-scoring set of runs. All constructions share the zoo and the {@link LegCostTable};
+ * each keeps its own fed state.
+ * The fixed portfolio is the {@link ClusterPlanner}, one construction per deterministic
+ * {@link ConstructionStrategy} plus a few seeded randomized ones; with a time limit, randomized constructions with
+ * new seeds keep being started until the time is up.
+ */
+public class PortfolioSolver {
+
+    private static final int RANDOMIZED_STARTS = 4;
+
+    private final Zoo zoo;
+    private final LegCostTable legCosts;
+    private final int parallelism;
+
+    private List<List<Point>> bestRuns;
+    private double bestScore;
+    private String bestDescription;
+    private int constructions;
+
+    public PortfolioSolver(Zoo zoo) {
+        this(zoo, LegCostTable.build(zoo));
+    }
+
+    public PortfolioSolver(Zoo zoo, LegCostTable legCosts) {
+        this(zoo, legCosts, Runtime.getRuntime().availableProcessors());
+    }
+
+    public PortfolioSolver(Zoo zoo, LegCostTable legCosts, int parallelism) {
+        this.zoo = zoo;
+        this.legCosts = legCosts;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Solves the zoo with the whole portfolio.
+     *
+     * @param timeLimitMillis The wall-clock budget, or 0 to run the fixed portfolio to completion.
+     * @return The best set of runs found.
+     */
+    public List<List<Point>> solve(long timeLimitMillis) {
+        bestRuns = new ArrayList<>();
+        bestScore = -1;
+        bestDescription = "none";
+        constructions = 0;
+
+        boolean timed = timeLimitMillis > 0;
+        long deadline = timed ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis) : Long.MAX_VALUE;
+
+        List<ConstructionStrategy> fixed = new ArrayList<>();
+        for (ConstructionStrategy strategy : ConstructionStrategy.values()) {
+            if (strategy != ConstructionStrategy.RANDOMIZED) fixed.add(strategy);
+        }
+        int fixedCount = 1 + fixed.size() + RANDOMIZED_STARTS; // The planner is task 0
+        AtomicInteger nextTask = new AtomicInteger();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < parallelism; w++) {
+                workers.add(pool.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        int task = nextTask.getAndIncrement();
+                        if (!timed && task >= fixedCount) break;
+                        if (task == 0) {
+                            runPlanner();
+                            continue;
+                        }
+                        task--;
+                        ConstructionStrategy strategy = task < fixed.size() ? fixed.get(task) : ConstructionStrategy.RANDOMIZED;
+                        long seed = task - fixed.size() + 1;
+                        runConstruction(strategy, seed, deadline);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Portfolio construction failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Console.println("Portfolio ran " + constructions + " constructions; best " + bestDescription
+                + " with score " + String.format("%.2f", bestScore));
+        return bestRuns;
+    }
+
+    private void runConstruction(ConstructionStrategy strategy, long seed, long deadline) {
+        PathFinder finder = new PathFinder(zoo, legCosts, strategy, seed);
+        finder.setDeadline(deadline);
+        List<List<Point>> runs = finder.generatePaths();
+        String description = strategy == ConstructionStrategy.RANDOMIZED ? strategy + " (seed " + seed + ")" : strategy.toString();
+        record(runs, finder.getScore(), description);
+    }
+
+    // Single-threaded here: the other workers have the remaining cores
+    private void runPlanner() {
+        ClusterPlanner planner = new ClusterPlanner(legCosts, 1);
+        List<List<Point>> runs = planner.generatePaths();
+        record(runs, planner.getScore(), "cluster planner");
+    }
+
+    private synchronized void record(List<List<Point>> runs, double score, String description) {
+        constructions++;
+        if (score > bestScore) {
+            bestScore = score;
+            bestRuns = runs;
+            bestDescription = description;
+        }
+    }
+
+    public synchronized double getBestScore() {
+        return bestScore;
+    }
+
+    public synchronized String getBestDescription() {
+        return bestDescription;
+    }
+}
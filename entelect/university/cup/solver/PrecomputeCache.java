@@ -0,0 +1,82 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.file.SolutionCache;
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.Zoo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the leg cost tables and search lookups of the last few zoos solved, for a process
+ * that solves the same zoos again and again (the solver service). A zoo is recognised by
+ * its content hash ({@link SolutionCache#key}), so a zoo read again from its file or sent
+ * again as text finds the structures built the first time, including the detours and
+ * pickup tables filled in while it was solved. Both are read-only once built, so the
+ * solves of one zoo share them. Thread-safe; each structure is built once, by the first
+ * solve that needs it, while solves of other zoos go on.
+ */
+public class PrecomputeCache {
+
+    private final int capacity;
+    private final Map<String, Precomputed> entries = new LinkedHashMap<>(16, 0.75f, true); // Least recently used first
+
+    /**
+     * @param capacity The number of zoos kept; the least recently solved one goes first.
+     */
+    public PrecomputeCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * @return The structures of the zoo, built on first request.
+     */
+    public Precomputed get(Zoo zoo) {
+        String key = SolutionCache.key(zoo, "").toString();
+        synchronized (entries) {
+            Precomputed precomputed = entries.get(key);
+            if (precomputed != null) {
+                Metrics.PRECOMPUTE_REUSES.increment();
+                return precomputed;
+            }
+            precomputed = new Precomputed(zoo);
+            entries.put(key, precomputed);
+            Iterator<Precomputed> oldest = entries.values().iterator();
+            while (entries.size() > capacity) {
+                oldest.next();
+                oldest.remove();
+            }
+            return precomputed;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * The structures of one zoo.
+     */
+    public static class Precomputed {
+        private final Zoo zoo;
+        private LegCostTable table;
+        private SearchContext context;
+
+        private Precomputed(Zoo zoo) {
+            this.zoo = zoo;
+        }
+
+        public synchronized LegCostTable getTable() {
+            if (table == null) table = LegCostTable.build(zoo);
+            return table;
+        }
+
+        public synchronized SearchContext getContext() {
+            if (context == null) context = new SearchContext(getTable());
+            return context;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A drone run as the ordered {@link LegCostTable} location ids of its stops (storages
+ * and enclosures), without the depot at either end and without detour waypoints.
+ * Every enclosure must be preceded, somewhere earlier in the run, by a storage of its
+ * diet with no storage of another diet in between. The distance is cached and must be
+ * refreshed with {@link #recomputeDistance} after the stops change.
+ */
+public class RunPlan {
+
+    private int[] stops;
+    private int size;
+    private double distance;
+
+    public RunPlan() {
+        this.stops = new int[8];
+    }
+
+    public RunPlan(int[] stops, int size) {
+        this.stops = Arrays.copyOf(stops, Math.max(8, size));
+        this.size = size;
+    }
+
+    public RunPlan copy() {
+        RunPlan copy = new RunPlan(stops, size);
+        copy.distance = distance;
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The stop at a position, or the depot for positions before the first and after the last stop.
+     */
+    public int at(int position) {
+        return position < 0 || position >= size ? LegCostTable.DEPOT_ID : stops[position];
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(stops, size);
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public void insert(int position, int id) {
+        if (size == stops.length) {
+            stops = Arrays.copyOf(stops, size * 2);
+        }
+        System.arraycopy(stops, position, stops, position + 1, size - position);
+        stops[position] = id;
+        size++;
+    }
+
+    public int remove(int position) {
+        int id = stops[position];
+        System.arraycopy(stops, position + 1, stops, position, size - position - 1);
+        size--;
+        return id;
+    }
+
+    public void set(int position, int id) {
+        stops[position] = id;
+    }
+
+    /**
+     * Reverses the stops between two positions (inclusive).
+     */
+    public void reverse(int from, int to) {
+        while (from < to) {
+            int tmp = stops[from];
+            stops[from++] = stops[to];
+            stops[to--] = tmp;
+        }
+    }
+
+    /**
+     * Recalculates the cached distance from the leg costs.
+     *
+     * @return The run's total distance.
+     */
+    public double recomputeDistance(LegCostTable table) {
+        distance = DroneMathUtils.calculateTotalRunDistance(stops, size, table);
+        return distance;
+    }
+
+    /**
+     * Expands the run into the full point path written to the output, from depot to depot,
+     * including any detour waypoints around dead zones.
+     */
+    public List<Point> toPath(LegCostTable table) {
+        Metrics.PATH_ALLOCATIONS.increment();
+        List<Point> path = new ArrayList<>(size + 2);
+        int previous = LegCostTable.DEPOT_ID;
+        path.add(table.point(previous));
+        for (int i = 0; i <= size; i++) {
+            int next = at(i);
+            table.appendWaypoints(path, previous, next);
+            path.add(table.point(next));
+            previous = next;
+        }
+        return path;
+    }
+}
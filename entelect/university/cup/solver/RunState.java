@@ -0,0 +1,156 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the state of a single drone run while it is being built.
+ * Keeps the running distance, current location, held food and the cost of
+ * flying back to the depot, so a candidate "storage? -> enclosure -> depot"
+ * extension can be priced without rebuilding the path. Legs that cross a dead zone
+ * are flown around it using the detours of the {@link LegCostTable}.
+ * Locations are the dense ids of a {@link LegCostTable}; distances follow the same
+ * model as {@link DroneMathUtils#calculateTotalRunDistance}.
+ */
+public class RunState {
+
+    public static final int NO_STORAGE = -1;
+
+    private final LegCostTable table;
+    private final int batteryCapacity;
+    private final List<Point> path;
+
+    private double distance; // Everything flown so far, excluding the return leg
+    private int currentLocation;
+    private char currentFood;
+    private double returnCost; // Current location -> depot, including the final landing
+
+    public RunState(LegCostTable table) {
+        this.table = table;
+        this.batteryCapacity = table.getZoo().getBatteryCapacity();
+        this.path = new ArrayList<>();
+        this.path.add(table.point(LegCostTable.DEPOT_ID));
+        this.distance = table.depotVerticalCost(); // Takeoff from the depot
+        this.currentLocation = LegCostTable.DEPOT_ID;
+        this.currentFood = ' '; // No food initially
+        this.returnCost = table.depotVerticalCost(); // Already home: only the landing remains
+    }
+
+    public int getCurrentLocation() {
+        return currentLocation;
+    }
+
+    public char getCurrentFood() {
+        return currentFood;
+    }
+
+    /**
+     * @return The total distance of the run if the drone flew home now.
+     */
+    public double getTotalDistance() {
+        return distance + returnCost;
+    }
+
+    /**
+     * Any enclosure further than this (horizontally) from the current location, or whose
+     * detour from here back to the depot is longer, cannot be added to the run.
+     *
+     * @return The horizontal distance the battery still allows before landing at the depot.
+     */
+    public double getRemainingReach() {
+        return batteryCapacity - distance - table.arrivalCost(LegCostTable.DEPOT_ID);
+    }
+
+    /**
+     * @return true if no stop has been added to the run yet.
+     */
+    public boolean isEmpty() {
+        return path.size() == 1;
+    }
+
+    /**
+     * Prices visiting an (optional) food storage and then an enclosure, followed by
+     * the return to the depot. Only the new legs are looked at; a leg crossing a dead zone
+     * is priced as its detour.
+     *
+     * @param storage   The location id of the storage to pick food up from first,
+     *                  or {@link #NO_STORAGE} if the food is already held.
+     * @param enclosure The location id of the enclosure to feed.
+     * @return The total run distance after the extension, or positive infinity if a new leg
+     *         cannot be flown at all.
+     */
+    public double costToExtend(int storage, int enclosure) {
+        int from = currentLocation;
+        double total = distance;
+
+        if (storage != NO_STORAGE) {
+            total += table.flightDistance(from, storage);
+            total += table.arrivalCost(storage);
+            from = storage;
+        }
+
+        total += table.flightDistance(from, enclosure);
+        total += table.arrivalCost(enclosure);
+        total += table.flightDistance(enclosure, LegCostTable.DEPOT_ID);
+        total += table.arrivalCost(LegCostTable.DEPOT_ID);
+        return total;
+    }
+
+    /**
+     * Like {@link #costToExtend}, but with every new leg flown straight: never more than the
+     * real cost, and without routing detours, so it can rule candidates out cheaply.
+     */
+    public double lowerBoundToExtend(int storage, int enclosure) {
+        int from = currentLocation;
+        double total = distance;
+
+        if (storage != NO_STORAGE) {
+            total += table.horizontal(from, storage) + table.arrivalCost(storage);
+            from = storage;
+        }
+        return total + table.horizontal(from, enclosure) + table.arrivalCost(enclosure)
+                + table.horizontal(enclosure, LegCostTable.DEPOT_ID) + table.arrivalCost(LegCostTable.DEPOT_ID);
+    }
+
+    /**
+     * Commits an extension previously priced with {@link #costToExtend}.
+     *
+     * @param storage   The location id of the storage to pick food up from first,
+     *                  or {@link #NO_STORAGE} if the food is already held.
+     * @param enclosure The location id of the enclosure to feed.
+     */
+    public void extend(int storage, int enclosure) {
+        if (storage != NO_STORAGE) {
+            moveTo(storage);
+            currentFood = table.storage(storage).getDietType(); // Picked up food
+        }
+        moveTo(enclosure);
+    }
+
+    /**
+     * Finishes the run by flying back to the depot.
+     *
+     * @return The complete path, starting and ending at the depot.
+     */
+    public List<Point> close() {
+        Metrics.PATH_ALLOCATIONS.increment();
+        table.appendWaypoints(path, currentLocation, LegCostTable.DEPOT_ID);
+        path.add(table.point(LegCostTable.DEPOT_ID));
+        distance += returnCost;
+        currentLocation = LegCostTable.DEPOT_ID;
+        returnCost = 0;
+        return path;
+    }
+
+    private void moveTo(int next) {
+        distance += table.flightDistance(currentLocation, next);
+        distance += table.arrivalCost(next);
+        table.appendWaypoints(path, currentLocation, next);
+        path.add(table.point(next));
+        currentLocation = next;
+        returnCost = table.flightDistance(next, LegCostTable.DEPOT_ID) + table.arrivalCost(LegCostTable.DEPOT_ID);
+    }
+}
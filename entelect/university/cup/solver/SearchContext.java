@@ -0,0 +1,300 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.models.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only lookups shared by the improvement phases: the diet at every location,
+ * the storages of each diet, each enclosure's nearest enclosures and the enclosures
+ * in order of importance. Built once per zoo; safe to share between threads.
+ */
+public class SearchContext {
+
+    private static final int NEIGHBOURS = 10;
+
+    private final LegCostTable table;
+    private final int capacity;
+    private final int maxRuns;
+    private final int hubCount;
+    private final char[] dietOf; // By location id; ' ' for the depot
+    private final Map<Character, int[]> storagesByDiet;
+    private final int[][] neighbours; // By enclosure index: nearest enclosure location ids
+    private final int[] byImportance; // Enclosure location ids, most important first
+    private final int[] importanceRank; // By enclosure index: position in byImportance
+
+    public SearchContext(LegCostTable table) {
+        this.table = table;
+        Zoo zoo = table.getZoo();
+        this.capacity = zoo.getBatteryCapacity();
+        this.maxRuns = zoo.getBatterySwaps() + 1;
+        this.hubCount = table.getHubCount();
+
+        this.dietOf = new char[table.getLocationCount()];
+        Map<Character, List<Integer>> storages = new HashMap<>();
+        for (int id = 0; id < dietOf.length; id++) {
+            dietOf[id] = table.diet(id);
+            if (table.isStorage(id)) {
+                storages.computeIfAbsent(dietOf[id], d -> new ArrayList<>()).add(id);
+            }
+        }
+        this.storagesByDiet = new HashMap<>();
+        for (Map.Entry<Character, List<Integer>> entry : storages.entrySet()) {
+            storagesByDiet.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        this.neighbours = buildNeighbours();
+        this.byImportance = IntStream.range(hubCount, dietOf.length).boxed()
+                .sorted(Comparator.comparingDouble(table::importance).reversed())
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.importanceRank = ranks(byImportance);
+    }
+
+    // The lookups of a changed zoo, see derive()
+    private SearchContext(SearchContext previous, LegCostTable table) {
+        this.table = table;
+        this.capacity = previous.capacity;
+        this.maxRuns = previous.maxRuns;
+        this.hubCount = previous.hubCount;
+        this.storagesByDiet = previous.storagesByDiet;
+        int oldCount = previous.dietOf.length;
+        this.dietOf = Arrays.copyOf(previous.dietOf, table.getLocationCount());
+        for (int id = oldCount; id < dietOf.length; id++) {
+            dietOf[id] = table.diet(id);
+        }
+
+        // Added enclosures get their own lists and join the lists of the enclosures before them they are nearer to
+        this.neighbours = Arrays.copyOf(previous.neighbours, getEnclosureCount());
+        for (int id = oldCount; id < dietOf.length; id++) {
+            neighbours[id - hubCount] = nearestTo(id);
+            for (int other = hubCount; other < id; other++) {
+                neighbours[other - hubCount] = withNeighbour(other, neighbours[other - hubCount], id);
+            }
+        }
+
+        // Enclosures with a new importance, and the added ones, are merged back into the old order
+        int[] moved = IntStream.range(hubCount, dietOf.length)
+                .filter(id -> id >= oldCount || table.importance(id) != previous.table.importance(id))
+                .toArray();
+        if (moved.length == 0) {
+            this.byImportance = previous.byImportance;
+            this.importanceRank = previous.importanceRank;
+            return;
+        }
+        boolean[] isMoved = new boolean[getEnclosureCount()];
+        for (int id : moved) {
+            isMoved[id - hubCount] = true;
+        }
+        moved = Arrays.stream(moved).boxed()
+                .sorted((a, b) -> ranksBefore(a, b) ? -1 : ranksBefore(b, a) ? 1 : 0)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.byImportance = new int[getEnclosureCount()];
+        int m = 0, out = 0;
+        for (int id : previous.byImportance) {
+            if (isMoved[id - hubCount]) continue;
+            while (m < moved.length && ranksBefore(moved[m], id)) {
+                byImportance[out++] = moved[m++];
+            }
+            byImportance[out++] = id;
+        }
+        while (m < moved.length) {
+            byImportance[out++] = moved[m++];
+        }
+        this.importanceRank = ranks(byImportance);
+    }
+
+    /**
+     * Builds the lookups of a changed version of the zoo from these, for a table made by
+     * {@link LegCostTable#derive}: only the added enclosures and those near them get new
+     * neighbours, and enclosures with a new importance are moved in the importance order.
+     * These lookups are left as they were.
+     *
+     * @param changed The table of the changed zoo.
+     * @return The lookups of the changed zoo.
+     */
+    public SearchContext derive(LegCostTable changed) {
+        return new SearchContext(this, changed);
+    }
+
+    private int[] ranks(int[] order) {
+        int[] rank = new int[order.length];
+        for (int r = 0; r < order.length; r++) {
+            rank[order[r] - hubCount] = r;
+        }
+        return rank;
+    }
+
+    // Most important first, as the stable sort of the constructor orders equal importances by id
+    private boolean ranksBefore(int a, int b) {
+        double ia = table.importance(a), ib = table.importance(b);
+        return ia > ib || (ia == ib && a < b);
+    }
+
+    public LegCostTable getTable() {
+        return table;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxRuns() {
+        return maxRuns;
+    }
+
+    public int getHubCount() {
+        return hubCount;
+    }
+
+    public int getEnclosureCount() {
+        return dietOf.length - hubCount;
+    }
+
+    /**
+     * @return The diet of a storage or enclosure, which is also the food carried after leaving it ("none" at the depot).
+     */
+    public char dietOf(int id) {
+        return dietOf[id];
+    }
+
+    /**
+     * @return The storage location ids of a diet, or null if the zoo has none.
+     */
+    public int[] storagesOf(char diet) {
+        return storagesByDiet.get(diet);
+    }
+
+    /**
+     * @return The location ids of the enclosures nearest to an enclosure, nearest first.
+     */
+    public int[] neighboursOf(int enclosureId) {
+        return neighbours[enclosureId - hubCount];
+    }
+
+    /**
+     * @return All enclosure location ids, most important first. Not to be modified.
+     */
+    public int[] byImportance() {
+        return byImportance;
+    }
+
+    /**
+     * @return The position of an enclosure in {@link #byImportance()}.
+     */
+    public int importanceRank(int enclosureId) {
+        return importanceRank[enclosureId - hubCount];
+    }
+
+    public double importanceOf(int enclosureId) {
+        return table.importance(enclosureId);
+    }
+
+    public boolean isStorage(int id) {
+        return table.isStorage(id);
+    }
+
+    // Flying from u to v and arriving there (landing and taking off again, or the final depot landing)
+    public double leg(int u, int v) {
+        return table.flightDistance(u, v) + table.arrivalCost(v);
+    }
+
+    public double flight(int u, int v) {
+        return table.flightDistance(u, v);
+    }
+
+    // The nearest enclosures to an enclosure among those before it, by looking at every one; for the few added by a change
+    private int[] nearestTo(int id) {
+        int wanted = Math.min(NEIGHBOURS, getEnclosureCount() - 1);
+        int[] nearest = new int[0];
+        for (int other = hubCount; other < id; other++) {
+            if (nearest.length < wanted) {
+                nearest = Arrays.copyOf(nearest, nearest.length + 1);
+                nearest[nearest.length - 1] = other;
+                sortLast(id, nearest);
+            } else if (wanted > 0 && table.horizontal(id, other) < table.horizontal(id, nearest[wanted - 1])) {
+                nearest[wanted - 1] = other;
+                sortLast(id, nearest);
+            }
+        }
+        return nearest;
+    }
+
+    // A neighbour list with a new enclosure in it, if it is among the nearest; the list itself is not modified
+    private int[] withNeighbour(int id, int[] list, int added) {
+        double distance = table.horizontal(id, added);
+        if (list.length == NEIGHBOURS && distance >= table.horizontal(id, list[list.length - 1])) {
+            return list;
+        }
+        int[] result = Arrays.copyOf(list, Math.min(NEIGHBOURS, list.length + 1));
+        result[result.length - 1] = added;
+        sortLast(id, result);
+        return result;
+    }
+
+    // Moves the last entry of a list sorted by distance from an enclosure into place
+    private void sortLast(int id, int[] list) {
+        int k = list.length - 1;
+        int last = list[k];
+        double distance = table.horizontal(id, last);
+        while (k > 0 && table.horizontal(id, list[k - 1]) > distance) {
+            list[k] = list[k - 1];
+            k--;
+        }
+        list[k] = last;
+    }
+
+    private int[][] buildNeighbours() {
+        int enclosureCount = getEnclosureCount();
+        int[][] result = new int[enclosureCount][];
+        if (enclosureCount == 0) return result;
+
+        EnclosureIndex index = new EnclosureIndex(table);
+        Point dimensions = table.getZoo().getDimensions();
+        double spacing = Math.sqrt((double) dimensions.getX() * dimensions.getY() / enclosureCount);
+        double maxRadius = Math.hypot(dimensions.getX(), dimensions.getY());
+        int wanted = Math.min(NEIGHBOURS, enclosureCount - 1);
+
+        int[] found = new int[64];
+        double[] distances = new double[64];
+        for (int id = hubCount; id < hubCount + enclosureCount; id++) {
+            double radius = Math.max(1.0, 2 * spacing);
+            int count;
+            while (true) {
+                count = 0;
+                EnclosureIndex.Cursor cursor = index.query(id, radius, EnclosureIndex.ANY_DIET);
+                for (int other = cursor.next(); other != -1; other = cursor.next()) {
+                    if (other == id) continue;
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                        distances = Arrays.copyOf(distances, count * 2);
+                    }
+                    found[count] = other;
+                    distances[count] = table.horizontal(id, other);
+                    count++;
+                }
+                if (count >= wanted || radius >= maxRadius) break;
+                radius *= 2;
+            }
+            // Keep the nearest ones (partial selection sort; the lists are short)
+            int keep = Math.min(wanted, count);
+            for (int a = 0; a < keep; a++) {
+                int nearest = a;
+                for (int b = a + 1; b < count; b++) {
+                    if (distances[b] < distances[nearest]) nearest = b;
+                }
+                double d = distances[a]; distances[a] = distances[nearest]; distances[nearest] = d;
+                int f = found[a]; found[a] = found[nearest]; found[nearest] = f;
+            }
+            result[id - hubCount] = Arrays.copyOf(found, keep);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,195 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.models.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A complete answer for a zoo as a list of {@link RunPlan}s, together with the
+ * enclosures they feed and the total importance delivered. This is the working form
+ * the improvement phases operate on; {@link #toPaths()} turns it into the point paths
+ * written to the output file.
+ */
+public class Solution {
+
+    private final LegCostTable table;
+    private final List<RunPlan> runs;
+    private final FedSet fed;
+    private double score;
+
+    public Solution(LegCostTable table) {
+        this.table = table;
+        this.runs = new ArrayList<>();
+        this.fed = new FedSet(table.getLocationCount() - table.getHubCount());
+    }
+
+    private Solution(Solution other) {
+        this.table = other.table;
+        this.runs = new ArrayList<>(other.runs.size());
+        for (RunPlan run : other.runs) {
+            runs.add(run.copy());
+        }
+        this.fed = other.fed.copy();
+        this.score = other.score;
+    }
+
+    public Solution copy() {
+        return new Solution(this);
+    }
+
+    /**
+     * Carries the runs over to a changed version of the zoo, whose table was made by
+     * {@link LegCostTable#derive} and so gives every location the same id. The score is
+     * counted again with the new importances; run distances are copied as they are, so runs
+     * with a leg the change affects must have theirs recomputed.
+     *
+     * @param changed The table of the changed zoo.
+     * @return The same runs as a solution of the changed zoo.
+     */
+    public Solution rebase(LegCostTable changed) {
+        Solution result = new Solution(changed);
+        for (RunPlan run : runs) {
+            result.runs.add(run.copy());
+        }
+        int hubCount = table.getHubCount();
+        for (int id = hubCount; id < table.getLocationCount(); id++) {
+            if (isFed(id)) result.markFed(id);
+        }
+        return result;
+    }
+
+    public LegCostTable getTable() {
+        return table;
+    }
+
+    public List<RunPlan> getRuns() {
+        return runs;
+    }
+
+    public FedSet getFed() {
+        return fed;
+    }
+
+    /**
+     * @return The total importance of the fed enclosures.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * @return The summed distance of all runs (from their cached distances).
+     */
+    public double getTotalDistance() {
+        double total = 0;
+        for (RunPlan run : runs) {
+            total += run.getDistance();
+        }
+        return total;
+    }
+
+    /**
+     * Records an enclosure (by location id) as fed by this solution.
+     */
+    public void markFed(int enclosureId) {
+        if (fed.markFed(enclosureId - table.getHubCount())) {
+            score += table.importance(enclosureId);
+        }
+    }
+
+    /**
+     * Records an enclosure (by location id) as no longer fed by this solution.
+     */
+    public void unmarkFed(int enclosureId) {
+        if (fed.unmarkFed(enclosureId - table.getHubCount())) {
+            score -= table.importance(enclosureId);
+        }
+    }
+
+    public boolean isFed(int enclosureId) {
+        return fed.isFed(enclosureId - table.getHubCount());
+    }
+
+    /**
+     * Drops runs without stops.
+     */
+    public void removeEmptyRuns() {
+        runs.removeIf(RunPlan::isEmpty);
+    }
+
+    /**
+     * @return The runs as point paths (depot to depot, detour waypoints included).
+     */
+    public List<List<Point>> toPaths() {
+        List<List<Point>> paths = new ArrayList<>(runs.size());
+        for (RunPlan run : runs) {
+            if (!run.isEmpty()) {
+                paths.add(run.toPath(table));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Reads point paths (as produced by the solvers or read back from an output file) into
+     * run plans. Walking each run, a point counts as a feeding stop if an enclosure there
+     * needs the food currently carried and has not been fed yet, as a pickup if a storage is
+     * there, and otherwise as a waypoint. Only the X and Y of the points are used.
+     *
+     * @param table The leg costs of the zoo the paths belong to.
+     * @param paths The runs, each starting and ending at the depot.
+     * @return The decoded solution, with run distances and score computed.
+     */
+    public static Solution fromPaths(LegCostTable table, List<List<Point>> paths) {
+        Map<Long, int[]> locationsAt = new HashMap<>();
+        for (int id = 1; id < table.getLocationCount(); id++) {
+            long key = key(table.x(id), table.y(id));
+            int[] ids = locationsAt.get(key);
+            ids = ids == null ? new int[1] : Arrays.copyOf(ids, ids.length + 1);
+            ids[ids.length - 1] = id;
+            locationsAt.put(key, ids);
+        }
+
+        Solution solution = new Solution(table);
+        for (List<Point> path : paths) {
+            RunPlan run = new RunPlan();
+            char food = ' ';
+            for (int i = 1; i < path.size() - 1; i++) {
+                Point p = path.get(i);
+                int[] ids = locationsAt.get(key(p.getX(), p.getY()));
+                if (ids == null) continue; // Waypoint
+                int stop = -1;
+                for (int id : ids) {
+                    if (table.isEnclosure(id) && !solution.isFed(id) && table.diet(id) == food) {
+                        stop = id;
+                        solution.markFed(id);
+                        break;
+                    }
+                }
+                if (stop == -1) {
+                    for (int id : ids) {
+                        if (table.isStorage(id)) {
+                            stop = id;
+                            food = table.diet(id);
+                            break;
+                        }
+                    }
+                }
+                if (stop != -1) {
+                    run.insert(run.size(), stop);
+                }
+            }
+            run.recomputeDistance(table);
+            solution.runs.add(run);
+        }
+        return solution;
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+}
@@ -0,0 +1,16 @@
+package entelect.university.cup.solver;
+
+/**
+ * Told about each better solution a solve finds along the way, so it can be saved before
+ * the solve is over. Called from the search threads: implementations must return quickly
+ * and leave any real work (such as writing a file) to a thread of their own.
+ */
+public interface SolutionListener {
+
+    /**
+     * @param solution A copy of the best solution so far, owned by the listener from now on.
+     *                 Solutions no better than one reported before may still arrive (several
+     *                 chains report independently) and can simply be ignored.
+     */
+    void improved(Solution solution);
+}
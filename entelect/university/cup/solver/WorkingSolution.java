@@ -0,0 +1,436 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link Solution} being edited in place by an improvement phase. Keeps, for every
+ * fed enclosure, the run and position it is in, and offers the priced primitive edits
+ * the phases share: taking an enclosure out of its run and inserting one at the
+ * cheapest feasible gap. The enclosures not counted as fed are kept in an
+ * {@link ImportanceQueue}, so phases can walk them most important first without a scan.
+ * Edits can be journaled and rolled back, so a rejected move costs only as much as the
+ * runs it touched.
+ */
+public class WorkingSolution {
+
+    private static final int NOT_FED = -1;
+
+    private final SearchContext context;
+    private final LegCostTable table;
+    private final int hubCount;
+    private final Solution solution;
+    private final List<RunPlan> runs;
+    private final int[] runOf; // By enclosure index, NOT_FED when not fed
+    private final int[] positionOf; // By enclosure index
+    private final ImportanceQueue unfed;
+    private boolean[] changed; // By run: modified since last marked settled
+
+    // Journal of the edits since beginJournal()
+    private boolean journaling;
+    private RunPlan[] savedRuns = new RunPlan[8];
+    private int[] touched = new int[8];
+    private int touchedCount;
+    private int savedRunCount;
+    private int[] fedToggles = new int[16];
+    private int fedToggleCount;
+
+    /**
+     * @param context The lookups of the zoo the solution belongs to.
+     * @param solution The solution to edit; it is changed in place.
+     */
+    public WorkingSolution(SearchContext context, Solution solution) {
+        this.context = context;
+        this.table = context.getTable();
+        this.hubCount = context.getHubCount();
+        this.solution = solution;
+        this.runs = solution.getRuns();
+        this.runOf = new int[context.getEnclosureCount()];
+        this.positionOf = new int[runOf.length];
+        Arrays.fill(runOf, NOT_FED);
+        this.unfed = new ImportanceQueue(context);
+        for (int e : context.byImportance()) {
+            if (!solution.isFed(e)) unfed.add(e);
+        }
+        this.changed = new boolean[Math.max(runs.size(), context.getMaxRuns())];
+        for (RunPlan run : runs) {
+            dropEmptyBlocks(run);
+            run.recomputeDistance(table);
+        }
+        for (int r = 0; r < runs.size(); r++) {
+            reindex(r);
+        }
+    }
+
+    public Solution getSolution() {
+        return solution;
+    }
+
+    public List<RunPlan> getRuns() {
+        return runs;
+    }
+
+    public double getScore() {
+        return solution.getScore();
+    }
+
+    /**
+     * @return The enclosures not counted as fed, kept up to date by every edit. Not to be modified.
+     */
+    public ImportanceQueue getUnfed() {
+        return unfed;
+    }
+
+    /**
+     * @return The run an enclosure (by location id) is in, or -1 if it is not fed.
+     */
+    public int runOf(int enclosureId) {
+        return runOf[enclosureId - hubCount];
+    }
+
+    public int positionOf(int enclosureId) {
+        return positionOf[enclosureId - hubCount];
+    }
+
+    public boolean isFed(int enclosureId) {
+        return runOf[enclosureId - hubCount] != NOT_FED;
+    }
+
+    /**
+     * @return true if the run was modified since it was last marked settled.
+     */
+    public boolean isChanged(int r) {
+        return changed[r];
+    }
+
+    public void markSettled(int r) {
+        changed[r] = false;
+    }
+
+    // --- Removal ---
+
+    /**
+     * @return The distance change of taking the enclosure at a position out of its run,
+     *         together with its storage pickup if it is the only enclosure fed from it.
+     */
+    public double removalDelta(RunPlan run, int i) {
+        int x = run.at(i), prev = run.at(i - 1), next = run.at(i + 1);
+        if (leavesEmptyBlock(run, i)) {
+            int before = run.at(i - 2);
+            return context.leg(before, next) - context.leg(before, prev) - context.leg(prev, x) - context.leg(x, next);
+        }
+        return context.leg(prev, next) - context.leg(prev, x) - context.leg(x, next);
+    }
+
+    private boolean leavesEmptyBlock(RunPlan run, int i) {
+        int prev = run.at(i - 1), next = run.at(i + 1);
+        return context.isStorage(prev) && (next == LegCostTable.DEPOT_ID || context.isStorage(next));
+    }
+
+    /**
+     * Takes the enclosure at a position out of its run (and its storage, if nothing else is fed from it).
+     * The enclosure stays counted as fed; see {@link #unfeed} to drop it from the solution.
+     */
+    public void removeEnclosure(int r, int i) {
+        touch(r);
+        RunPlan run = runs.get(r);
+        boolean dropStorage = leavesEmptyBlock(run, i);
+        int x = run.remove(i);
+        if (dropStorage) {
+            run.remove(i - 1);
+        }
+        runOf[x - hubCount] = NOT_FED;
+        run.recomputeDistance(table);
+        reindex(r);
+    }
+
+    /**
+     * Takes a fed enclosure out of its run and out of the solution's score.
+     */
+    public void unfeed(int enclosureId) {
+        int r = runOf(enclosureId);
+        if (r == NOT_FED) return;
+        removeEnclosure(r, positionOf(enclosureId));
+        setFed(enclosureId, false);
+    }
+
+    // --- Insertion ---
+
+    /**
+     * A priced way of putting an enclosure into a run: at a gap, optionally after a new storage pickup.
+     * A run index equal to the number of runs stands for a brand new run.
+     */
+    public static class Insertion {
+        final int run;
+        final int gap;
+        final int storage;
+        final double delta;
+
+        Insertion(int run, int gap, int storage, double delta) {
+            this.run = run;
+            this.gap = gap;
+            this.storage = storage;
+            this.delta = delta;
+        }
+
+        public int getRun() {
+            return run;
+        }
+
+        /**
+         * @return The increase in the run's distance (the whole distance for a new run).
+         */
+        public double getDelta() {
+            return delta;
+        }
+    }
+
+    public static Insertion better(Insertion a, Insertion b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return b.delta < a.delta ? b : a;
+    }
+
+    /**
+     * Finds the cheapest feasible place for an unfed enclosure: next to its nearest fed
+     * enclosures, at the end of any run, or in a new run while battery swaps remain.
+     *
+     * @return The insertion, or null if the enclosure fits nowhere.
+     */
+    public Insertion bestInsertion(int e) {
+        Insertion best = null;
+        int evaluated = runs.size();
+        for (int y : context.neighboursOf(e)) {
+            int r = runOf(y);
+            if (r == NOT_FED) continue;
+            int k = positionOf(y);
+            best = better(best, bestInsertionAt(r, k, e, cutoff(best)));
+            best = better(best, bestInsertionAt(r, k + 1, e, cutoff(best)));
+            evaluated += 2;
+        }
+        for (int r = 0; r < runs.size(); r++) {
+            best = better(best, bestInsertionAt(r, runs.get(r).size(), e, cutoff(best)));
+        }
+        Metrics.CANDIDATES_EVALUATED.add(evaluated);
+        if (runs.size() < context.getMaxRuns()) {
+            best = better(best, newRun(e));
+        }
+        return best;
+    }
+
+    /**
+     * @return The cheapest feasible way to insert enclosure e into run r just before position q, or null.
+     */
+    public Insertion bestInsertionAt(int r, int q, int e) {
+        Metrics.CANDIDATES_EVALUATED.increment();
+        return bestInsertionAt(r, q, e, Double.POSITIVE_INFINITY);
+    }
+
+    private static double cutoff(Insertion best) {
+        return best == null ? Double.POSITIVE_INFINITY : best.delta;
+    }
+
+    // Gives up early (null) when even the straight legs cost at least the cutoff
+    private Insertion bestInsertionAt(int r, int q, int e, double cutoff) {
+        RunPlan run = runs.get(r);
+        int capacity = context.getCapacity();
+        // Landing at the enclosure alone must fit, which rules out full runs before any leg is looked at
+        if (q < 0 || q > run.size() || run.getDistance() + table.arrivalCost(e) > capacity) return null;
+        int u = run.at(q - 1), v = run.at(q);
+        char diet = context.dietOf(e);
+        double base = context.leg(u, v);
+        // Straight-line lower bound on any insertion here, to skip runs without the battery to spare
+        double lowerBound = table.horizontal(u, e) + table.horizontal(e, v) + table.arrivalCost(e) + table.arrivalCost(v) - base;
+        if (run.getDistance() + lowerBound > capacity || lowerBound >= cutoff) return null;
+        Insertion best = null;
+
+        if (context.dietOf(u) == diet) {
+            double delta = context.leg(u, e) + context.leg(e, v) - base;
+            if (run.getDistance() + delta <= capacity) {
+                best = new Insertion(r, q, RunState.NO_STORAGE, delta);
+            }
+        }
+        // A new pickup must not take food away from an enclosure that follows
+        if (v == LegCostTable.DEPOT_ID || context.isStorage(v) || context.dietOf(v) == diet) {
+            int[] storages = context.storagesOf(diet);
+            if (storages != null) {
+                double tail = context.leg(e, v) - base;
+                for (int s : storages) {
+                    // Detours are never shorter than the straight legs, so most storages are ruled out unrouted
+                    double bound = table.horizontal(u, s) + table.arrivalCost(s) + table.horizontal(s, e) + table.arrivalCost(e) + tail;
+                    if (run.getDistance() + bound > capacity || (best != null && bound >= best.delta)) continue;
+                    double delta = context.leg(u, s) + context.leg(s, e) + tail;
+                    if (run.getDistance() + delta <= capacity && (best == null || delta < best.delta)) {
+                        best = new Insertion(r, q, s, delta);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private Insertion newRun(int e) {
+        int[] storages = context.storagesOf(context.dietOf(e));
+        if (storages == null) return null;
+        Insertion best = null;
+        for (int s : storages) {
+            double distance = table.depotVerticalCost() + context.leg(LegCostTable.DEPOT_ID, s)
+                    + context.leg(s, e) + context.leg(e, LegCostTable.DEPOT_ID);
+            if (distance <= context.getCapacity() && (best == null || distance < best.delta)) {
+                best = new Insertion(runs.size(), 0, s, distance);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Applies an insertion and counts the enclosure as fed.
+     */
+    public void apply(Insertion insertion, int e) {
+        if (insertion.run == runs.size()) {
+            runs.add(new RunPlan());
+            if (runs.size() > changed.length) {
+                changed = Arrays.copyOf(changed, runs.size() * 2);
+            }
+        }
+        touch(insertion.run);
+        RunPlan run = runs.get(insertion.run);
+        int gap = insertion.gap;
+        if (insertion.storage != RunState.NO_STORAGE) {
+            run.insert(gap++, insertion.storage);
+        }
+        run.insert(gap, e);
+        run.recomputeDistance(table);
+        setFed(e, true);
+        reindex(insertion.run);
+    }
+
+    // --- Journal ---
+
+    /**
+     * Starts recording edits so they can be undone with {@link #rollback()}.
+     * Only edits made through this class are recorded.
+     */
+    public void beginJournal() {
+        journaling = true;
+        touchedCount = 0;
+        fedToggleCount = 0;
+        savedRunCount = runs.size();
+    }
+
+    /**
+     * Keeps the edits since {@link #beginJournal()}.
+     */
+    public void commit() {
+        journaling = false;
+        for (int t = 0; t < touchedCount; t++) {
+            savedRuns[t] = null;
+        }
+        touchedCount = 0;
+        fedToggleCount = 0;
+    }
+
+    /**
+     * Undoes the edits since {@link #beginJournal()}.
+     */
+    public void rollback() {
+        journaling = false;
+        for (int t = 0; t < touchedCount; t++) {
+            unindex(touched[t]);
+        }
+        for (int r = runs.size() - 1; r >= savedRunCount; r--) {
+            unindex(r);
+            runs.remove(r);
+        }
+        for (int t = 0; t < touchedCount; t++) {
+            int r = touched[t];
+            if (r < savedRunCount) {
+                runs.set(r, savedRuns[t]);
+                reindex(r);
+            }
+            savedRuns[t] = null;
+        }
+        for (int f = fedToggleCount - 1; f >= 0; f--) {
+            int e = fedToggles[f];
+            if (solution.isFed(e)) {
+                solution.unmarkFed(e);
+                unfed.add(e);
+            } else {
+                solution.markFed(e);
+                unfed.remove(e);
+            }
+        }
+        touchedCount = 0;
+        fedToggleCount = 0;
+    }
+
+    private void touch(int r) {
+        if (!journaling || r >= savedRunCount) return;
+        for (int t = 0; t < touchedCount; t++) {
+            if (touched[t] == r) return;
+        }
+        if (touchedCount == touched.length) {
+            touched = Arrays.copyOf(touched, touchedCount * 2);
+            savedRuns = Arrays.copyOf(savedRuns, touchedCount * 2);
+        }
+        touched[touchedCount] = r;
+        savedRuns[touchedCount] = runs.get(r).copy();
+        touchedCount++;
+    }
+
+    private void setFed(int e, boolean fed) {
+        if (solution.isFed(e) == fed) return;
+        if (fed) {
+            solution.markFed(e);
+            unfed.remove(e);
+        } else {
+            solution.unmarkFed(e);
+            unfed.add(e);
+        }
+        if (journaling) {
+            if (fedToggleCount == fedToggles.length) {
+                fedToggles = Arrays.copyOf(fedToggles, fedToggleCount * 2);
+            }
+            fedToggles[fedToggleCount++] = e;
+        }
+    }
+
+    // --- Bookkeeping ---
+
+    /**
+     * Refreshes the positions of the enclosures of a run after it was edited directly.
+     */
+    public void reindex(int r) {
+        RunPlan run = runs.get(r);
+        changed[r] = true;
+        for (int i = 0; i < run.size(); i++) {
+            int id = run.at(i);
+            if (id >= hubCount) {
+                runOf[id - hubCount] = r;
+                positionOf[id - hubCount] = i;
+            }
+        }
+    }
+
+    private void unindex(int r) {
+        RunPlan run = runs.get(r);
+        for (int i = 0; i < run.size(); i++) {
+            int id = run.at(i);
+            if (id >= hubCount && runOf[id - hubCount] == r) {
+                runOf[id - hubCount] = NOT_FED;
+            }
+        }
+    }
+
+    // Storages followed by another storage or the depot feed nobody and only cost distance
+    private void dropEmptyBlocks(RunPlan run) {
+        for (int i = run.size() - 1; i >= 0; i--) {
+            int next = run.at(i + 1);
+            if (context.isStorage(run.at(i)) && (next == LegCostTable.DEPOT_ID || context.isStorage(next))) {
+                run.remove(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.file.SolutionCache;
+import entelect.university.cup.metrics.Console;
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.Point;
+import entelect.university.cup.models.Zoo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The full solving pipeline for one zoo: the exact solver when the zoo is small enough,
+ * otherwise a construction (the cluster planner, the greedy or the portfolio) followed by
+ * the optional local search and annealing phases. With a {@link SolutionCache} set, a zoo
+ * solved before with the same settings is answered from the cache, and otherwise a stored
+ * solution of a similar zoo (same map, other enclosures) competes with the construction as
+ * the start of the improvement phases. With a {@link PrecomputeCache} set, a zoo solved
+ * before in the process reuses its leg cost table and search lookups. Configured once,
+ * then {@link #solve} can be called for any number of zoos, also from several threads at
+ * once (a {@link SolutionListener} is then shared by all of them).
+ */
+public class ZooSolver {
+
+    private boolean portfolio;
+    private boolean greedy;
+    private boolean improve;
+    private boolean anneal;
+    private long seed = 1;
+    private long exactMemoryBytes = ExactSolver.defaultMemoryBudget();
+    private long timeLimitMillis;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private SolutionListener listener;
+    private SolutionCache cache;
+    private PrecomputeCache precomputed;
+
+    /**
+     * Runs several construction heuristics in parallel and keeps the best.
+     */
+    public void setPortfolio(boolean portfolio) {
+        this.portfolio = portfolio;
+    }
+
+    /**
+     * Builds the runs one after another with the greedy {@link PathFinder} instead of
+     * planning them with the {@link ClusterPlanner}.
+     */
+    public void setGreedy(boolean greedy) {
+        this.greedy = greedy;
+    }
+
+    /**
+     * Improves the constructed runs with local search.
+     */
+    public void setImprove(boolean improve) {
+        this.improve = improve;
+    }
+
+    /**
+     * Anneals after the local search (and so implies it).
+     */
+    public void setAnneal(boolean anneal) {
+        this.anneal = anneal;
+        if (anneal) this.improve = true; // Annealing starts from the local optimum
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param exactMemoryBytes Memory the exact solver may use on small zoos; 0 disables it.
+     */
+    public void setExactMemory(long exactMemoryBytes) {
+        this.exactMemoryBytes = exactMemoryBytes;
+    }
+
+    /**
+     * @param timeLimitMillis Wall-clock budget for the portfolio and improvement phases; 0 for none.
+     *                        Without improvement phases a budget selects the portfolio.
+     */
+    public void setTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * @param parallelism Threads each solve may use for the portfolio and annealing chains.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @param listener Told about each better solution as soon as it is found: the constructed
+     *                 runs, the improving passes of the local search and the best solutions of
+     *                 the annealing chains, then the final result. Null for none.
+     */
+    public void setListener(SolutionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param cache Where solutions are looked up before solving and stored after; null for none.
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @param precomputed Where the leg cost tables and search lookups of zoos solved before are kept; null for none.
+     */
+    public void setPrecomputeCache(PrecomputeCache precomputed) {
+        this.precomputed = precomputed;
+    }
+
+    /**
+     * Solves a zoo.
+     *
+     * @param zoo The zoo.
+     * @return The runs as point paths, and their score.
+     */
+    public Result solve(Zoo zoo) {
+        return solve(zoo, timeLimitMillis);
+    }
+
+    /**
+     * Solves a zoo with its own budget instead of the configured one (e.g. one per request
+     * of the solver service), leaving the configuration as it is.
+     *
+     * @param zoo             The zoo.
+     * @param timeLimitMillis Wall-clock budget for the portfolio and improvement phases; 0 for none.
+     * @return The runs as point paths, and their score.
+     */
+    public Result solve(Zoo zoo, long timeLimitMillis) {
+        if (cache == null) {
+            return solve(zoo, timeLimitMillis, null);
+        }
+        long startMillis = System.currentTimeMillis();
+        SolutionCache.Key key = SolutionCache.key(zoo, configuration(timeLimitMillis));
+        SolutionCache.Entry hit = cache.get(key);
+        if (hit != null) {
+            Metrics.CACHE_HITS.increment();
+            Console.println("Solution cache hit: " + key);
+            return report(new Result(zoo, hit.getPaths(), hit.getScore(), System.currentTimeMillis() - startMillis));
+        }
+        Result result = solve(zoo, timeLimitMillis, key);
+        try {
+            cache.put(key, result.getPaths(), result.getScore());
+        } catch (IOException e) {
+            System.err.println("Error storing solution in cache " + cache.getDirectory() + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    // Every setting that changes the result of a solve
+    private String configuration(long timeLimitMillis) {
+        return String.format(Locale.ROOT, "portfolio=%b greedy=%b improve=%b anneal=%b seed=%d exact=%d time=%d parallelism=%d",
+                portfolio, greedy, improve, anneal, seed, exactMemoryBytes, timeLimitMillis, parallelism);
+    }
+
+    private Result solve(Zoo zoo, long timeLimitMillis, SolutionCache.Key cacheKey) {
+        long startMillis = System.currentTimeMillis();
+        long phaseStart = Metrics.PRECOMPUTE.start();
+        PrecomputeCache.Precomputed reused = precomputed != null ? precomputed.get(zoo) : null;
+        LegCostTable legCosts = reused != null ? reused.getTable() : LegCostTable.build(zoo);
+        Metrics.PRECOMPUTE.stop(phaseStart);
+        boolean improve = this.improve;
+        boolean anneal = this.anneal;
+        List<List<Point>> dronePaths;
+        phaseStart = Metrics.CONSTRUCT.start();
+        if (exactMemoryBytes > 0 && ExactSolver.canSolve(zoo, exactMemoryBytes)) {
+            // Small enough to solve optimally; nothing left for the improvement phases unless the deadline cut it short
+            ExactSolver exactSolver = new ExactSolver(legCosts);
+            exactSolver.setTimeLimit(timeLimitMillis);
+            dronePaths = exactSolver.generatePaths();
+            if (!exactSolver.isOptimal()) {
+                // Only the sets reached by the deadline were tried; the planner takes milliseconds on a zoo this small
+                List<List<Point>> planned = new ClusterPlanner(legCosts, parallelism).generatePaths();
+                if (Solution.fromPaths(legCosts, planned).getScore() > Solution.fromPaths(legCosts, dronePaths).getScore()) {
+                    dronePaths = planned;
+                }
+            }
+            improve = improve && !exactSolver.isOptimal();
+            anneal = anneal && !exactSolver.isOptimal();
+        } else if (portfolio || (timeLimitMillis > 0 && !improve)) {
+            // With improvement phases to follow, the portfolio gets a half or a quarter of the budget
+            long portfolioMillis = improve ? timeLimitMillis / (anneal ? 4 : 2) : timeLimitMillis;
+            PortfolioSolver portfolioSolver = new PortfolioSolver(zoo, legCosts, parallelism);
+            dronePaths = portfolioSolver.solve(portfolioMillis); // Runs the constructions in parallel
+        } else if (greedy) {
+            PathFinder pathFinder = new PathFinder(zoo, legCosts);
+            dronePaths = pathFinder.generatePaths(); // This will execute the algorithm
+        } else {
+            dronePaths = new ClusterPlanner(legCosts, parallelism).generatePaths();
+        }
+        Metrics.CONSTRUCT.stop(phaseStart);
+
+        if (!improve) {
+            return report(new Result(legCosts, dronePaths, System.currentTimeMillis() - startMillis));
+        }
+        if (cacheKey != null) {
+            dronePaths = warmStart(legCosts, cacheKey, dronePaths);
+        }
+        if (listener != null) listener.improved(Solution.fromPaths(legCosts, dronePaths));
+        phaseStart = Metrics.PRECOMPUTE.start();
+        SearchContext searchContext = reused != null ? reused.getContext() : new SearchContext(legCosts);
+        Metrics.PRECOMPUTE.stop(phaseStart);
+        phaseStart = Metrics.IMPROVE.start();
+        Console.println("\nImproving drone paths...");
+        LocalSearch localSearch = new LocalSearch(searchContext);
+        localSearch.setListener(listener);
+        if (timeLimitMillis > 0) {
+            long remaining = Math.max(1, timeLimitMillis - (System.currentTimeMillis() - startMillis));
+            localSearch.setTimeLimit(anneal ? Math.max(1, remaining / 2) : remaining);
+        }
+        dronePaths = localSearch.improve(dronePaths);
+
+        if (anneal) {
+            Console.println("\nAnnealing drone paths...");
+            AnnealingSearch annealing = new AnnealingSearch(searchContext);
+            annealing.setSeed(seed);
+            annealing.setChains(parallelism);
+            annealing.setListener(listener);
+            if (timeLimitMillis > 0) {
+                annealing.setTimeLimit(timeLimitMillis - (System.currentTimeMillis() - startMillis));
+            }
+            dronePaths = annealing.improve(dronePaths);
+        }
+        Metrics.IMPROVE.stop(phaseStart);
+
+        return report(new Result(legCosts, dronePaths, System.currentTimeMillis() - startMillis));
+    }
+
+    // The stored solution of a similar zoo, if it does better here than the constructed runs
+    private List<List<Point>> warmStart(LegCostTable legCosts, SolutionCache.Key cacheKey, List<List<Point>> constructed) {
+        SolutionCache.Entry similar = cache.similar(cacheKey);
+        if (similar == null) return constructed;
+        Solution seed = Solution.fromPaths(legCosts, similar.getPaths());
+        // Runs that no longer fit the battery (other enclosures, other heights) are dropped with what they fed
+        List<RunPlan> runs = seed.getRuns();
+        int maxRuns = legCosts.getZoo().getBatterySwaps() + 1;
+        for (int r = runs.size() - 1; r >= 0; r--) {
+            RunPlan run = runs.get(r);
+            if (r >= maxRuns || run.getDistance() > legCosts.getZoo().getBatteryCapacity()) {
+                for (int stop : run.toArray()) {
+                    if (legCosts.isEnclosure(stop)) seed.unmarkFed(stop);
+                }
+                runs.remove(r);
+            }
+        }
+        double constructedScore = Solution.fromPaths(legCosts, constructed).getScore();
+        if (seed.getScore() <= constructedScore) return constructed;
+        Metrics.CACHE_WARM_STARTS.increment();
+        Console.println("Warm start from a similar cached zoo: score " + String.format("%.2f", seed.getScore())
+                + " against " + String.format("%.2f", constructedScore) + " constructed");
+        return seed.toPaths();
+    }
+
+    private Result report(Result result) {
+        if (listener != null) listener.improved(result.solution().copy());
+        return result;
+    }
+
+    /**
+     * The outcome of one solve. The score is worked out from the paths on first request.
+     */
+    public static class Result {
+        private final Zoo zoo;
+        private final List<List<Point>> paths;
+        private final long solveMillis;
+        private LegCostTable table; // Built on first request for results from the cache
+        private double score = Double.NaN; // Known up front for results from the cache
+        private Solution solution;
+
+        public Result(LegCostTable table, List<List<Point>> paths, long solveMillis) {
+            this.zoo = table.getZoo();
+            this.table = table;
+            this.paths = paths;
+            this.solveMillis = solveMillis;
+        }
+
+        Result(Zoo zoo, List<List<Point>> paths, double score, long solveMillis) {
+            this.zoo = zoo;
+            this.paths = paths;
+            this.score = score;
+            this.solveMillis = solveMillis;
+        }
+
+        public List<List<Point>> getPaths() {
+            return paths;
+        }
+
+        /**
+         * @return The total importance of the enclosures fed.
+         */
+        public synchronized double getScore() {
+            return Double.isNaN(score) ? solution().getScore() : score;
+        }
+
+        public int getRuns() {
+            return paths.size();
+        }
+
+        public long getSolveMillis() {
+            return solveMillis;
+        }
+
+        private synchronized Solution solution() {
+            if (solution == null) {
+                if (table == null) table = LegCostTable.build(zoo);
+                solution = Solution.fromPaths(table, paths);
+            }
+            return solution;
+        }
+    }
+}
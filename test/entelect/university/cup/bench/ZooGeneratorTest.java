@@ -0,0 +1,57 @@
+package entelect.university.cup.bench;
+
+import entelect.university.cup.file.SolutionCache;
+import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.models.Zoo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZooGeneratorTest {
+
+    @Test
+    void sameSeedGivesSameZoo() {
+        Zoo first = generator(7).generate();
+        Zoo second = generator(7).generate();
+        assertEquals(SolutionCache.key(first, "").toString(), SolutionCache.key(second, "").toString());
+        assertTrue(first.getColumns().getDeadZoneCount() > 0);
+    }
+
+    @Test
+    void fileReadsBackWithTheGeneratedSwaps(@TempDir Path directory) throws IOException {
+        ZooGenerator generator = generator(3);
+        generator.setEnclosures(600);
+        generator.setBatteryCapacity(1000); // Not the battery of a level
+        Path file = directory.resolve("zoo.txt");
+        generator.write(file);
+        Zoo zoo = generator.generate();
+        assertEquals(9, zoo.getBatterySwaps());
+        assertEquals(SolutionCache.key(zoo, "").toString(),
+                SolutionCache.key(ZooFileHandler.readZooFromFile(file.toString()), "").toString());
+    }
+
+    @Test
+    void failsWhenNoDeadZoneCanAvoidTheDepot() {
+        // Every center on a 50 x 50 map is within a radius of 100 of the depot
+        ZooGenerator generator = generator(1);
+        generator.setDimensions(50, 50);
+        generator.setDeadZones(0.5, 100, 120);
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IllegalArgumentException.class, generator::generate));
+    }
+
+    private static ZooGenerator generator(long seed) {
+        ZooGenerator generator = new ZooGenerator();
+        generator.setEnclosures(200);
+        generator.setSeed(seed);
+        return generator;
+    }
+}
@@ -0,0 +1,30 @@
+package entelect.university.cup.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AsciiDigitsTest {
+
+    @Test
+    void writesIntsAsIntegerToStringDoes() {
+        int[] edges = {0, 1, -1, 9, 10, 99, 100, 999_999_999, 1_000_000_000, Integer.MAX_VALUE, -Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int value : edges) {
+            assertWritten(value);
+        }
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 100_000; i++) {
+            assertWritten(random.nextInt());
+        }
+    }
+
+    private static void assertWritten(int value) {
+        byte[] bytes = new byte[2 + AsciiDigits.MAX_INT_BYTES];
+        bytes[0] = 'x';
+        int end = AsciiDigits.writeInt(bytes, 1, value);
+        assertEquals("x" + value, new String(bytes, 0, end, StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,45 @@
+package entelect.university.cup.file;
+
+import entelect.university.cup.models.Point;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ZooFileHandlerTest {
+
+    private static final List<List<Point>> RUNS = List.of(List.of(new Point(0, 0, 0), new Point(3, 4, 0), new Point(0, 0, 0)));
+
+    @Test
+    void replacedFileIsWrittenLikeAPlainOne(@TempDir Path directory) throws IOException {
+        Path plain = directory.resolve("plain.txt");
+        Path replaced = directory.resolve("replaced.txt");
+        ZooFileHandler.writePathsToFile(RUNS, plain.toString());
+        ZooFileHandler.replacePathsFile(RUNS, replaced.toString());
+        assertEquals(Files.readString(plain), Files.readString(replaced));
+        assertEquals("[[(0,0),(3,4),(0,0)]]", Files.readString(replaced));
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.count()); // No temporary file left behind
+        }
+        assumeTrue(Files.getFileStore(directory).supportsFileAttributeView(PosixFileAttributeView.class));
+        assertEquals(Files.getPosixFilePermissions(plain), Files.getPosixFilePermissions(replaced));
+    }
+
+    @Test
+    void replacingKeepsTheTargetsPermissions(@TempDir Path directory) throws IOException {
+        assumeTrue(Files.getFileStore(directory).supportsFileAttributeView(PosixFileAttributeView.class));
+        Path target = directory.resolve("out.txt");
+        ZooFileHandler.writePathsToFile(List.of(), target.toString());
+        Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rw-r-----"));
+        ZooFileHandler.replacePathsFile(RUNS, target.toString());
+        assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(target)));
+    }
+}
@@ -0,0 +1,98 @@
+package entelect.university.cup.service;
+
+import entelect.university.cup.solver.ZooSolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * What a client may make the service read: zoo files from the zoo directory only, and
+ * bodies up to the size limit. Uses the level 1 zoo from the working directory.
+ */
+class SolverServiceTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private SolverService service;
+    private byte[] zoo;
+
+    @BeforeEach
+    void start() throws IOException {
+        service = new SolverService(new ZooSolver(), 0, 1, 1);
+        service.start();
+        zoo = Files.readAllBytes(Path.of("1.txt"));
+    }
+
+    @AfterEach
+    void stop() {
+        service.close();
+    }
+
+    @Test
+    void postedZooIsSolved() throws Exception {
+        HttpResponse<String> response = post("", zoo);
+        assertEquals(200, response.statusCode());
+        assertEquals("122.20", response.headers().firstValue("X-Score").orElseThrow());
+    }
+
+    @Test
+    void bodyOverTheLimitIsRefused() throws Exception {
+        service.setMaxBodyBytes(zoo.length - 1);
+        assertEquals(413, post("", zoo).statusCode());
+        service.setMaxBodyBytes(zoo.length);
+        assertEquals(200, post("", zoo).statusCode());
+    }
+
+    @Test
+    void invalidTimeBudgetsAreRefused() throws Exception {
+        for (String time : new String[]{"NaN", "Infinity", "-Infinity", "-1", "1e300", "soon"}) {
+            assertEquals(400, post("time=" + time, zoo).statusCode(), time);
+        }
+        assertEquals(200, post("time=0.5", zoo).statusCode());
+    }
+
+    @Test
+    void filesAreRefusedWithoutAZooDirectory() throws Exception {
+        assertEquals(403, post("file=" + encode(Path.of("1.txt").toAbsolutePath().toString()), new byte[0]).statusCode());
+    }
+
+    @Test
+    void filesAreOnlyReadFromTheZooDirectory(@TempDir Path directory) throws Exception {
+        Path zoos = Files.createDirectory(directory.resolve("zoos"));
+        Files.write(zoos.resolve("level1.txt"), zoo);
+        Path secret = Files.writeString(directory.resolve("secret.txt"), "not a zoo");
+        service.setZooDirectory(zoos);
+
+        assertEquals(200, post("file=level1.txt", new byte[0]).statusCode());
+        for (String name : new String[]{"../secret.txt", secret.toString(), "missing.txt"}) {
+            HttpResponse<String> response = post("file=" + encode(name), new byte[0]);
+            assertEquals(404, response.statusCode(), name);
+            assertEquals("Cannot read zoo file " + name + "\n", response.body()); // No I/O error details
+            assertFalse(response.body().contains("not a zoo"));
+        }
+    }
+
+    private HttpResponse<String> post(String query, byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + service.getPort() + "/solve?" + query))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,84 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.models.DeadZone;
+import entelect.university.cup.models.Point;
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.models.ZooColumns;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The grid broad phase must give the same answer as testing every dead zone.
+ */
+class DeadZoneIndexTest {
+
+    @Test
+    void intersectsAnyMatchesBruteForce() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int round = 0; round < 20; round++) {
+            Zoo zoo = randomZoo(random, 1 + random.nextInt(200));
+            DeadZoneIndex index = new DeadZoneIndex(zoo);
+            List<DeadZone> zones = zoo.getDeadzones();
+            int width = zoo.getDimensions().getX();
+            int height = zoo.getDimensions().getY();
+            for (int leg = 0; leg < 5000; leg++) {
+                Point from = new Point(random.nextInt(width + 1), random.nextInt(height + 1), 0);
+                Point to = leg % 10 == 0 // Some vertical and horizontal legs, the grid's edge cases
+                        ? new Point(from.getX(), random.nextInt(height + 1), 0)
+                        : leg % 10 == 1 ? new Point(random.nextInt(width + 1), from.getY(), 0)
+                        : new Point(random.nextInt(width + 1), random.nextInt(height + 1), 0);
+                assertEquals(DroneMathUtils.intersectsAnyDeadZone(from, to, zones), index.intersectsAny(from, to),
+                        "Leg " + from + " -> " + to + " in round " + round);
+            }
+        }
+    }
+
+    @Test
+    void blockedMaskMatchesBruteForce() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int round = 0; round < 20; round++) {
+            Zoo zoo = randomZoo(random, 1 + random.nextInt(100));
+            DeadZoneIndex index = new DeadZoneIndex(zoo);
+            List<DeadZone> zones = zoo.getDeadzones();
+            int width = zoo.getDimensions().getX();
+            int height = zoo.getDimensions().getY();
+            int[] destX = new int[64];
+            int[] destY = new int[64];
+            for (int d = 0; d < 64; d++) {
+                destX[d] = random.nextInt(width + 1);
+                destY[d] = random.nextInt(height + 1);
+            }
+            for (int origin = 0; origin < 200; origin++) {
+                int originX = random.nextInt(width + 1);
+                int originY = random.nextInt(height + 1);
+                int from = random.nextInt(64);
+                int to = from + random.nextInt(65 - from);
+                long expected = 0L;
+                for (int d = from; d < to; d++) {
+                    if (DroneMathUtils.intersectsAnyDeadZone(new Point(originX, originY, 0), new Point(destX[d], destY[d], 0), zones)) {
+                        expected |= 1L << (d - from);
+                    }
+                }
+                assertEquals(expected, index.blockedMask(originX, originY, destX, destY, from, to),
+                        "Origin (" + originX + "," + originY + ") to destinations " + from + ".." + to);
+            }
+        }
+    }
+
+    private static Zoo randomZoo(SplittableRandom random, int deadZones) {
+        int width = 100 + random.nextInt(2500);
+        int height = 100 + random.nextInt(2500);
+        ZooColumns.Builder builder = new ZooColumns.Builder()
+                .dimensions(width, height, 50)
+                .depot(width / 2, height / 2, 0)
+                .battery(10_000, 0);
+        for (int i = 0; i < deadZones; i++) {
+            builder.addDeadZone(random.nextInt(width + 1), random.nextInt(height + 1), 1 + random.nextInt(150));
+        }
+        return new Zoo(builder.build());
+    }
+}
@@ -0,0 +1,78 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.eval.Evaluation;
+import entelect.university.cup.eval.SolutionEvaluator;
+import entelect.university.cup.models.Point;
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.models.ZooColumns;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Detours around a dead zone at (1000,1000) with radius 70. Its octagon corner to the east
+ * rounds to (1077,1000), and the leg (1060,900)-(1060,1100) is shortest around that corner.
+ */
+class DetourRouterTest {
+
+    private static final Point EAST_CORNER = new Point(1077, 1000, DroneMathUtils.FLIGHT_ALTITUDE);
+    private static final Point SOUTH = new Point(1060, 900, 0);
+    private static final Point NORTH = new Point(1060, 1100, 0);
+
+    @Test
+    void detourUsesTheCornerWhenItIsFree() {
+        Zoo zoo = zoo(false);
+        DetourRouter.Detour detour = route(zoo);
+        assertTrue(detour.isReachable());
+        assertEquals(List.of(EAST_CORNER), List.of(detour.getWaypoints()));
+    }
+
+    @Test
+    void detourAvoidsACornerOnAnEnclosure() {
+        Zoo zoo = zoo(true);
+        DetourRouter.Detour detour = route(zoo);
+        assertTrue(detour.isReachable());
+        Point previous = SOUTH;
+        for (Point waypoint : detour.getWaypoints()) {
+            assertFalse(waypoint.getX() == EAST_CORNER.getX() && waypoint.getY() == EAST_CORNER.getY(),
+                    "Waypoint on the enclosure at " + waypoint);
+            assertFalse(new DeadZoneIndex(zoo).intersectsAny(previous, waypoint));
+            previous = waypoint;
+        }
+        assertFalse(new DeadZoneIndex(zoo).intersectsAny(previous, NORTH));
+    }
+
+    @Test
+    void solvedRunsDoNotLandOnTheEnclosureAtTheCorner() {
+        Zoo zoo = zoo(true);
+        ZooSolver.Result result = new ZooSolver().solve(zoo);
+        Evaluation evaluation = new SolutionEvaluator(zoo).evaluate(result.getPaths());
+        assertTrue(evaluation.isValid(), evaluation.getViolations().toString());
+        assertNotEquals(0.0, evaluation.getScore()); // The enclosure beyond the zone is fed
+    }
+
+    private static DetourRouter.Detour route(Zoo zoo) {
+        return new DetourRouter(zoo, new DeadZoneIndex(zoo)).route(SOUTH, NORTH, 10_000);
+    }
+
+    // The depot and a storage south of the zone and an enclosure north of it; optionally
+    // an enclosure of another diet, which cannot be fed, on the corner
+    private static Zoo zoo(boolean enclosureOnCorner) {
+        ZooColumns.Builder builder = new ZooColumns.Builder()
+                .dimensions(2000, 2000, 50)
+                .depot(SOUTH.getX(), SOUTH.getY(), 0)
+                .battery(10_000, 0)
+                .addStorage(SOUTH.getX(), SOUTH.getY() - 10, 0, 'c')
+                .addEnclosure(NORTH.getX(), NORTH.getY(), 0, 10.0, 'c')
+                .addDeadZone(1000, 1000, 70);
+        if (enclosureOnCorner) {
+            builder.addEnclosure(EAST_CORNER.getX(), EAST_CORNER.getY(), 0, 1.0, 'h');
+        }
+        return new Zoo(builder.build());
+    }
+}
@@ -0,0 +1,41 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.eval.Evaluation;
+import entelect.university.cup.eval.SolutionEvaluator;
+import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.models.Zoo;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Level 1 (20 enclosures, one run) is within the exact solver's reach.
+ */
+class ExactSolverTest {
+
+    @Test
+    void solvesLevelOneOptimally() throws IOException {
+        Zoo zoo = ZooFileHandler.readZooFromFile("1.txt");
+        ExactSolver solver = new ExactSolver(LegCostTable.build(zoo));
+        Solution solution = solver.solve();
+        assertTrue(solver.isOptimal());
+        assertEquals(122.20, solution.getScore(), 1e-6);
+        assertTrue(new SolutionEvaluator(zoo).evaluate(solution.toPaths()).isValid());
+    }
+
+    @Test
+    void returnsTheBestSoFarAtTheDeadline() throws IOException {
+        Zoo zoo = ZooFileHandler.readZooFromFile("1.txt");
+        ExactSolver solver = new ExactSolver(LegCostTable.build(zoo));
+        solver.setTimeLimit(1);
+        Solution solution = solver.solve();
+        assertFalse(solver.isOptimal());
+        Evaluation evaluation = new SolutionEvaluator(zoo).evaluate(solution.toPaths());
+        assertTrue(evaluation.isValid(), evaluation.getViolations().toString());
+        assertEquals(solution.getScore(), evaluation.getScore(), 1e-6);
+    }
+}
@@ -0,0 +1,80 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.eval.Evaluation;
+import entelect.university.cup.eval.SolutionEvaluator;
+import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.metrics.Metrics;
+import entelect.university.cup.models.Point;
+import entelect.university.cup.models.Zoo;
+import entelect.university.cup.models.ZooColumns;
+import entelect.university.cup.models.ZooDelta;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Repaired solutions must stay valid for the changed zoo, as the independent evaluator sees it.
+ */
+class IncrementalSolverTest {
+
+    @Test
+    void enclosureAddedOnADetourCornerIsNotLandedAt() {
+        // The detour around (1000,1000) with radius 70 turns at (1077,1000), as in DetourRouterTest
+        Zoo zoo = new Zoo(new ZooColumns.Builder()
+                .dimensions(2000, 2000, 50)
+                .depot(1060, 900, 0)
+                .battery(10_000, 0)
+                .addStorage(1060, 890, 0, 'c')
+                .addEnclosure(1060, 1100, 0, 10.0, 'c')
+                .addDeadZone(1000, 1000, 70)
+                .build());
+        IncrementalSolver incremental = new IncrementalSolver(zoo, new ZooSolver().solve(zoo).getPaths());
+        assertTrue(incremental.getSolution().toPaths().get(0).contains(new Point(1077, 1000, DroneMathUtils.FLIGHT_ALTITUDE)));
+
+        long fallbacks = Metrics.INCREMENTAL_FALLBACKS.get();
+        Solution repaired = incremental.apply(new ZooDelta().addEnclosure(1077, 1000, 0, 1.0, 'h'));
+        assertValid(incremental.getZoo(), repaired);
+        assertEquals(fallbacks, Metrics.INCREMENTAL_FALLBACKS.get()); // Repaired, not solved again
+        assertNotEquals(0.0, repaired.getScore()); // The enclosure beyond the zone is still fed
+    }
+
+    @Test
+    void mixedChangesStayValid() throws IOException {
+        Zoo zoo = ZooFileHandler.readZooFromFile("3.txt");
+        IncrementalSolver incremental = new IncrementalSolver(zoo, new ZooSolver().solve(zoo).getPaths());
+        Random random = new Random(2);
+        for (int step = 0; step < 5; step++) {
+            ZooColumns columns = incremental.getZoo().getColumns();
+            int enclosures = columns.getEnclosureCount();
+            ZooDelta delta = new ZooDelta();
+            for (int k = 0; k < 5; k++) {
+                delta.changeImportance(random.nextInt(enclosures), random.nextDouble() * 20);
+            }
+            for (int k = 0; k < 3; k++) {
+                int i = random.nextInt(enclosures);
+                delta.addEnclosure(columns.getEnclosureX()[i] + random.nextInt(41) - 20, columns.getEnclosureY()[i] + random.nextInt(41) - 20,
+                        columns.getEnclosureZ()[i], 1 + random.nextDouble() * 15, (char) columns.getEnclosureDiet()[i]);
+            }
+            int i = random.nextInt(enclosures);
+            delta.addDeadZone(columns.getEnclosureX()[i] + random.nextInt(61) - 30, columns.getEnclosureY()[i] + random.nextInt(61) - 30,
+                    5 + random.nextInt(30));
+            long fallbacks = Metrics.INCREMENTAL_FALLBACKS.get();
+            Solution repaired = incremental.apply(delta);
+            assertValid(incremental.getZoo(), repaired);
+            assertEquals(fallbacks, Metrics.INCREMENTAL_FALLBACKS.get(), "Repair of step " + step + " needed a full solve");
+        }
+    }
+
+    private static void assertValid(Zoo zoo, Solution solution) {
+        List<List<Point>> paths = solution.toPaths();
+        Evaluation evaluation = new SolutionEvaluator(zoo).evaluate(paths);
+        assertTrue(evaluation.isValid(), evaluation.getViolations().toString());
+        assertEquals(evaluation.getScore(), solution.getScore(), 1e-6);
+    }
+}
@@ -0,0 +1,52 @@
+package entelect.university.cup.solver;
+
+import entelect.university.cup.eval.Evaluation;
+import entelect.university.cup.eval.SolutionEvaluator;
+import entelect.university.cup.file.ZooFileHandler;
+import entelect.university.cup.models.Zoo;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every solving pipeline must give runs the independent evaluator accepts, with the score
+ * the solver reports, on the shipped levels (read from the working directory).
+ */
+class SolverValidityTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1.txt", "2.txt", "3.txt", "4.txt"})
+    void plannedRunsAreValid(String level) throws IOException {
+        assertValid(level, new ZooSolver());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2.txt", "3.txt"})
+    void greedyImprovedRunsAreValid(String level) throws IOException {
+        ZooSolver solver = new ZooSolver();
+        solver.setGreedy(true);
+        solver.setImprove(true);
+        assertValid(level, solver);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2.txt", "3.txt"})
+    void annealedRunsAreValid(String level) throws IOException {
+        ZooSolver solver = new ZooSolver();
+        solver.setAnneal(true);
+        solver.setTimeLimit(2000);
+        assertValid(level, solver);
+    }
+
+    private static void assertValid(String level, ZooSolver solver) throws IOException {
+        Zoo zoo = ZooFileHandler.readZooFromFile(level);
+        ZooSolver.Result result = solver.solve(zoo);
+        Evaluation evaluation = new SolutionEvaluator(zoo).evaluate(result.getPaths());
+        assertTrue(evaluation.isValid(), level + ": " + evaluation.getViolations());
+        assertEquals(evaluation.getScore(), result.getScore(), 1e-6, level);
+    }
+}